@@ -108,6 +108,8 @@ void ringbuf_out(struct event *e)
       gap.old_pid = (pid_t) bpf_get_current_pid_tgid()&0xffffffff;
       gap.cpu_id = bpf_get_smp_processor_id();
       gap.ns = e->ns;
+      gap.cgroup_id = 0;
+      gap.tgid = (pid_t) (bpf_get_current_pid_tgid() >> 32);
       if (bpf_ringbuf_output(&feeze_rec_rb, &gap, sizeof(gap), 0)==0)
         {
           // ok, so back to OVFL_NONE
@@ -176,6 +178,8 @@ int on_task_switch(struct trace_event_raw_sched_switch *ctx)
       es.comm[15] = ctx->next_comm[15];
       es.cpu_id = bpf_get_smp_processor_id();
       es.ns = bpf_ktime_get_ns();
+      es.cgroup_id = bpf_get_current_cgroup_id();  // current is still the old thread here
+      es.tgid = (pid_t) (bpf_get_current_pid_tgid() >> 32);
       ringbuf_out(&es);
     }
 
@@ -224,6 +228,8 @@ int on_task_waking(struct trace_event_raw_sched_wakeup_template *ctx)
       es.comm[15] = ctx->comm[15];
       es.cpu_id = ctx->target_cpu;
       es.ns = bpf_ktime_get_ns();
+      es.cgroup_id = bpf_get_current_cgroup_id();  // cgroup of the causing thread
+      es.tgid = (pid_t) (bpf_get_current_pid_tgid() >> 32);
       ringbuf_out(&es);
     }
   return 0;
@@ -272,6 +278,8 @@ int on_task_wakeup(struct trace_event_raw_sched_wakeup_template *ctx)
       es.comm[15] = ctx->comm[15];
       es.cpu_id = ctx->target_cpu;
       es.ns = bpf_ktime_get_ns();
+      es.cgroup_id = bpf_get_current_cgroup_id();  // cgroup of the causing thread
+      es.tgid = (pid_t) (bpf_get_current_pid_tgid() >> 32);
       ringbuf_out(&es);
     }
   return 0;
@@ -347,6 +355,8 @@ int handle_fuzion_probe(struct pt_regs *ctx)
           es.comm[1] = 0;
         }
       es.ns = bpf_ktime_get_ns();
+      es.cgroup_id = 0;
+      es.tgid = (pid_t) (bpf_get_current_pid_tgid() >> 32);
       ringbuf_out(&es);
     }
   return 0;
@@ -37,6 +37,7 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>
 #include <unistd.h>
 #include <string.h>
 #include <stdio.h>
+#include <stdlib.h>
 #include <errno.h>
 #include <signal.h>
 #include <sys/mman.h>
@@ -47,6 +48,7 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>
 #include <pthread.h>
 #include <sys/types.h>
 #include <assert.h>
+#include <dirent.h>
 
 #include "feeze_recorder_common.h"
 #include "feeze_recorder.skel.h"
@@ -71,11 +73,15 @@ struct  shared_buffer
   volatile int      entry_start_offset;   // byte offset of the first entry, relative to shared memory start
   volatile int      entry_size;           // entry size in bytes
   volatile char     done;                 // 0 while recording, 1 when recording is done
-  volatile char     unused2;
+  volatile char     format;               // FORMAT_NARROW or FORMAT_WIDE
   volatile char     unused3;
   volatile char     unused4;
 };
 
+// formats of thread numbers in entries
+#define FORMAT_NARROW 0    // 16-bit thread numbers, written by older recorders
+#define FORMAT_WIDE   1    // 24-bit thread numbers with bits 16..23 in the *_t_num_hi bytes
+
 // entry kinds
 #define ENTRY_KIND_UNUSED        0    // unused kind, should not occur
 #define ENTRY_KIND_SCHED_SWITCH  1    // SCHED_SWITCH trace point
@@ -88,6 +94,13 @@ struct  shared_buffer
 #define ENTRY_KIND_THREAD_NAME   8    // set name of a thread
 #define ENTRY_KIND_GAP           9    // A gap in the data due to ringbuffer overflow
 #define ENTRY_KIND_MORE_CHARS   10    // continuation of a previous char[] for strings exceeding single entries
+#define ENTRY_KIND_CGROUP       11    // a cgroup   that is used in the trace
+#define ENTRY_KIND_THREAD_PROCESS 12  // set process of a thread that was posted with PID_UNRESOLVED
+#define ENTRY_KIND_THREAD_CGROUP  13  // set cgroup of a thread
+#define ENTRY_KIND_CPU_TOPOLOGY   14  // cache topology of a CPU of the recording machine
+
+// pid of a thread whose process is not known yet, see resolver()
+#define PID_UNRESOLVED (-2)
 
 
 // untimed payloads:
@@ -105,7 +118,8 @@ struct process_payload
   uid_t uid;                         //  4  8     -- element and total size in bytes
 };
 
-// a thread that belongs to given process
+// a thread that belongs to given process, PID_UNRESOLVED if the process is
+// set later by an ENTRY_KIND_THREAD_PROCESS entry
 struct thread_payload
 {
   pid_t tid;                         //  4  4     -- element and total size in bytes
@@ -116,7 +130,45 @@ struct thread_payload
 struct thread_name_payload
 {
   uint16_t t_num;                    //  2  2     -- element and total size in bytes
-  char name[6];                      //  6  8     -- element and total size in bytes
+  uint8_t  t_num_hi;                 //  1  3     -- element and total size in bytes
+  char name[5];                      //  5  8     -- element and total size in bytes
+};
+
+// a cgroup id followed by the cgroup path as more_chars_payload
+struct cgroup_payload
+{
+  uint64_t id;                       //  8  8     -- element and total size in bytes
+};
+
+// the cgroup of a thread, might change if the thread is moved.  Threads of
+// one process may be in different cgroups, e.g., in cgroup v2 threaded mode.
+//
+// the thread is given by its number, the cgroup by its number in the order
+// of the ENTRY_KIND_CGROUP events starting at 0, 1, 2, ...
+struct thread_cgroup_payload
+{
+  uint32_t t_num;                    //  4  4     -- element and total size in bytes
+  uint32_t cg_num;                   //  4  8     -- element and total size in bytes
+};
+
+// the process of a thread that was posted with PID_UNRESOLVED
+struct thread_process_payload
+{
+  uint32_t t_num;                    //  4  4     -- element and total size in bytes
+  pid_t pid;                         //  4  8     -- element and total size in bytes
+};
+
+// the cache topology of one CPU of the machine the recording was made on, as
+// found in /sys/devices/system/cpu/cpu<cpu_id>.  llc_id is the lowest id of
+// the CPUs sharing the last level cache.  Values that are not known are
+// CPU_TOPOLOGY_UNKNOWN.
+#define CPU_TOPOLOGY_UNKNOWN 0xffff
+struct cpu_topology_payload
+{
+  uint16_t cpu_id;                   //  2  2     -- element and total size in bytes
+  uint16_t core_id;                  //  2  4     -- element and total size in bytes
+  uint16_t package_id;               //  2  6     -- element and total size in bytes
+  uint16_t llc_id;                   //  2  8     -- element and total size in bytes
 };
 
 // additional chars following an event that carries a string
@@ -134,12 +186,15 @@ struct more_chars_payload
 //
 // to safe space, we do not use pid_t here, but we number the threads in
 // the order of the ENTRY_KIND_THREAD events starting at 0, 1, 2, ... and
-// use this as a 16-bit unsigned value
+// use this as a 24-bit unsigned value split into the lower 16 bits and the
+// upper 8 bits, see FORMAT_WIDE.
 struct sched_switch_payload
 {
   uint16_t old_t_num;                //  2  2     -- element and total size in bytes
   uint16_t new_t_num;                //  2  4     -- element and total size in bytes
   uint16_t cpu_id;                   //  2  6     -- element and total size in bytes
+  uint8_t  old_t_num_hi;             //  1  7     -- element and total size in bytes
+  uint8_t  new_t_num_hi;             //  1  8     -- element and total size in bytes
 };
 
 // a SCHED_WAKING (thread stops being blocked) or SCHED_WAKEUP (after WAKING,
@@ -150,6 +205,8 @@ struct sched_wakeup_payload
   uint16_t causing_t_num;            //  2  2     -- element and total size in bytes
   uint16_t new_t_num;                //  2  4     -- element and total size in bytes
   uint16_t cpu_id;                   //  2  6     -- element and total size in bytes
+  uint8_t  causing_t_num_hi;         //  1  7     -- element and total size in bytes
+  uint8_t  new_t_num_hi;             //  1  8     -- element and total size in bytes
 };
 
 // A user event on thread with given number,  using given color and given message,
@@ -159,7 +216,7 @@ struct user_event
 {
   uint16_t t_num;                    //  2  2     -- element and total size in bytes
   uint8_t col;                       //  1  3     -- element and total size in bytes
-  uint8_t pad;                       //  1  4     -- element and total size in bytes
+  uint8_t t_num_hi;                  //  1  4     -- element and total size in bytes
   char msg[4];                       //  4  8     -- element and total size in bytes
 };
 
@@ -185,8 +242,8 @@ struct timed_payload
   uint8_t ns_and_kind[8];            //  8  8     -- element and total size in bytes
   union
   {
-    struct sched_switch_payload ss;  //  6 14     -- element and total size in bytes
-    struct sched_wakeup_payload sw;  //  6 14     -- element and total size in bytes
+    struct sched_switch_payload ss;  //  8 16     -- element and total size in bytes
+    struct sched_wakeup_payload sw;  //  8 16     -- element and total size in bytes
     struct user_event           ue;  //  8 16     -- element and total size in bytes
   } payload;                         //  8 16     -- element and total size in bytes
 };
@@ -205,6 +262,10 @@ struct untimed_payload
     struct process_payload      p;   //  8 16     -- element and total size in bytes
     struct thread_payload       t;   //  8 16     -- element and total size in bytes
     struct thread_name_payload  tn;  //  8 16     -- element and total size in bytes
+    struct cgroup_payload       cg;  //  8 16     -- element and total size in bytes
+    struct thread_process_payload tp;//  8 16     -- element and total size in bytes
+    struct thread_cgroup_payload  tc;//  8 16     -- element and total size in bytes
+    struct cpu_topology_payload   ct;//  8 16     -- element and total size in bytes
     struct gap_payload          gp;  //  0  8     -- element and total size in bytes
     struct more_chars_payload   mc;  //  8 16     -- element and total size in bytes
   } payload;                         //  8 16
@@ -236,42 +297,93 @@ uint64_t eventcount = 0;
 #define MAX_PROCESS_NAME_LENGTH 256
 
 
-#define MAX_NUM_THREADS (4096)
+/**
+ * Open addressing hash map from keys like tids, pids, uids or cgroup ids to
+ * their numbers 0, 1, 2, ... in the order they were added.
+ */
+typedef struct index_map index_map;
+struct index_map
+{
+  uint64_t *keys;       // the keys, valid for slots whose nums[i] >= 0
+  int      *nums;       // the number of keys[i], -1 for an empty slot
+  int       capacity;   // number of slots, 0 or a power of 2
+  int       size;       // number of keys in this map
+};
+
+
+/**
+ * Thread numbers must fit in 24 bits, see FORMAT_WIDE.  A tid that is reused
+ * by a thread of another process gets a new number, see add_thread(), so a
+ * long recording may run out of numbers.  Threads that appear after that are
+ * not recorded.
+ */
+#define MAX_NUM_THREADS (1 << 24)
 #define MAX_THREAD_NAME_LENGTH (32)
 
+/* map from tid to the index in thread_tids[] */
+index_map thread_map = { NULL, NULL, 0, 0 };
+
 /* all the thread ids found so far */
-pid_t thread_tids[MAX_NUM_THREADS];
+pid_t *thread_tids = NULL;
 
 /* all the thread pids corresponding to the thread ids found so far, i.e.,
-   tids[i] is a thread of pids[i].  */
-pid_t thread_pids[MAX_NUM_THREADS];
+   tids[i] is a thread of pids[i], PID_UNRESOLVED until an entry of
+   ENTRY_KIND_THREAD_PROCESS was posted.  */
+pid_t *thread_pids = NULL;
+
+/* the process of the thread as reported by BPF when the thread was the
+   current task of an event, PID_UNRESOLVED if not known yet.  */
+pid_t *thread_tgids = NULL;
 
-char thread_names[MAX_NUM_THREADS*MAX_THREAD_NAME_LENGTH];
+/* the cgroup id the thread was last seen running in, 0 if unknown. */
+uint64_t *thread_cgroup_ids = NULL;
+
+char *thread_names = NULL;
 
 /**
- * Number of threads in thread_tids[]/thread_pids[] arrays.
+ * Number of threads in thread_tids[]/thread_pids[] arrays and number of
+ * elements allocated for these arrays.
  */
 int num_threads = 0;
+int threads_capacity = 0;
 
 
-#define MAX_NUM_PROCESSES (4096)
+/* map from pid to the index in process_pids[] */
+index_map process_map = { NULL, NULL, 0, 0 };
 
-pid_t process_pids[MAX_NUM_PROCESSES];
+pid_t *process_pids = NULL;
 
 
 /**
- * Number of processes in process_pids[] array.
+ * Number of processes in process_pids[] array and number of elements
+ * allocated for process_pids[].
  */
 int num_processes = 0;
+int processes_capacity = 0;
+
 
+#define MAX_CGROUP_PATH_LENGTH (4096)
 
-#define MAX_NUM_USERS (4096)
+/* map from cgroup id to the index in cgroup_ids[] */
+index_map cgroup_map = { NULL, NULL, 0, 0 };
 
-uid_t user_uids[MAX_NUM_USERS];
+uint64_t *cgroup_ids = NULL;
 
 
 /**
- * Number of users in user_uids[] array.
+ * Number of cgroups in cgroup_ids[] array and number of elements allocated
+ * for cgroup_ids[].
+ */
+int num_cgroups = 0;
+int cgroups_capacity = 0;
+
+
+/* map from uid to the index of the user */
+index_map user_map = { NULL, NULL, 0, 0 };
+
+
+/**
+ * Number of users added to user_map.
  */
 int num_users = 0;
 
@@ -292,7 +404,8 @@ static int libbpf_print_fn(enum libbpf_print_level level,
 
 
 /**
- * Push the given entry to the shared memory buffer
+ * Push the given entry to the shared memory buffer.  The entry becomes
+ * visible to readers only with the next call to publish_entries().
  */
 void post_entry(struct entry *e)
 {
@@ -305,63 +418,182 @@ void post_entry(struct entry *e)
   else
     {
       entries[ec] = *e;
-      __sync_synchronize();
-      shmem->num_entries = ec+1;
-      __sync_synchronize();
       eventcount = ec+1;
-      uint64_t n = eventcount; //  & ~((uint64_t) 0x3f);
     }
 }
 
 
 /**
- * Find thread tid in thread_tids[] array at indices 0..num_threads-1.
+ * Make all entries pushed by post_entry() visible to readers of the shared
+ * memory buffer.
  *
- * @return the index of tid in thread_tids[] or -1 if not found.
+ * This is done once per ring buffer event and not once per entry: the release
+ * store orders the entries before the new count and, unlike a full
+ * __sync_synchronize() barrier, does not require a fence instruction on x86.
  */
-int thread_index(pid_t tid)
+void publish_entries()
 {
-  int i =  0;
+  __atomic_store_n(&shmem->num_entries, eventcount, __ATOMIC_RELEASE);
+}
+
 
-  while (i < num_threads && thread_tids[i] != tid)
+/**
+ * Find the slot of key in m, or the empty slot where key would be added.
+ * m->capacity must not be 0.
+ */
+int index_map_slot(index_map *m, uint64_t key)
+{
+  int mask = m->capacity - 1;
+  int i = (int) ((key * 0x9e3779b97f4a7c15ULL) >> 32) & mask;
+  while (m->nums[i] >= 0 && m->keys[i] != key)
     {
-      i++;
+      i = (i + 1) & mask;
     }
-  return i < num_threads ? i : -1;
+  return i;
 }
 
 
 /**
- * Find process pid in process_pids[] array at indices 0..num_processes-1.
+ * Find key in m.
  *
- * @return the index of pid in process_pids[] or -1 if not found.
+ * @return the number of key or -1 if not found.
  */
-int process_index(pid_t pid)
+int index_map_get(index_map *m, uint64_t key)
+{
+  return m->capacity == 0 ? -1 : m->nums[index_map_slot(m, key)];
+}
+
+
+/**
+ * Add key with number num to m.  key must not be in m yet.
+ *
+ * @return true on success, false if out of memory.
+ */
+bool index_map_put(index_map *m, uint64_t key, int num)
+{
+  if (2 * (m->size + 1) > m->capacity)
+    { // keep load factor below 1/2, rehash into twice the capacity:
+      index_map n = { NULL, NULL, m->capacity == 0 ? 1024 : 2 * m->capacity, 0 };
+      n.keys = malloc(n.capacity * sizeof(uint64_t));
+      n.nums = malloc(n.capacity * sizeof(int));
+      if (n.keys == NULL || n.nums == NULL)
+        {
+          free(n.keys);
+          free(n.nums);
+          return false;
+        }
+      memset(n.nums, -1, n.capacity * sizeof(int));
+      for (int i = 0; i < m->capacity; i++)
+        {
+          if (m->nums[i] >= 0)
+            {
+              int j = index_map_slot(&n, m->keys[i]);
+              n.keys[j] = m->keys[i];
+              n.nums[j] = m->nums[i];
+            }
+        }
+      n.size = m->size;
+      free(m->keys);
+      free(m->nums);
+      *m = n;
+    }
+  int i = index_map_slot(m, key);
+  m->keys[i] = key;
+  m->nums[i] = num;
+  m->size++;
+  return true;
+}
+
+
+/**
+ * Change the number of key in m to num.  key must be in m.
+ */
+void index_map_set(index_map *m, uint64_t key, int num)
 {
-  int i =  0;
+  m->nums[index_map_slot(m, key)] = num;
+}
 
-  while (i < num_processes && process_pids[i] != pid)
+
+/**
+ * Remove all keys from m, keeping the memory allocated.
+ */
+void index_map_clear(index_map *m)
+{
+  if (m->capacity > 0)
     {
-      i++;
+      memset(m->nums, -1, m->capacity * sizeof(int));
     }
-  return i < num_processes ? i : -1;
+  m->size = 0;
 }
 
 
 /**
- * Find user uid in user_uids[] array at indices 0..num_users-1.
+ * Grow array *a such that it has room for capacity elements of size
+ * element_size.
  *
- * @return the index of pid in process_pids[] or -1 if not found.
+ * @return true on success, false if out of memory, *a is unchanged then.
  */
-int user_index(uid_t uid)
+bool grow(void **a, int capacity, size_t element_size)
 {
-  int i =  0;
-
-  while (i < num_users && user_uids[i] != uid)
+  void *r = realloc(*a, (size_t) capacity * element_size);
+  if (r != NULL)
     {
-      i++;
+      *a = r;
     }
-  return i < num_users ? i : -1;
+  return r != NULL;
+}
+
+
+/**
+ * The capacity to grow to when an array with given capacity is full.
+ */
+int next_capacity(int capacity)
+{
+  return capacity == 0 ? 1024 : 2 * capacity;
+}
+
+
+/**
+ * Find thread tid in thread_tids[] array at indices 0..num_threads-1.
+ *
+ * @return the index of tid in thread_tids[] or -1 if not found.
+ */
+int thread_index(pid_t tid)
+{
+  return index_map_get(&thread_map, (uint64_t) (uint32_t) tid);
+}
+
+
+/**
+ * Find process pid in process_pids[] array at indices 0..num_processes-1.
+ *
+ * @return the index of pid in process_pids[] or -1 if not found.
+ */
+int process_index(pid_t pid)
+{
+  return index_map_get(&process_map, (uint64_t) (uint32_t) pid);
+}
+
+
+/**
+ * Find cgroup id in cgroup_ids[] array at indices 0..num_cgroups-1.
+ *
+ * @return the index of id in cgroup_ids[] or -1 if not found.
+ */
+int cgroup_index(uint64_t id)
+{
+  return index_map_get(&cgroup_map, id);
+}
+
+
+/**
+ * Find user uid among the users added so far.
+ *
+ * @return the number of the user or -1 if not found.
+ */
+int user_index(uid_t uid)
+{
+  return index_map_get(&user_map, (uint64_t) (uint32_t) uid);
 }
 
 
@@ -487,6 +719,47 @@ int get_process_uid(pid_t pid)
 }
 
 
+/**
+ * Get the cgroup v2 path of given process from "/proc/%d/cgroup", i.e., the
+ * path in the line starting with "0::".
+ *
+ * @param pid the process id
+ *
+ * @param id the cgroup id, used for the fallback name
+ *
+ * @param buffer buffer to place the path
+ *
+ * @param n number of chars available in buffer
+ *
+ * @return buffer or NULL in case of an error.
+ */
+char *get_cgroup_path(pid_t pid, uint64_t id, char *buffer, int n)
+{
+  char *result = NULL;
+  char path[256];
+  FILE *fp;
+
+  snprintf(buffer, n, "cgroup %lu", (unsigned long) id);
+  snprintf(path, sizeof(path), "/proc/%d/cgroup", pid);
+  fp = fopen(path, "r");
+  if (fp != NULL)
+    {
+      char line[MAX_CGROUP_PATH_LENGTH];
+      while (result == NULL && fgets(line, sizeof(line), fp))
+        {
+          if (strncmp(line, "0::", 3) == 0)
+            {
+              line[strcspn(line, "\n")] = 0;
+              strncpy(buffer, &line[3], n);
+              result = buffer;
+            }
+        }
+      fclose(fp);
+    }
+  return result;
+}
+
+
 /**
  * Get name of given user via getpwuid.
  *
@@ -516,6 +789,78 @@ char *get_user_name(uid_t uid, char *buffer, int n)
 }
 
 
+/**
+ * Read the leading int from the file at /sys/devices/system/cpu/cpu<cpu>/<file>,
+ * e.g., a core id or the first CPU of a list of CPUs.
+ *
+ * @return the value or CPU_TOPOLOGY_UNKNOWN if it could not be read.
+ */
+int read_cpu_int(int cpu, const char *file)
+{
+  char path[256];
+  FILE *fp;
+  int result = CPU_TOPOLOGY_UNKNOWN;
+
+  snprintf(path, sizeof(path), "/sys/devices/system/cpu/cpu%d/%s", cpu, file);
+  fp = fopen(path, "r");
+  if (fp != NULL)
+    {
+      int v;
+      if (fscanf(fp, "%d", &v) == 1 && v >= 0 && v < CPU_TOPOLOGY_UNKNOWN)
+        {
+          result = v;
+        }
+      fclose(fp);
+    }
+  return result;
+}
+
+
+/**
+ * Post an entry of ENTRY_KIND_CPU_TOPOLOGY for every CPU found in
+ * /sys/devices/system/cpu.  The directory is enumerated since CPU ids may
+ * have holes, e.g., for CPUs that are not present.
+ */
+void post_cpu_topology()
+{
+  DIR *d = opendir("/sys/devices/system/cpu");
+  if (d != NULL)
+    {
+      struct dirent *de;
+      while ((de = readdir(d)) != NULL)
+        {
+          int cpu, n = 0;
+          if (sscanf(de->d_name, "cpu%d%n", &cpu, &n) == 1 &&
+              de->d_name[n] == 0 &&
+              cpu >= 0 && cpu < CPU_TOPOLOGY_UNKNOWN)
+            {
+              int llc = CPU_TOPOLOGY_UNKNOWN;
+              char file[64];
+              for (int i = 0; ; i++)
+                { // the last index is the last level cache
+                  snprintf(file, sizeof(file), "cache/index%d/shared_cpu_list", i);
+                  int l = read_cpu_int(cpu, file);
+                  if (l == CPU_TOPOLOGY_UNKNOWN)
+                    {
+                      break;
+                    }
+                  llc = l;
+                }
+              struct entry en;
+              memset(&en, 0, sizeof(en));
+              en.untimed.kind = ENTRY_KIND_CPU_TOPOLOGY;
+              en.untimed.payload.ct.cpu_id     = (uint16_t) cpu;
+              en.untimed.payload.ct.core_id    = (uint16_t) read_cpu_int(cpu, "topology/core_id");
+              en.untimed.payload.ct.package_id = (uint16_t) read_cpu_int(cpu, "topology/physical_package_id");
+              en.untimed.payload.ct.llc_id     = (uint16_t) llc;
+              post_entry(&en);
+            }
+        }
+      closedir(d);
+    }
+}
+
+
 /**
  * Add event of type ENTRY_KIND_MORE_CHARS to add additional chars to a
  * string that is part of the previous event.
@@ -544,23 +889,20 @@ void post_more_chars(const char *more_chars)
 /**
  * Check if user uid was already encountered. If not, create and post an
  * entry of ENTRY_KIND_USER for this user.
+ *
+ * @param name the user name as found by get_user_name().
  */
-void add_user(uid_t uid)
+void add_user(uid_t uid, const char *name)
 {
-  if (user_index(uid) < 0 && num_users < MAX_NUM_USERS)
+  if (user_index(uid) < 0 && index_map_put(&user_map, (uint64_t) (uint32_t) uid, num_users))
     {
-      user_uids[num_users] = uid;
       num_users++;
 
       struct entry en;
       en.untimed.kind = ENTRY_KIND_USER;
       en.untimed.payload.u.uid = uid;
       post_entry(&en);
-
-      char name[MAX_USER_NAME_LENGTH+1];
-      memset(&name, 0, sizeof(name));
-      get_user_name(uid, &name[0], sizeof(name));
-      post_more_chars(&name[0]);
+      post_more_chars(name);
     }
 }
 
@@ -568,14 +910,26 @@ void add_user(uid_t uid)
 /**
  * Check if process pid was already encountered. If not, create and post an
  * entry of ENTRY_KIND_PROCESS for this process.
+ *
+ * @param uid the owner of the process as found by get_process_uid(), the
+ * user must have been added by add_user().
+ *
+ * @param name the process name as found by get_process_name().
  */
-void add_process(pid_t pid)
+void add_process(pid_t pid, uid_t uid, const char *name)
 {
-  if (process_index(pid) < 0 && num_processes < MAX_NUM_PROCESSES)
+  if (num_processes == processes_capacity)
+    {
+      int c = next_capacity(processes_capacity);
+      if (grow((void **) &process_pids, c, sizeof(pid_t)))
+        {
+          processes_capacity = c;
+        }
+    }
+  if (process_index(pid) < 0 &&
+      num_processes < processes_capacity &&
+      index_map_put(&process_map, (uint64_t) (uint32_t) pid, num_processes))
     {
-      uid_t uid = get_process_uid(pid);
-      add_user(uid);
-
       process_pids[num_processes] = pid;
       num_processes++;
       struct entry en;
@@ -583,22 +937,421 @@ void add_process(pid_t pid)
       en.untimed.payload.p.pid = pid;
       en.untimed.payload.p.uid = uid;
       post_entry(&en);
+      post_more_chars(name);
+    }
+}
+
+
+/**
+ * Check if cgroup id was already encountered. If not, create and post an
+ * entry of ENTRY_KIND_CGROUP for this cgroup.
+ *
+ * @param path the cgroup path as found by get_cgroup_path().
+ *
+ * @return the number of the cgroup or -1 if out of memory.
+ */
+int add_cgroup(uint64_t id, const char *path)
+{
+  int num = cgroup_index(id);
+  if (num < 0 && num_cgroups == cgroups_capacity)
+    {
+      int c = next_capacity(cgroups_capacity);
+      if (grow((void **) &cgroup_ids, c, sizeof(uint64_t)))
+        {
+          cgroups_capacity = c;
+        }
+    }
+  if (num < 0 &&
+      num_cgroups < cgroups_capacity &&
+      index_map_put(&cgroup_map, id, num_cgroups))
+    {
+      num = num_cgroups;
+      cgroup_ids[num_cgroups] = id;
+      num_cgroups++;
+
+      struct entry en;
+      memset(&en, 0, sizeof(en));
+      en.untimed.kind = ENTRY_KIND_CGROUP;
+      en.untimed.payload.cg.id = id;
+      post_entry(&en);
+      post_more_chars(path);
+    }
+  return num;
+}
+
+
+/**
+ * A request to the resolver thread to find the process of a thread, the names
+ * of a process and its user, or the path of a cgroup a thread is in, and the
+ * result of this request.
+ */
+typedef struct resolution resolution;
+struct resolution
+{
+  resolution *next;                              // next in resolution_queue
+  int   num;                                     // the thread number
+  pid_t tid;                                     // the thread id
+  uint64_t cgroup_id;                            // the cgroup to find the path of, 0 to find the process
+  char *cgroup_path;                             // the path found, NULL if the cgroup was resolved before
+  pid_t pid;                                     // the process as reported by BPF, or PID_UNRESOLVED to find it via /proc
+  uid_t uid;                                     // the owner of the process
+  char  process_name[MAX_PROCESS_NAME_LENGTH+1]; // "" if the process was resolved before
+  char  user_name[MAX_USER_NAME_LENGTH+1];       // "" if the user was resolved before
+};
+
+
+/**
+ * FIFO queue of resolutions.
+ */
+typedef struct resolution_queue resolution_queue;
+struct resolution_queue
+{
+  resolution *first;
+  resolution *last;
+};
+
+
+/**
+ * Lock and condition protecting the resolver_* variables, the condition is
+ * signalled on new requests and to stop the resolver.
+ */
+pthread_mutex_t resolver_lock = PTHREAD_MUTEX_INITIALIZER;
+pthread_cond_t  resolver_cond = PTHREAD_COND_INITIALIZER;
+
+/* requests posted by resolve_later(), results to be posted by post_resolved() */
+resolution_queue resolver_requests = { NULL, NULL };
+resolution_queue resolver_results  = { NULL, NULL };
+
+/* set to stop the resolver once all requests are done */
+bool resolver_stop = false;
+
+/* the resolver thread, valid if resolver_running */
+pthread_t resolver_thread;
+bool resolver_running = false;
+
+/* processes resolved by the resolver thread, mapped to their uid, and the
+   users and cgroups resolved by the resolver thread.  Used by the resolver
+   thread only. */
+index_map resolved_processes = { NULL, NULL, 0, 0 };
+index_map resolved_users     = { NULL, NULL, 0, 0 };
+index_map resolved_cgroups   = { NULL, NULL, 0, 0 };
+
+
+/**
+ * Append r to q.
+ */
+void queue_put(resolution_queue *q, resolution *r)
+{
+  r->next = NULL;
+  if (q->last == NULL)
+    {
+      q->first = r;
+    }
+  else
+    {
+      q->last->next = r;
+    }
+  q->last = r;
+}
+
+
+/**
+ * Remove all elements from q.
+ *
+ * @return the first element, the elements are linked via next.
+ */
+resolution *queue_take_all(resolution_queue *q)
+{
+  resolution *r = q->first;
+  q->first = NULL;
+  q->last = NULL;
+  return r;
+}
+
+
+/**
+ * Find the path of the cgroup in r unless it was resolved before.
+ */
+void resolve_cgroup(resolution *r)
+{
+  r->cgroup_path = NULL;
+  if (index_map_get(&resolved_cgroups, r->cgroup_id) < 0)
+    {
+      r->cgroup_path = calloc(MAX_CGROUP_PATH_LENGTH+1, 1);
+      if (r->cgroup_path != NULL)
+        {
+          get_cgroup_path(r->tid, r->cgroup_id, r->cgroup_path, MAX_CGROUP_PATH_LENGTH);
+          index_map_put(&resolved_cgroups, r->cgroup_id, 0);
+        }
+    }
+}
 
-      char name[MAX_USER_NAME_LENGTH+1];
-      memset(&name, 0, sizeof(name));
-      get_process_name(pid, &name[0], sizeof(name));
-      post_more_chars(&name[0]);
+
+/**
+ * Find the process of the thread in r unless BPF reported it, and the names of
+ * the process and its user unless they were resolved before, or the path of
+ * the cgroup in r.  This performs /proc and NSS I/O, so it is called by the
+ * resolver thread only.
+ */
+void resolve(resolution *r)
+{
+  if (r->cgroup_id != 0)
+    {
+      resolve_cgroup(r);
+      return;
+    }
+  if (r->pid == PID_UNRESOLVED)
+    { // fails with -1 if the thread has exited meanwhile
+      r->pid = get_tgid(r->tid);
+    }
+  r->process_name[0] = 0;
+  r->user_name[0] = 0;
+  int uid = index_map_get(&resolved_processes, (uint64_t) (uint32_t) r->pid);
+  if (uid != -1)
+    {
+      r->uid = (uid_t) uid;
+    }
+  else
+    { // new process, or one whose uid could not be found, which is repeated then
+      r->uid = get_process_uid(r->pid);
+      get_process_name(r->pid, &r->process_name[0], sizeof(r->process_name) - 1);
+      r->process_name[sizeof(r->process_name) - 1] = 0;
+      if ((int) r->uid != -1)
+        { // -1 marks an empty slot in index_map, so failed lookups are not cached
+          index_map_put(&resolved_processes, (uint64_t) (uint32_t) r->pid, (int) r->uid);
+        }
+      if (index_map_get(&resolved_users, (uint64_t) (uint32_t) r->uid) < 0)
+        {
+          get_user_name(r->uid, &r->user_name[0], sizeof(r->user_name) - 1);
+          r->user_name[sizeof(r->user_name) - 1] = 0;
+          index_map_put(&resolved_users, (uint64_t) (uint32_t) r->uid, 0);
+        }
     }
 }
 
 
+/**
+ * Main function of the resolver thread: resolve the requests posted by
+ * resolve_later() until resolver_stop is set and all requests are done.
+ */
+void *resolver(void *arg)
+{
+  pthread_mutex_lock(&resolver_lock);
+  while (!resolver_stop || resolver_requests.first != NULL)
+    {
+      resolution *r = queue_take_all(&resolver_requests);
+      if (r == NULL)
+        {
+          pthread_cond_wait(&resolver_cond, &resolver_lock);
+        }
+      else
+        {
+          pthread_mutex_unlock(&resolver_lock);
+          resolution *done = r;
+          for (resolution *n = r; n != NULL; n = n->next)
+            {
+              resolve(n);
+            }
+          pthread_mutex_lock(&resolver_lock);
+          while (done != NULL)
+            {
+              resolution *n = done->next;
+              queue_put(&resolver_results, done);
+              done = n;
+            }
+        }
+    }
+  pthread_mutex_unlock(&resolver_lock);
+  return NULL;
+}
+
+
+/**
+ * Ask the resolver thread to find the process pid of thread number num with
+ * the given tid and the names of pid and its user, or the path of cgroup_id
+ * the thread is in.  The result will be posted by post_resolved().  If the
+ * resolver thread is not running, resolve immediately.
+ *
+ * @param pid the process of the thread as reported by BPF, PID_UNRESOLVED to
+ * find it via /proc.
+ *
+ * @param cgroup_id 0 to find the process, a cgroup id to find its path.
+ */
+void resolve_later(int num, pid_t tid, pid_t pid, uint64_t cgroup_id)
+{
+  resolution *r = malloc(sizeof(resolution));
+  if (r != NULL)
+    {
+      r->num = num;
+      r->tid = tid;
+      r->pid = pid;
+      r->cgroup_id = cgroup_id;
+      if (!resolver_running)
+        {
+          resolve(r);
+        }
+      pthread_mutex_lock(&resolver_lock);
+      queue_put(resolver_running ? &resolver_requests : &resolver_results, r);
+      pthread_cond_signal(&resolver_cond);
+      pthread_mutex_unlock(&resolver_lock);
+    }
+}
+
+
+/**
+ * Post an entry of ENTRY_KIND_THREAD_CGROUP: thread number num is in cgroup
+ * number cg.
+ */
+void post_thread_cgroup(int num, int cg)
+{
+  struct entry en;
+  memset(&en, 0, sizeof(en));
+  en.untimed.kind = ENTRY_KIND_THREAD_CGROUP;
+  en.untimed.payload.tc.t_num = (uint32_t) num;
+  en.untimed.payload.tc.cg_num = (uint32_t) cg;
+  post_entry(&en);
+}
+
+
+/**
+ * Record that thread number num is running in cgroup id.  If the cgroup of the
+ * thread was not known or changed, post an entry of ENTRY_KIND_THREAD_CGROUP.
+ * If the cgroup itself is new, its path is found by the resolver thread and
+ * the entry is posted by post_resolved().
+ *
+ * The cgroup is tracked per thread and not per process: the threads of one
+ * process may be in different cgroups, so a per-process cgroup sampled from
+ * whatever thread is running would change back and forth.
+ *
+ * @param num a thread number as returned by add_thread()
+ *
+ * @param id a cgroup id as returned by bpf_get_current_cgroup_id(), 0 if
+ * unknown.
+ */
+void add_thread_cgroup(int num, uint64_t id)
+{
+  if (num >= 0 && id != 0 && thread_cgroup_ids[num] != id)
+    {
+      thread_cgroup_ids[num] = id;
+      int cg = cgroup_index(id);
+      if (cg >= 0)
+        {
+          post_thread_cgroup(num, cg);
+        }
+      else
+        {
+          resolve_later(num, thread_tids[num], PID_UNRESOLVED, id);
+        }
+    }
+}
+
+
+/**
+ * Post an entry of ENTRY_KIND_THREAD_PROCESS: thread number num is a thread of
+ * process pid, which must have been added by add_process().
+ */
+void post_thread_process(int num, pid_t pid)
+{
+  thread_pids[num] = pid;
+
+  struct entry en;
+  memset(&en, 0, sizeof(en));
+  en.untimed.kind = ENTRY_KIND_THREAD_PROCESS;
+  en.untimed.payload.tp.t_num = (uint32_t) num;
+  en.untimed.payload.tp.pid = pid;
+  post_entry(&en);
+}
+
+
+/**
+ * Post the results of the resolver thread: entries for new users and
+ * processes and an entry of ENTRY_KIND_THREAD_PROCESS for every resolved
+ * thread that was not resolved meanwhile, entries for new cgroups and an
+ * entry of ENTRY_KIND_THREAD_CGROUP if the thread is still in a resolved
+ * cgroup.  Called by the thread that handles events.
+ */
+void post_resolved()
+{
+  pthread_mutex_lock(&resolver_lock);
+  resolution *r = queue_take_all(&resolver_results);
+  pthread_mutex_unlock(&resolver_lock);
+  if (r != NULL)
+    {
+      while (r != NULL)
+        {
+          if (r->cgroup_id != 0)
+            {
+              int cg = add_cgroup(r->cgroup_id, r->cgroup_path);
+              if (cg >= 0 && thread_cgroup_ids[r->num] == r->cgroup_id)
+                {
+                  post_thread_cgroup(r->num, cg);
+                }
+              free(r->cgroup_path);
+            }
+          else if (r->pid != -1 || r->tid == 0)
+            { // a thread that exited before /proc was read is left to BPF,
+              // but the swapper is never found in /proc
+              add_user(r->uid, &r->user_name[0]);
+              add_process(r->pid, r->uid, &r->process_name[0]);
+              if (thread_pids[r->num] == PID_UNRESOLVED)
+                {
+                  post_thread_process(r->num, r->pid);
+                }
+            }
+
+          resolution *n = r->next;
+          free(r);
+          r = n;
+        }
+      publish_entries();
+    }
+}
+
+
+/**
+ * Start the resolver thread.
+ */
+void start_resolver()
+{
+  index_map_clear(&resolved_processes);
+  index_map_clear(&resolved_users);
+  index_map_clear(&resolved_cgroups);
+  resolver_stop = false;
+  resolver_running = pthread_create(&resolver_thread, NULL, resolver, NULL) == 0;
+  if (!resolver_running)
+    {
+      fprintf(stderr, "Failed to start resolver thread\n");
+    }
+}
+
+
+/**
+ * Stop the resolver thread after it resolved all pending requests and post
+ * the results.
+ */
+void stop_resolver()
+{
+  if (resolver_running)
+    {
+      pthread_mutex_lock(&resolver_lock);
+      resolver_stop = true;
+      pthread_cond_signal(&resolver_cond);
+      pthread_mutex_unlock(&resolver_lock);
+      pthread_join(resolver_thread, NULL);
+      resolver_running = false;
+    }
+  post_resolved();
+}
+
+
 void add_thread_name(int num,
                      char tname[16])
 {
   struct entry en;
   memset(&en, 0, sizeof(en));
   en.untimed.kind = ENTRY_KIND_THREAD_NAME;
-  en.untimed.payload.tn.t_num = (uint16_t) num;
+  en.untimed.payload.tn.t_num    = (uint16_t) num;
+  en.untimed.payload.tn.t_num_hi = (uint8_t) (num >> 16);
 
   char name[MAX_THREAD_NAME_LENGTH+1];
   memset(&name, 0, sizeof(name));
@@ -618,27 +1371,115 @@ void add_thread_name(int num,
 }
 
 
+/**
+ * Record that thread number num is a thread of process tgid as reported by
+ * BPF.  If the process is known, post an entry of ENTRY_KIND_THREAD_PROCESS,
+ * otherwise ask the resolver thread for the names of the process and its user
+ * and let post_resolved() post it.
+ *
+ * @param num a thread number as returned by add_thread()
+ *
+ * @param tgid the process of the thread, PID_UNRESOLVED if not known.
+ */
+void add_thread_tgid(int num, pid_t tgid)
+{
+  if (num >= 0 &&
+      tgid != PID_UNRESOLVED &&
+      thread_pids [num] == PID_UNRESOLVED &&
+      thread_tgids[num] == PID_UNRESOLVED)
+    {
+      thread_tgids[num] = tgid;
+      if (process_index(tgid) >= 0)
+        {
+          post_thread_process(num, tgid);
+        }
+      else
+        {
+          resolve_later(num, thread_tids[num], tgid, 0);
+        }
+    }
+}
+
+
+/**
+ * The process of thread number num as far as known, PID_UNRESOLVED if not
+ * known yet.
+ */
+pid_t thread_process(int num)
+{
+  return thread_pids[num] != PID_UNRESOLVED ? thread_pids[num] : thread_tgids[num];
+}
+
+
 /**
  * Check if thread tid was already encountered. If not, create and post an
- * entry of ENTRY_KIND_THREAD for this process.
+ * entry of ENTRY_KIND_THREAD for this thread.  Its process is set by
+ * add_thread_tgid() once BPF reports it, or it is found by the resolver
+ * thread via /proc if the thread was not the current task of the event.
+ *
+ * If BPF reports a process for tid that differs from the one known, the tid
+ * was reused after the thread exited, so a new thread is created for it.
+ *
+ * @param tgid the process of tid as reported by BPF if tid is the current
+ * task of the event, PID_UNRESOLVED otherwise.
  */
-int add_thread(pid_t tid, char name[16])
+int add_thread(pid_t tid, char name[16], pid_t tgid)
 {
   int num = thread_index(tid);
-  if (num < 0 && num_threads < MAX_NUM_THREADS)
+  int old = num;
+  if (num >= 0 &&
+      tid != 0 &&
+      tgid != PID_UNRESOLVED &&
+      thread_process(num) != PID_UNRESOLVED &&
+      thread_process(num) != tgid)
+    { // reused tid
+      num = -1;
+    }
+  if (num < 0 && num_threads == threads_capacity)
     {
-      pid_t pid = get_tgid(tid);
-      add_process(pid);
-
+      int c = next_capacity(threads_capacity);
+      if (grow((void **) &thread_tids      , c, sizeof(pid_t)) &&
+          grow((void **) &thread_pids      , c, sizeof(pid_t)) &&
+          grow((void **) &thread_tgids     , c, sizeof(pid_t)) &&
+          grow((void **) &thread_cgroup_ids, c, sizeof(uint64_t)) &&
+          grow((void **) &thread_names     , c, MAX_THREAD_NAME_LENGTH))
+        {
+          threads_capacity = c;
+        }
+    }
+  if (num < 0 &&
+      num_threads < threads_capacity &&
+      num_threads < MAX_NUM_THREADS &&
+      (old >= 0 || index_map_put(&thread_map, (uint64_t) (uint32_t) tid, num_threads)))
+    {
+      if (old >= 0)
+        {
+          index_map_set(&thread_map, (uint64_t) (uint32_t) tid, num_threads);
+        }
       num = num_threads;
       thread_tids[num_threads] = tid;
-      thread_pids[num_threads] = pid;
+      thread_pids[num_threads] = PID_UNRESOLVED;
+      thread_tgids[num_threads] = PID_UNRESOLVED;
+      thread_cgroup_ids[num_threads] = 0;
+      memset(&thread_names[num_threads*MAX_THREAD_NAME_LENGTH], 0, MAX_THREAD_NAME_LENGTH);
       num_threads++;
       struct entry en;
       en.untimed.kind = ENTRY_KIND_THREAD;
       en.untimed.payload.t.tid = tid;
-      en.untimed.payload.t.pid = pid;
+      en.untimed.payload.t.pid = PID_UNRESOLVED;
       post_entry(&en);
+      if (tgid == PID_UNRESOLVED || tid == 0)
+        { // the swapper's tgid 0 is no process, so it is resolved as before
+          resolve_later(num, tid, PID_UNRESOLVED, 0);
+        }
+    }
+  if (num < 0)
+    { // out of memory or numbers, keep using the old thread, if any
+      num = old;
+    }
+  if (tid != 0)
+    {
+      add_thread_tgid(num, tgid);
     }
   if (num >= 0 && name[0]!=0 && strncmp(name, &thread_names[num*MAX_THREAD_NAME_LENGTH], sizeof(*name))!=0)
     {
@@ -680,31 +1521,42 @@ int handle_event(void *ctx, void *data, size_t data_sz)
           else if (e->event_kind == RB_EVENT_SCHED_SWITCH)
             {
               kind = ENTRY_KIND_SCHED_SWITCH;
-              en.timed.payload.ss.old_t_num = add_thread(e->old_pid, (char*) &e->old_name);
-              en.timed.payload.ss.new_t_num = add_thread(e->new_pid, (char*) &e->comm    );
-              en.timed.payload.ss.cpu_id    = e->cpu_id;
+              int old_num = add_thread(e->old_pid, (char*) &e->old_name, e->tgid);
+              add_thread_cgroup(old_num, e->cgroup_id);
+              int new_num = add_thread(e->new_pid, (char*) &e->comm    , PID_UNRESOLVED);
+              en.timed.payload.ss.old_t_num    = (uint16_t) old_num;
+              en.timed.payload.ss.old_t_num_hi = (uint8_t) (old_num >> 16);
+              en.timed.payload.ss.new_t_num    = (uint16_t) new_num;
+              en.timed.payload.ss.new_t_num_hi = (uint8_t) (new_num >> 16);
+              en.timed.payload.ss.cpu_id       = e->cpu_id;
             }
           else if (e->event_kind == RB_EVENT_SCHED_WAKEUP ||
                    e->event_kind == RB_EVENT_SCHED_WAKING    )
             {
               kind = e->event_kind == RB_EVENT_SCHED_WAKEUP ? ENTRY_KIND_SCHED_WAKEUP :
                      e->event_kind == RB_EVENT_SCHED_WAKING ? ENTRY_KIND_SCHED_WAKING : -1;
-              en.timed.payload.sw.causing_t_num = add_thread(e->old_pid, (char*) &e->old_name);
-              en.timed.payload.sw.new_t_num     = add_thread(e->new_pid, (char*) &e->comm    );
-              en.timed.payload.sw.cpu_id        = e->cpu_id;
+              int causing_num = add_thread(e->old_pid, (char*) &e->old_name, e->tgid);
+              add_thread_cgroup(causing_num, e->cgroup_id);
+              int new_num = add_thread(e->new_pid, (char*) &e->comm    , PID_UNRESOLVED);
+              en.timed.payload.sw.causing_t_num    = (uint16_t) causing_num;
+              en.timed.payload.sw.causing_t_num_hi = (uint8_t) (causing_num >> 16);
+              en.timed.payload.sw.new_t_num        = (uint16_t) new_num;
+              en.timed.payload.sw.new_t_num_hi     = (uint8_t) (new_num >> 16);
+              en.timed.payload.sw.cpu_id           = e->cpu_id;
             }
           else if (e->event_kind == RB_EVENT_FUZION_USER)
             {
               memcpy(&(str[0*16]), &e->comm    [0], 16);
               memcpy(&(str[1*16]), &e->old_name[0], 16);
               str[2*16] = 0;
-              add_thread(e->new_pid, "");
+              add_thread(e->new_pid, "", e->tgid);
               kind = ENTRY_KIND_USER_EVENT;
               int num = thread_index(e->new_pid);
-              if (num >= 0 && num <= 0xffff)
+              if (num >= 0)
                 {
                   struct entry *n = NULL;
-                  en.timed.payload.ue.t_num = (uint16_t) num;
+                  en.timed.payload.ue.t_num    = (uint16_t) num;
+                  en.timed.payload.ue.t_num_hi = (uint8_t) (num >> 16);
                   en.timed.payload.ue.col = (uint8_t) e->new_pri;
                   memcpy(&en.timed.payload.ue.msg, &str, sizeof(en.timed.payload.ue.msg));
                   if (strlen(str) > sizeof(en.timed.payload.ue.msg))
@@ -727,6 +1579,7 @@ int handle_event(void *ctx, void *data, size_t data_sz)
               post_entry(&en);
               post_more_chars(more_chars);
             }
+          publish_entries();
         }
     }
   return 0;
@@ -767,6 +1620,11 @@ void feeze_record(const char* lib_fuzion,
   num_threads = 0;
   num_processes = 0;
   num_users = 0;
+  num_cgroups = 0;
+  index_map_clear(&thread_map);
+  index_map_clear(&process_map);
+  index_map_clear(&user_map);
+  index_map_clear(&cgroup_map);
   finishing = false;
   shmem_size = shmem_size0;
 
@@ -805,10 +1663,16 @@ void feeze_record(const char* lib_fuzion,
   shmem->entry_start_offset = entry_start_offset;
   shmem->entry_size = entry_size;
   shmem->done = (char) 0;
+  shmem->format = (char) FORMAT_WIDE;
   // atomic_thread_fence(std::memory_order_release);
   __sync_synchronize();
   shmem->size = shmem_size;
 
+  post_cpu_topology();
+  publish_entries();
+
+  start_resolver();
+
   struct feeze_recorder_bpf *skel;
 
   /* Set up libbpf errors and debug info callback */
@@ -867,14 +1731,15 @@ void feeze_record(const char* lib_fuzion,
   while (!finishing)
     {
       err = ring_buffer__poll(rb, 0 /* timeout, ms */);
+      post_resolved();
 
       if (err < 0)
         {
           fprintf(stderr, "Error polling ring buffer: %s (%d)\n", strerror(err), err);
           finishing = true;
         }
-      else
-        {
+      else if (err == 0)
+        { // sleep only if the ring buffer was empty, keep draining it otherwise
           uint64_t ms_poll_delay = 10LL; // NYI: Make this configurable from Feeze GUI
           uint64_t nanos = ms_poll_delay * 1000000LL;
           uint64_t s  = nanos /   1000000000LL;
@@ -900,6 +1765,7 @@ void feeze_record(const char* lib_fuzion,
     }
   if (shmem != MAP_FAILED)
     {
+      stop_resolver();
       shmem->done = (char) 1;
       __sync_synchronize();
     }
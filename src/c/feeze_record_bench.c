@@ -0,0 +1,305 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Source of feeze_record_bench.c
+ *
+ * Benchmark of the event handling of the feeze recorder: feeds synthetic
+ * ring buffer events to handle_event() and checks that these are consumed
+ * faster than a given event rate.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ *
+ *---------------------------------------------------------------------*/
+
+#include <stdbool.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+#include <dirent.h>
+#include <sys/types.h>
+#include <linux/types.h>
+
+#include "feeze_recorder_common.h"
+
+
+// defined in feeze_record.c:
+extern struct shared_buffer *shmem;
+extern uint64_t shmem_size;
+extern uint64_t eventcount;
+int handle_event(void *ctx, void *data, size_t data_sz);
+void start_resolver();
+void stop_resolver();
+void post_resolved();
+
+
+#define SHARED_BUFFER_HEADER_SIZE 0x20
+#define ENTRY_SIZE 0x10
+
+// first tid used for synthetic threads, chosen above PID_MAX_LIMIT such that
+// /proc lookups for these fail fast and do not depend on the running system.
+// All synthetic threads belong to process FIRST_TID, which is not found either.
+#define FIRST_TID (1 << 22)
+
+// cgroup id used for all events with synthetic threads
+#define CGROUP_ID 1
+
+// number of different cgroup ids used for real threads, such that the paths
+// of several new cgroups are looked up
+#define NUM_REAL_CGROUPS 16
+
+// number of events handled by one poll of the ring buffer, the results of the
+// resolver thread are posted after every poll like in feeze_record()
+#define EVENTS_PER_POLL 64
+
+// number of different events that are created and then handled repeatedly
+#define NUM_PREPARED_EVENTS (1 << 16)
+
+
+/**
+ * Current time in ns from CLOCK_MONOTONIC.
+ */
+static uint64_t now_ns()
+{
+  struct timespec t;
+  clock_gettime(CLOCK_MONOTONIC, &t);
+  return (uint64_t) t.tv_sec * 1000000000ULL + (uint64_t) t.tv_nsec;
+}
+
+
+/**
+ * Simple xorshift random number generator, to get the same events on every
+ * run.
+ */
+static uint64_t rnd_state = 0x2545f4914f6cdd1dULL;
+static uint32_t rnd(uint32_t n)
+{
+  rnd_state ^= rnd_state << 13;
+  rnd_state ^= rnd_state >> 7;
+  rnd_state ^= rnd_state << 17;
+  return (uint32_t) (rnd_state % n);
+}
+
+
+/**
+ * Find up to n tids of threads running on this system and their processes.
+ *
+ * @return the number of tids stored in tids and pids.
+ */
+static int real_tids(pid_t *tids, pid_t *pids, int n)
+{
+  int res = 0;
+  DIR *proc = opendir("/proc");
+  struct dirent *p;
+  while (proc != NULL && res < n && (p = readdir(proc)) != NULL)
+    {
+      pid_t pid = atoi(p->d_name);
+      char path[64];
+      snprintf(path, sizeof(path), "/proc/%d/task", pid);
+      DIR *task = pid > 0 ? opendir(path) : NULL;
+      struct dirent *t;
+      while (task != NULL && res < n && (t = readdir(task)) != NULL)
+        {
+          pid_t tid = atoi(t->d_name);
+          if (tid > 0)
+            {
+              tids[res] = tid;
+              pids[res] = pid;
+              res++;
+            }
+        }
+      if (task != NULL)
+        {
+          closedir(task);
+        }
+    }
+  if (proc != NULL)
+    {
+      closedir(proc);
+    }
+  return res;
+}
+
+
+/**
+ * Fill e with an event of given kind between threads number old_t and new_t
+ * of tids, -1 for the swapper.  pids are the processes of tids.
+ */
+static void make_event(struct event *e, int kind, pid_t *tids, pid_t *pids, bool real, int old_t, int new_t, int cpu, uint64_t ns)
+{
+  memset(e, 0, sizeof(*e));
+  e->event_kind = kind;
+  e->old_pid = old_t < 0 ? 0 : tids[old_t];
+  e->tgid    = old_t < 0 ? 0 : pids[old_t];
+  e->new_pid = new_t < 0 ? 0 : tids[new_t];
+  snprintf(e->old_name, sizeof(e->old_name), old_t < 0 ? "swapper/%u" : "worker-%u", old_t < 0 ? cpu : old_t);
+  snprintf(e->comm    , sizeof(e->comm    ), new_t < 0 ? "swapper/%u" : "worker-%u", new_t < 0 ? cpu : new_t);
+  e->ns = ns;
+  e->cpu_id = cpu;
+  e->cgroup_id = !real ? CGROUP_ID : 1 + (old_t < 0 ? 0 : old_t % NUM_REAL_CGROUPS);
+}
+
+
+/**
+ * Pass event e to the recorder, post the results of the resolver thread after
+ * every EVENTS_PER_POLL events.
+ */
+static void handle(struct event *e, uint64_t i)
+{
+  handle_event(NULL, e, sizeof(*e));
+  if (i % EVENTS_PER_POLL == EVENTS_PER_POLL - 1)
+    {
+      post_resolved();
+    }
+}
+
+
+/**
+ * Run the benchmark.
+ *
+ * usage: feeze_record_bench [<events per second> [<threads> [<events> [real]]]]
+ *
+ * First, every thread runs once such that the recorder sees all threads, then
+ * the time to handle <events> random switches and wakeups between known
+ * threads is measured.  The default of 10000 threads is more than the up to
+ * 4096 threads older recorders found by linear search.
+ *
+ * The processes and cgroups of new threads are found by the resolver thread
+ * while the events are handled, the results are posted after every
+ * EVENTS_PER_POLL events, and both are included in the measured times.
+ *
+ * By default, synthetic tids are used for which all /proc lookups fail.  With
+ * "real", the tids of up to <threads> threads running on this system are used,
+ * so the resolver finds real processes, users and cgroup paths.
+ *
+ * @return 0 if the events were handled at least at the given rate, 1
+ * otherwise.
+ */
+int main(int argc, char *argv[])
+{
+  uint64_t target      = argc > 1 ? strtoull(argv[1], NULL, 10) : 500000;
+  int      num_threads = argc > 2 ? atoi(argv[2])               : 10000;
+  uint64_t num_events  = argc > 3 ? strtoull(argv[3], NULL, 10) : 5000000;
+  bool     real        = argc > 4 && strcmp(argv[4], "real") == 0;
+  int      num_cpus    = 64;
+
+  pid_t *tids = calloc(num_threads, sizeof(pid_t));
+  pid_t *pids = calloc(num_threads, sizeof(pid_t));
+  if (tids == NULL || pids == NULL)
+    {
+      fprintf(stderr, "*** failed to allocate tids\n");
+      return 1;
+    }
+  if (real)
+    {
+      num_threads = real_tids(tids, pids, num_threads);
+    }
+  else
+    {
+      for (int t = 0; t < num_threads; t++)
+        {
+          tids[t] = FIRST_TID + t;
+          pids[t] = FIRST_TID;
+        }
+    }
+  if (num_threads <= 0)
+    {
+      fprintf(stderr, "*** no threads found\n");
+      return 1;
+    }
+
+  // the first event of a thread creates a few entries: thread, thread name,
+  // more chars, thread process, thread cgroup, switch, a process and its name
+  // and a cgroup and its path.  Later events create one entry:
+  shmem_size = SHARED_BUFFER_HEADER_SIZE + (num_events + 64 * (uint64_t) num_threads + 16384) * ENTRY_SIZE;
+  shmem = calloc(1, shmem_size);
+  if (shmem == NULL)
+    {
+      fprintf(stderr, "*** failed to allocate %lu bytes\n", (unsigned long) shmem_size);
+      return 1;
+    }
+
+  start_resolver();
+  struct event e;
+  uint64_t ns = 1000000000ULL;
+  uint64_t t0 = now_ns();
+  for (int t = 0; t < num_threads; t++)
+    {
+      make_event(&e, RB_EVENT_SCHED_SWITCH, tids, pids, real, -1, t, t % num_cpus, ns++);
+      handle(&e, t);
+    }
+  uint64_t t01 = now_ns();
+
+  // create the events up front such that only handle_event() is measured:
+  struct event *events = calloc(NUM_PREPARED_EVENTS, sizeof(struct event));
+  int *running = calloc(num_cpus, sizeof(int));
+  if (events == NULL || running == NULL)
+    {
+      fprintf(stderr, "*** failed to allocate events\n");
+      return 1;
+    }
+  for (int cpu = 0; cpu < num_cpus; cpu++)
+    {
+      running[cpu] = -1;
+    }
+  for (int i = 0; i < NUM_PREPARED_EVENTS; i++)
+    {
+      int cpu = rnd(num_cpus);
+      int t = rnd(num_threads);
+      if (rnd(3) == 0)
+        {
+          make_event(&events[i], RB_EVENT_SCHED_WAKING, tids, pids, real, running[cpu], t, cpu, ns++);
+        }
+      else
+        {
+          int n = running[cpu] < 0 ? t : -1;
+          make_event(&events[i], RB_EVENT_SCHED_SWITCH, tids, pids, real, running[cpu], n, cpu, ns++);
+          running[cpu] = n;
+        }
+    }
+
+  uint64_t t1 = now_ns();
+  for (uint64_t i = 0; i < num_events; i++)
+    {
+      handle(&events[i % NUM_PREPARED_EVENTS], i);
+    }
+  uint64_t t2 = now_ns();
+  stop_resolver();
+  uint64_t t3 = now_ns();
+
+  double new_threads_rate = (double) num_threads * 1e9 / (double) (t01 - t0);
+  double events_rate      = (double) num_events  * 1e9 / (double) (t2 - t1);
+  printf("%d new %s threads:  %10.0f threads/s\n", num_threads, real ? "real" : "synthetic", new_threads_rate);
+  printf("%lu events:    %10.0f events/s, %.1f ns/event\n",
+         (unsigned long) num_events, events_rate, (double) (t2 - t1) / (double) num_events);
+  printf("resolver done %.1f ms after last event\n", (double) (t3 - t2) / 1e6);
+  printf("%lu entries written\n", (unsigned long) eventcount);
+  bool full = SHARED_BUFFER_HEADER_SIZE + (eventcount + 1) * ENTRY_SIZE > shmem_size;
+  bool ok = !full && events_rate >= (double) target;
+  printf("%s: target is %lu events/s\n",
+         full ? "*** BUFFER FULL, events were dropped" :
+         ok   ? "OK"
+              : "*** TOO SLOW",
+         (unsigned long) target);
+  return ok ? 0 : 1;
+}
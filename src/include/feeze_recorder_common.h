@@ -57,6 +57,8 @@ struct event
   char	comm[16 /* TASK_COMM_LEN */];
   __u64 ns;
   __u32 cpu_id;
+  __u64 cgroup_id;  // cgroup of the current task, i.e., the old thread of a switch or the causing thread of a wakeup, 0 if unknown
+  pid_t tgid;       // process of the current task, i.e., of old_pid, or of new_pid for a user event
 };
 
 #endif /* __FEEZE_RECORDER_COMMON_H */
@@ -0,0 +1,142 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.ActionIndex
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.List;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * ActionIndex stores the actions of many ActionSubSets in one array in
+ * compressed sparse row format: the actions of lane l are at
+ * _ats[_offsets[l].._offsets[l+1]-1].
+ *
+ * While data is read, every ActionSubSet grows its own array by doubling,
+ * which wastes up to half of the memory and scatters the actions over the
+ * heap.  Once all data was read, the actions are moved into an ActionIndex
+ * and the ActionSubSets become views of it.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class ActionIndex extends ANY
+{
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * Index of the first action of every lane, _offsets[lanes.size()] is the
+   * total number of actions.
+   */
+  final int[] _offsets;
+
+
+  /**
+   * The actions of all lanes.
+   */
+  final int[] _ats;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create index for the given lanes and make the lanes use it.  Must be
+   * called while holding the lock on the Data.
+   *
+   * @param lanes the action sub sets, their total number of actions must be
+   * below Integer.MAX_VALUE.
+   */
+  ActionIndex(List<? extends ActionSubSet> lanes)
+  {
+    _offsets = new int[lanes.size() + 1];
+    for (var l = 0; l < lanes.size(); l++)
+      {
+        _offsets[l+1] = _offsets[l] + lanes.get(l).numActions();
+      }
+    _ats = new int[_offsets[lanes.size()]];
+    for (var l = 0; l < lanes.size(); l++)
+      {
+        var s = lanes.get(l);
+        System.arraycopy(s._at, s._atBase, _ats, _offsets[l], s.numActions());
+        s.useShared(_ats, _offsets[l], s.numActions());
+      }
+  }
+
+
+  /**
+   * Create index from given offsets and actions, e.g., as read by
+   * SidecarIndex, and make the lanes use it.  Must be called while holding the
+   * lock on the Data.
+   *
+   * @param lanes the action sub sets, lanes.size() + 1 == offsets.length.
+   *
+   * @param offsets the index of the first action of every lane in ats.
+   *
+   * @param ats the actions of all lanes.
+   */
+  ActionIndex(List<? extends ActionSubSet> lanes, int[] offsets, int[] ats)
+  {
+    if (PRECONDITIONS) require
+      (lanes.size() + 1 == offsets.length,
+       offsets[lanes.size()] == ats.length);
+
+    _offsets = offsets;
+    _ats = ats;
+    for (var l = 0; l < lanes.size(); l++)
+      {
+        lanes.get(l).useShared(_ats, _offsets[l], _offsets[l+1] - _offsets[l]);
+      }
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Total number of actions of all lanes, i.e., the number of slots the lanes
+   * would need without the slack of their own arrays.
+   *
+   * @param lanes the action sub sets
+   */
+  static long totalActions(List<? extends ActionSubSet> lanes)
+  {
+    long res = 0;
+    for (var s : lanes)
+      {
+        res += s.numActions();
+      }
+    return res;
+  }
+
+}
@@ -27,7 +27,9 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>
 
 package dev.feeze;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 
 import dev.flang.util.ANY;
 
@@ -43,10 +45,85 @@ import dev.flang.util.ANY;
 abstract class ActionSubSet extends ANY implements Offsets
 {
 
+  /**
+   * The aggregates provided by aggregate() and their names.
+   */
+  static final int ON_CPU           = 0;
+  static final int SWITCHES         = 1;
+  static final int WAKEUPS_RECEIVED = 2;
+  static final int WAKEUPS_CAUSED   = 3;
+  static final int USER_EVENTS      = 4;
+  static final String[] AGGREGATE_NAMES = { "on-CPU",
+                                            "switches",
+                                            "wakeups received",
+                                            "wakeups caused",
+                                            "user events" };
+
+
+  /**
+   * log2 of the width in ns of a bucket at level 0 of the pyramid created by
+   * schedPyramid(), i.e., about 16ms, and its number of levels.
+   */
+  static final int PYRAMID_BASE_LOG2 = 24;
+  static final int PYRAMID_LEVELS = 22;
+
   final Data _data;
   int _num_actions = 0;
 
+  /**
+   * The entry indices of the actions are _at[_atBase.._atBase+_num_actions-1].
+   * _at is owned by this and grown on demand unless _shared is set, then _at is
+   * the array of an ActionIndex that is shared by many ActionSubSets.
+   */
   int[] _at = new int[16];
+  int _atBase = 0;
+  boolean _shared = false;
+
+
+  /**
+   * Prefix sums over the actions: _onCpuUntil[i] is the time in ns this was
+   * running between action 0 and action i, _switchesBefore[i] etc. count the
+   * actions 0..i-1, _running bit i is set if this is running after action i.
+   *
+   * These are extended lazily by ensureColumns() since the state of a
+   * CumulativeThread is known only after all of its actions were added.
+   */
+  long[] _onCpuUntil = new long[1];
+  int[] _switchesBefore = new int[1];
+  int[] _wakeupsBefore = new int[1];
+  int[] _userEventsBefore = new int[1];
+  final BitSet _running = new BitSet();
+
+
+  /**
+   * Per action: the resolved state after this action as the ordinal of a
+   * SchedulingPanorama.ThreadState and the index of the next scheduler action,
+   * -1 if there is none yet.
+   */
+  byte[] _state = new byte[1];
+  int[] _nextSched = new int[1];
+
+
+  /**
+   * Number of actions for which the prefix sums and the state columns are
+   * valid.
+   */
+  int _prefixValid = 0;
+
+
+  /**
+   * SCHED_WAKING entries caused by this, sorted by time.
+   */
+  int[] _causedAt = new int[4];
+  int _numCaused = 0;
+
+
+  /**
+   * The number of scheduler actions per time bucket, created by
+   * schedPyramid() on first use and then updated by addAction() and
+   * addActions(), null if not created yet.
+   */
+  SummaryPyramid _schedPyramid = null;
 
 
   ActionSubSet(Data data)
@@ -65,17 +142,88 @@ abstract class ActionSubSet extends ANY implements Offsets
       (i >= 0,
        i < numActions());
 
-    return _at[i];
+    return _at[_atBase + i];
   }
 
-  void addAction(int at)
+
+  /**
+   * The number of actions that can be stored without growing _at.
+   */
+  int capacity()
+  {
+    return _shared ? _num_actions : _at.length;
+  }
+
+
+  /**
+   * Use ats at given offset to store the actions, used by ActionIndex.
+   *
+   * @param ats an array that contains the actions of this at base..base+n-1.
+   *
+   * @param base the index of the first action in ats.
+   *
+   * @param n the number of actions, numActions() unless the actions are
+   * restored from a SidecarIndex.
+   */
+  void useShared(int[] ats, int base, int n)
+  {
+    _at = ats;
+    _atBase = base;
+    _num_actions = n;
+    _shared = true;
+    _schedPyramid = null;
+    trimColumns();
+  }
+
+
+  /**
+   * Drop the slack of the per-action columns that were sized for the capacity
+   * of our own _at array, called when the actions were moved into an
+   * ActionIndex.  Must be called while holding the lock on the Data.
+   */
+  void trimColumns()
+  {
+    var l = numActions() + 1;
+    if (_onCpuUntil.length > l)
+      {
+        _onCpuUntil       = Arrays.copyOf(_onCpuUntil      , l);
+        _switchesBefore   = Arrays.copyOf(_switchesBefore  , l);
+        _wakeupsBefore    = Arrays.copyOf(_wakeupsBefore   , l);
+        _userEventsBefore = Arrays.copyOf(_userEventsBefore, l);
+        _state            = Arrays.copyOf(_state           , l);
+        _nextSched        = Arrays.copyOf(_nextSched       , l);
+      }
+    if (_causedAt.length > Math.max(1, _numCaused))
+      {
+        _causedAt = Arrays.copyOf(_causedAt, Math.max(1, _numCaused));
+      }
+  }
+
+
+  /**
+   * Make sure our own _at has room for n actions.
+   */
+  private void ensureCapacity(int n)
   {
-    if (_num_actions >= _at.length)
+    if (_shared)
+      { // actions added after the index was built, e.g., for a new AggregateLane, so use our own copy again:
+        _at = Arrays.copyOfRange(_at, _atBase, _atBase + Math.max(16, 2*n));
+        _atBase = 0;
+        _shared = false;
+      }
+    else if (n > _at.length)
       {
-        _at = Arrays.copyOf(_at, _at.length*2);
+        _at = Arrays.copyOf(_at, Math.max(n, _at.length*2));
       }
+  }
+
+
+  void addAction(int at)
+  {
+    ensureCapacity(_num_actions + 1);
     _at[_num_actions] = at;
     _num_actions++;
+    countSched(at);
     // fix order to be strictly increasing nanos. This might have gotten mixed
     // up due to race conditions writing to ring buffers.
     var n = _num_actions-1;
@@ -84,6 +232,324 @@ abstract class ActionSubSet extends ANY implements Offsets
         var x = _at[n]; _at[n] = _at[n-1]; _at[n-1] = x;
         n--;
       }
+    _prefixValid = Math.min(_prefixValid, Math.max(0, n-1));
+  }
+
+
+  /**
+   * The index addAction(at) would sort an action with the time of entry at to,
+   * i.e., the number of actions at or before that time.
+   */
+  int insertionPoint(int at)
+  {
+    var ns = _data.nanosAtSwitch(at);
+    var l = 0;
+    var r = numActions();
+    while (l < r)
+      {
+        var m = (l + r) >>> 1;
+        if (_data.nanosAtSwitch(at(m)) - ns <= 0) { l = m + 1; }
+        else                                      { r = m;     }
+      }
+    return l;
+  }
+
+
+  /**
+   * Add several actions in one pass that merges them into the actions from the
+   * end instead of sorting each of them to its position by addAction().
+   *
+   * @param ats the new actions sorted by Data.nanosAtSwitch.
+   */
+  void addActions(ArrayList<Integer> ats)
+  {
+    var i = _num_actions - 1;
+    var j = ats.size() - 1;
+    ensureCapacity(_num_actions + j + 1);
+    var k = _num_actions + j;
+    while (j >= 0)
+      {
+        var a = ats.get(j);
+        if (i >= 0 && _data.nanosAtSwitch(_at[i]) - _data.nanosAtSwitch(a) > 0)
+          {
+            _at[k--] = _at[i--];
+          }
+        else
+          {
+            _at[k--] = a;
+            j--;
+          }
+      }
+    _num_actions += ats.size();
+    _prefixValid = Math.min(_prefixValid, Math.max(0, k));
+    for (var a : ats)
+      {
+        countSched(a);
+      }
+  }
+
+
+  /**
+   * Count the action at entry at in _schedPyramid if it exists and at is a
+   * scheduler action.
+   */
+  private void countSched(int at)
+  {
+    var p = _schedPyramid;
+    if (p != null && _data.isSched(at))
+      {
+        p.add(_data.nanosAtSwitch(at) - _data.nanosMin(), 0);
+      }
+  }
+
+
+  /**
+   * The number of scheduler actions per time bucket relative to the start of
+   * the recording, used to draw at a coarse level of detail without visiting
+   * the actions.  Created from all actions on the first call.  Must be called
+   * while holding the lock on the Data.
+   */
+  SummaryPyramid schedPyramid()
+  {
+    if (_schedPyramid == null)
+      {
+        _schedPyramid = new SummaryPyramid(PYRAMID_BASE_LOG2, PYRAMID_LEVELS);
+        for (var i = 0; i < numActions(); i++)
+          {
+            countSched(at(i));
+          }
+      }
+    return _schedPyramid;
+  }
+
+
+  /**
+   * Record a SCHED_WAKING entry caused by this.
+   *
+   * @param at the index of the entry.
+   */
+  void addCaused(int at)
+  {
+    if (_numCaused >= _causedAt.length)
+      {
+        _causedAt = Arrays.copyOf(_causedAt, _causedAt.length*2);
+      }
+    var n = _numCaused;
+    _causedAt[n] = at;
+    _numCaused++;
+    while (n > 0 && _data.nanosAtSwitch(_causedAt[n]) < _data.nanosAtSwitch(_causedAt[n-1]))
+      {
+        var x = _causedAt[n]; _causedAt[n] = _causedAt[n-1]; _causedAt[n-1] = x;
+        n--;
+      }
+  }
+
+
+  /**
+   * Is this running after action i?  Only called for scheduler actions.
+   */
+  boolean runningAfter(int i)
+  {
+    return continuesRunning(i) || startsRunning(i) && !stopsRunning(i);
+  }
+
+
+  /**
+   * Time of action i as returned by Data.ns.
+   */
+  private long ns(int i)
+  {
+    return _data.nanosAtOrBefore(at(i));
+  }
+
+
+  /**
+   * The state after scheduler action i, computed from the entry.
+   */
+  private SchedulingPanorama.ThreadState computeState(int i)
+  {
+    return
+      stopsRunning(i)                     ? SchedulingPanorama.ThreadState.blocked :
+      startsRunning(i) || continuesRunning(i) ? SchedulingPanorama.ThreadState.running :
+      waking(i)                           ? SchedulingPanorama.ThreadState.waking  :
+      wakesup(i)                          ? SchedulingPanorama.ThreadState.wakesup
+                                          : SchedulingPanorama.ThreadState.error;
+  }
+
+
+  /**
+   * Extend the prefix sums and the state columns to cover all actions.
+   * Amortized O(1) per action unless actions are inserted before older ones.
+   */
+  void ensureColumns()
+  {
+    synchronized (_data)
+      {
+        var n = numActions();
+        if (_onCpuUntil.length < n + 1)
+          {
+            var l = Math.max(n + 1, capacity() + 1);
+            _onCpuUntil       = Arrays.copyOf(_onCpuUntil      , l);
+            _switchesBefore   = Arrays.copyOf(_switchesBefore  , l);
+            _wakeupsBefore    = Arrays.copyOf(_wakeupsBefore   , l);
+            _userEventsBefore = Arrays.copyOf(_userEventsBefore, l);
+            _state            = Arrays.copyOf(_state           , l);
+            _nextSched        = Arrays.copyOf(_nextSched       , l);
+          }
+        // actions before _prefixValid up to the last scheduler action might
+        // refer to a next scheduler action that is recomputed:
+        for (var j = _prefixValid - 1; j >= 0; j--)
+          {
+            _nextSched[j] = -1;
+            if (isSched(j))
+              {
+                break;
+              }
+          }
+        for (var i = _prefixValid; i < n; i++)
+          {
+            var sched = isSched(i);
+            var running = sched ? runningAfter(i) : i > 0 && _running.get(i-1);
+            _running.set(i, running);
+            _state[i] = (byte) (sched ? computeState(i).ordinal()
+                                      : i > 0 ? _state[i-1] : SchedulingPanorama.ThreadState.error.ordinal());
+            _nextSched[i] = -1;
+            if (sched)
+              {
+                for (var j = i-1; j >= 0 && _nextSched[j] < 0; j--)
+                  {
+                    _nextSched[j] = i;
+                  }
+              }
+            _switchesBefore  [i+1] = _switchesBefore  [i] + (sched && startsRunning(i) ? 1 : 0);
+            _wakeupsBefore   [i+1] = _wakeupsBefore   [i] + (sched && waking(i)       ? 1 : 0);
+            _userEventsBefore[i+1] = _userEventsBefore[i] + (isUserEvent(i)           ? 1 : 0);
+            if (i+1 < n)
+              {
+                _onCpuUntil[i+1] = _onCpuUntil[i] + (running ? Math.max(0, ns(i+1) - ns(i)) : 0);
+              }
+          }
+        // the last action will be followed by more during a live recording:
+        _prefixValid = Math.max(0, n-1);
+      }
+  }
+
+
+  /**
+   * The state after action i, i.e., after the last scheduler action at or
+   * before i, as the ordinal of a SchedulingPanorama.ThreadState.
+   */
+  int state(int i)
+  {
+    if (PRECONDITIONS) require
+      (i >= 0,
+       i < numActions());
+
+    if (i >= _prefixValid)
+      {
+        ensureColumns();
+      }
+    return _state[i];
+  }
+
+
+  /**
+   * Index of the last action at or before given time, -1 if none.
+   *
+   * @param ns a time as returned by Data.ns.
+   */
+  int lastActionAt(long ns)
+  {
+    var l = 0;
+    var r = numActions() - 1;
+    var res = -1;
+    while (l <= r)
+      {
+        var m = (l + r) >>> 1;
+        if (ns(m) <= ns) { res = m; l = m + 1; }
+        else             {          r = m - 1; }
+      }
+    return res;
+  }
+
+
+  /**
+   * The value of aggregate a from the first action until given time.  The
+   * prefix sums must be valid, see ensureColumns().
+   *
+   * @param a one of ON_CPU..USER_EVENTS
+   *
+   * @param ns a time as returned by Data.ns.
+   */
+  private long aggregateUntil(int a, long ns)
+  {
+    long res = 0;
+    if (a == WAKEUPS_CAUSED)
+      {
+        var l = 0;
+        var r = _numCaused - 1;
+        while (l <= r)
+          {
+            var m = (l + r) >>> 1;
+            if (_data.nanosAtSwitch(_causedAt[m]) <= ns) { res = m + 1; l = m + 1; }
+            else                                         {              r = m - 1; }
+          }
+      }
+    else
+      {
+        var k = lastActionAt(ns);
+        if (k >= 0)
+          {
+            res = switch (a)
+              {
+              case ON_CPU           -> _onCpuUntil[k] + (_running.get(k) ? Math.max(0, ns - ns(k)) : 0);
+              case SWITCHES         -> _switchesBefore  [k+1];
+              case WAKEUPS_RECEIVED -> _wakeupsBefore   [k+1];
+              case USER_EVENTS      -> _userEventsBefore[k+1];
+              default               -> 0;
+              };
+          }
+      }
+    return res;
+  }
+
+
+  /**
+   * The aggregates of this in the time span (from, to]: on-CPU time in ns and
+   * the number of switches in, SCHED_WAKING entries received and caused and
+   * user events.  Two binary searches per aggregate.
+   *
+   * @param from a time as returned by Data.ns
+   *
+   * @param to a time as returned by Data.ns, to >= from.
+   *
+   * @param res array of at least AGGREGATE_NAMES.length elements for the
+   * result.
+   *
+   * @return res
+   */
+  long[] aggregate(long from, long to, long[] res)
+  {
+    ensureColumns();
+    for (var a = 0; a < AGGREGATE_NAMES.length; a++)
+      {
+        res[a] = aggregateUntil(a, to) - aggregateUntil(a, from);
+      }
+    return res;
+  }
+
+
+  /**
+   * The time in ns this was running in the time span (from, to].
+   *
+   * @param from a time as returned by Data.ns
+   *
+   * @param to a time as returned by Data.ns, to >= from.
+   */
+  long onCpu(long from, long to)
+  {
+    ensureColumns();
+    return aggregateUntil(ON_CPU, to) - aggregateUntil(ON_CPU, from);
   }
 
 
@@ -102,10 +568,16 @@ abstract class ActionSubSet extends ANY implements Offsets
 
   public int nextStateChange(int i)
   {
-    var res = Math.min(numActions(), i+1);
-    while (res < numActions()  && !isSched(res))
+    var n = numActions();
+    var res = n;
+    if (i < n)
       {
-        res++;
+        if (i >= _prefixValid)
+          {
+            ensureColumns();
+          }
+        var ns = _nextSched[i];
+        res = ns < 0 ? n : ns;
       }
     return res;
   }
@@ -0,0 +1,293 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.AggregateLane
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.regex.Pattern;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * AggregateLane is a pseudo-thread showing the number of running threads of
+ * a group of threads: the threads of a process, the threads in a cgroup, the
+ * threads whose name matches a pattern or the threads running on a set of
+ * CPUs.
+ *
+ * Aggregate lanes are created by AggregateLanes and fed with the SCHED_SWITCH
+ * entries of their threads, the number of running threads is computed like
+ * for a CumulativeThread.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class AggregateLane extends CumulativeThread
+{
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The process whose threads are counted, null if not grouped by process.
+   */
+  final SystemProcess _process;
+
+
+  /**
+   * The cgroup whose threads are counted, null if not grouped by cgroup.
+   * A thread counts for the cgroup it was in at the time of each entry.
+   */
+  final SystemCgroup _cgroup;
+
+
+  /**
+   * The pattern thread names must match, null if not grouped by name.
+   */
+  final Pattern _pattern;
+
+
+  /**
+   * The CPU ids threads must run on, null if not grouped by CPUs.
+   */
+  final BitSet _cpuIds;
+
+
+  /**
+   * Name of this lane.
+   */
+  final String _name;
+
+
+  /**
+   * A name of a thread that was checked against _pattern: from the
+   * ENTRY_KIND_THREAD_NAME entry with index _from on, the name of the thread
+   * matches if _matches is set.
+   */
+  static final class NameMatch
+  {
+    final int _from;
+    final boolean _matches;
+    final NameMatch _prev;
+    NameMatch(int from, boolean matches, NameMatch prev)
+    {
+      _from = from;
+      _matches = matches;
+      _prev = prev;
+    }
+  }
+
+
+  /**
+   * Cache for the name pattern per SystemThread._originalNumber: the last name
+   * checked and the number of names checked.
+   */
+  NameMatch[] _names = new NameMatch[16];
+  int[] _namesChecked = new int[16];
+
+
+  /**
+   * Does the name of a thread without any name match _pattern?
+   */
+  final boolean _unnamedMatches;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create lane for the threads of process p.
+   */
+  AggregateLane(SystemProcess p)
+  {
+    this(p._user, p, null, null, null, "running in " + p);
+  }
+
+
+  /**
+   * Create lane for the threads in cgroup cg.
+   *
+   * @param u the pseudo-user this lane is shown under
+   */
+  AggregateLane(SystemUser u, SystemCgroup cg)
+  {
+    this(u, null, cg, null, null, "in cgroup " + cg);
+  }
+
+
+  /**
+   * Create lane for the threads whose name matches pattern.
+   *
+   * @param u the pseudo-user this lane is shown under
+   */
+  AggregateLane(SystemUser u, Pattern pattern)
+  {
+    this(u, null, null, pattern, null, "threads /" + pattern + "/");
+  }
+
+
+  /**
+   * Create lane for the threads running on the given CPUs.
+   *
+   * @param u the pseudo-user this lane is shown under
+   *
+   * @param cpuIds the CPU ids
+   *
+   * @param cpuList cpuIds as text like "0-3,8".
+   */
+  AggregateLane(SystemUser u, BitSet cpuIds, String cpuList)
+  {
+    this(u, null, null, null, cpuIds, "CPUs " + cpuList);
+  }
+
+
+  private AggregateLane(SystemUser u, SystemProcess p, SystemCgroup cg, Pattern pattern, BitSet cpuIds, String name)
+  {
+    super(u);
+    _process = p;
+    _cgroup = cg;
+    _pattern = pattern;
+    _cpuIds = cpuIds;
+    _name = name;
+    _unnamedMatches = pattern != null && pattern.matcher(SystemThread.UNKNOWN_NAME).find();
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Make sure _names caches the result for all names of thread t, including
+   * names set since the last call.  This must be called while holding the lock
+   * on the Data before isMine() is called for t, which may then be done from
+   * several threads in parallel.
+   */
+  void checkName(SystemThread t)
+  {
+    if (_pattern != null)
+      {
+        var n = t._originalNumber;
+        if (n >= _names.length)
+          {
+            var l = Math.max(n + 1, 2 * _names.length);
+            _names        = Arrays.copyOf(_names       , l);
+            _namesChecked = Arrays.copyOf(_namesChecked, l);
+          }
+        for (var i = _namesChecked[n]; i < t.numNames(); i++)
+          {
+            _names[n] = new NameMatch(t.nameEntry(i), _pattern.matcher(t.name(i)).find(), _names[n]);
+          }
+        _namesChecked[n] = t.numNames();
+      }
+  }
+
+
+  /**
+   * Does the name thread t had at the entry with given index match _pattern?
+   * The first name is used for earlier entries.
+   *
+   * @param t a thread checked by checkName()
+   *
+   * @param at an entry index
+   */
+  boolean nameMatches(SystemThread t, int at)
+  {
+    var n = t._originalNumber;
+    var m = n < _names.length ? _names[n] : null;
+    if (m == null)
+      {
+        return _unnamedMatches;
+      }
+    while (m._from > at && m._prev != null)
+      {
+        m = m._prev;
+      }
+    return m._matches;
+  }
+
+
+  /**
+   * Is t one of the threads counted by this at the given SCHED_SWITCH entry?
+   * A thread counts for the process it is in now, so a thread that was moved
+   * to its process by SystemThread.resolved() counts for that process for all
+   * of its entries.
+   *
+   * @param t the old or new thread of the entry
+   *
+   * @param at the index of the entry
+   */
+  @Override
+  boolean isMine(SystemThread t, int at)
+  {
+    return t != null && isMine(t, t._p, at);
+  }
+
+
+  /**
+   * Is t one of the threads counted by this at the given SCHED_SWITCH entry if
+   * t is in process p?
+   *
+   * @param t the old or new thread of the entry, not null
+   *
+   * @param p t's process, e.g., as seen when a sweep started
+   *
+   * @param at the index of the entry
+   */
+  boolean isMine(SystemThread t, SystemProcess p, int at)
+  {
+    return
+      !t.isSwapper() &&
+      (_process == null || p == _process) &&
+      (_cgroup  == null || t.cgroupAt(at) == _cgroup) &&
+      (_pattern == null || nameMatches(t, at)) &&
+      (_cpuIds  == null || _cpuIds.get(_data.cpu_id(at)));
+  }
+
+
+  @Override
+  public SystemProcess process()
+  {
+    return _process;
+  }
+
+
+  @Override
+  String description()
+  {
+    return "Number of threads " + _name;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return _name;
+  }
+
+}
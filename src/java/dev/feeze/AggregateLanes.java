@@ -0,0 +1,395 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.AggregateLanes
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+import javax.swing.SwingUtilities;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * AggregateLanes manages the AggregateLanes created by the user.
+ *
+ * New SCHED_SWITCH entries are passed to all lanes by Data.processNewData().
+ * When a lane is added, it is filled with the entries processed so far by one
+ * sweep over all entries that is split into chunks processed in parallel in
+ * the background.
+ *
+ * All methods but add() must be called while holding the lock on the Data.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class AggregateLanes extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * Number of entries per chunk of the parallel sweep.
+   */
+  static final int CHUNK_SIZE = 1 << 16;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The data this is working on.
+   */
+  final Data _data;
+
+
+  /**
+   * The lanes in the order they were added.
+   */
+  final ArrayList<AggregateLane> _lanes = new ArrayList<>();
+
+
+  /**
+   * The pseudo-user that lanes not grouped by process are shown under, null
+   * until it is needed.
+   */
+  SystemUser _user = null;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create aggregate lanes for given data.
+   */
+  AggregateLanes(Data data)
+  {
+    _data = data;
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * The pseudo-user that lanes not grouped by process are shown under.
+   */
+  SystemUser user()
+  {
+    if (_user == null)
+      {
+        _user = new SystemUser(_data, -1, "aggregates", _data._users.size());
+        _data._users.add(_user);
+      }
+    return _user;
+  }
+
+
+  /**
+   * Process a SCHED_SWITCH entry.
+   *
+   * @param at the index of the entry
+   *
+   * @param ot the thread that is switched out
+   *
+   * @param nt the thread that is switched in
+   */
+  void switched(int at, SystemThread ot, SystemThread nt)
+  {
+    for (var l : _lanes)
+      {
+        l.checkName(ot);
+        l.checkName(nt);
+        if (l.isMine(ot, at) || l.isMine(nt, at))
+          {
+            l.addAction(at);
+          }
+      }
+  }
+
+
+  /**
+   * Add lanes and fill them with the SCHED_SWITCH entries processed so far.
+   *
+   * The entries are collected by a parallel sweep in a background thread that
+   * does not hold the lock on the Data, so painting and reading new data may
+   * continue meanwhile.  Then the lanes are installed, and done is run in the
+   * AWT event dispatch thread.
+   *
+   * In contrast to the other methods, this must be called without holding the
+   * lock on the Data.
+   *
+   * @param lanes the new lanes.
+   *
+   * @param done action to run once the lanes were added.
+   */
+  void add(AggregateLane[] lanes, Runnable done)
+  {
+    int n;
+    SystemThread[] threads;
+    SystemProcess[] processes;
+    synchronized (_data)
+      {
+        n = _data.names_processed;
+        threads = _data._unsortedThreads.toArray(new SystemThread[0]);
+        processes = new SystemProcess[threads.length];
+        for (var i = 0; i < threads.length; i++)
+          {
+            processes[i] = threads[i]._p;
+          }
+        for (var l : lanes)
+          {
+            for (var t : threads)
+              {
+                l.checkName(t);
+              }
+          }
+      }
+    var worker = new Thread(() ->
+      {
+        var found = sweep(lanes, threads, processes, n);
+        synchronized (_data)
+          {
+            install(lanes, found, threads, processes, n);
+          }
+        SwingUtilities.invokeLater(done);
+      }, "aggregate lanes");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+
+  /**
+   * Sweep over the entries 0..n-1 in parallel, collecting the matching
+   * SCHED_SWITCH entries per chunk and lane.  Reads only the entries, which do
+   * not change, threads and data of the lanes that is immutable or not changed
+   * before the lanes are installed.  The processes of the threads are taken
+   * from processes since threads may be moved to their process meanwhile.
+   *
+   * @param lanes the new lanes.
+   *
+   * @param threads the threads that occur in entries 0..n-1 indexed by
+   * SystemThread._originalNumber, with names checked by the lanes.
+   *
+   * @param processes the processes of threads when the sweep started.
+   *
+   * @param n the number of entries to sweep over.
+   *
+   * @return the matching entries per chunk and lane.
+   */
+  private int[][][] sweep(AggregateLane[] lanes, SystemThread[] threads, SystemProcess[] processes, int n)
+  {
+    var numChunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    var found = new int[numChunks][][];
+    IntStream.range(0, numChunks).parallel().forEach(c ->
+      {
+        var res = new int[lanes.length][];
+        var cnt = new int[lanes.length];
+        for (var i = 0; i < lanes.length; i++)
+          {
+            res[i] = new int[16];
+          }
+        var end = Math.min(n, (c + 1) * CHUNK_SIZE);
+        for (var at = c * CHUNK_SIZE; at < end; at++)
+          {
+            if (_data.kind(at) == Offsets.ENTRY_KIND_SCHED_SWITCH)
+              {
+                var on = _data.old_tnum(at);
+                var nn = _data.new_tnum(at);
+                var ot = threads[on];
+                var nt = threads[nn];
+                for (var i = 0; i < lanes.length; i++)
+                  {
+                    if (lanes[i].isMine(ot, processes[on], at) || lanes[i].isMine(nt, processes[nn], at))
+                      {
+                        if (cnt[i] >= res[i].length)
+                          {
+                            res[i] = Arrays.copyOf(res[i], 2 * cnt[i]);
+                          }
+                        res[i][cnt[i]++] = at;
+                      }
+                  }
+              }
+          }
+        for (var i = 0; i < lanes.length; i++)
+          {
+            res[i] = Arrays.copyOf(res[i], cnt[i]);
+          }
+        found[c] = res;
+      });
+    return found;
+  }
+
+
+  /**
+   * Add the entries found by sweep() and the SCHED_SWITCH entries processed
+   * since then to the lanes and install the lanes such that they receive new
+   * entries via switched().  For threads that were moved to their process
+   * during the sweep, the entries before n that match only now are added as
+   * well, such that the lanes contain the same entries as if isMine() was
+   * used by the sweep.
+   *
+   * @param lanes the new lanes.
+   *
+   * @param found the result of sweep().
+   *
+   * @param threads the threads passed to sweep().
+   *
+   * @param processes the processes passed to sweep().
+   *
+   * @param n the number of entries sweep() covered.
+   */
+  private void install(AggregateLane[] lanes, int[][][] found, SystemThread[] threads, SystemProcess[] processes, int n)
+  {
+    for (var i = 0; i < lanes.length; i++)
+      {
+        var l = lanes[i];
+        for (var f : found)
+          {
+            for (var at : f[i])
+              {
+                l.addAction(at);
+              }
+          }
+        var moved = new BitSet();  // an entry of two moved threads is found twice
+        for (var j = 0; l._process != null && j < threads.length; j++)
+          {
+            var t = threads[j];
+            if (t._p != processes[j] && t._unresolvedSwitches != null)
+              {
+                for (var at : t._unresolvedSwitches)
+                  {
+                    if (at < n)
+                      {
+                        var on = _data.old_tnum(at);
+                        var nn = _data.new_tnum(at);
+                        var ot = threads[on];
+                        var nt = threads[nn];
+                        var swept = l.isMine(ot, processes[on], at) || l.isMine(nt, processes[nn], at);
+                        if (!swept && (l.isMine(ot, at) || l.isMine(nt, at)))
+                          {
+                            moved.set(at);
+                          }
+                      }
+                  }
+              }
+          }
+        for (var at = moved.nextSetBit(0); at >= 0; at = moved.nextSetBit(at + 1))
+          {
+            l.addAction(at);
+          }
+        for (var at = n; at < _data.names_processed; at++)
+          {
+            if (_data.kind(at) == Offsets.ENTRY_KIND_SCHED_SWITCH)
+              {
+                var ot = _data.oldThreadAt(at);
+                var nt = _data.newThreadAt(at);
+                l.checkName(ot);
+                l.checkName(nt);
+                if (l.isMine(ot, at) || l.isMine(nt, at))
+                  {
+                    l.addAction(at);
+                  }
+              }
+          }
+        _lanes.add(l);
+      }
+    _data.updateCumulative();
+  }
+
+
+  /**
+   * The lanes that are shown under given user.
+   */
+  ArrayList<AggregateLane> lanesOf(SystemUser u)
+  {
+    var res = new ArrayList<AggregateLane>();
+    for (var l : _lanes)
+      {
+        if (l._user == u && l._process == null)
+          {
+            res.add(l);
+          }
+      }
+    return res;
+  }
+
+
+  /**
+   * The lanes for given process.
+   */
+  ArrayList<AggregateLane> lanesOf(SystemProcess p)
+  {
+    var res = new ArrayList<AggregateLane>();
+    for (var l : _lanes)
+      {
+        if (l._process == p)
+          {
+            res.add(l);
+          }
+      }
+    return res;
+  }
+
+
+  /**
+   * Parse a list of CPU ids like "0-3,8".
+   *
+   * @return the CPU ids, null if s is not a valid list.
+   */
+  static BitSet parseCpuList(String s)
+  {
+    var res = new BitSet();
+    try
+      {
+        for (var r : s.trim().split(","))
+          {
+            var d = r.indexOf('-');
+            var from = Integer.parseInt(r.substring(0, d < 0 ? r.length() : d).trim());
+            var to   = d < 0 ? from : Integer.parseInt(r.substring(d + 1).trim());
+            if (from < 0 || to < from)
+              {
+                return null;
+              }
+            res.set(from, to + 1);
+          }
+      }
+    catch (NumberFormatException e)
+      {
+        return null;
+      }
+    return res;
+  }
+
+}
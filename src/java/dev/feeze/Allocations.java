@@ -0,0 +1,111 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.Allocations
+ *
+ *---------------------------------------------------------------------*/
+
+
+package dev.feeze;
+
+import java.lang.management.ManagementFactory;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * Allocations is a helper to measure the number of bytes allocated by the
+ * current thread, e.g., to check that painting a frame does not produce any
+ * garbage.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class Allocations extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * Should the number of bytes allocated per painted frame be reported on
+   * stderr?  Set env var FEEZE_PAINT_ALLOCATIONS=true to enable this.
+   */
+  static final boolean REPORT = System.getenv().getOrDefault("FEEZE_PAINT_ALLOCATIONS", "false").equals("true");
+
+
+  /**
+   * Number of bytes a single frame may allocate before it is reported as
+   * exceeding the budget.  Some allocation cannot be avoided since Swing
+   * itself allocates, e.g., for Graphics instances.
+   */
+  static final long FRAME_BUDGET = 16*1024;
+
+
+  /**
+   * The MXBean used to read the allocated bytes, null if not supported by
+   * this JVM.
+   */
+  private static final com.sun.management.ThreadMXBean _bean;
+  static
+  {
+    com.sun.management.ThreadMXBean b = null;
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean tb &&
+        tb.isThreadAllocatedMemorySupported())
+      {
+        tb.setThreadAllocatedMemoryEnabled(true);
+        b = tb;
+      }
+    _bean = b;
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Total number of bytes allocated by the current thread so far.
+   *
+   * @return the number of bytes or -1 if this is not supported.
+   */
+  static long current()
+  {
+    return _bean != null ? _bean.getCurrentThreadAllocatedBytes() : -1;
+  }
+
+
+  /**
+   * Number of bytes allocated by the current thread since a call to
+   * `current()` that returned `start`.
+   *
+   * @param start a value returned by `current()`.
+   *
+   * @return the number of bytes allocated or -1 if this is not supported.
+   */
+  static long since(long start)
+  {
+    return start < 0 ? -1 : current() - start;
+  }
+
+}
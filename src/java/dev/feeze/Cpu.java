@@ -41,6 +41,11 @@ class Cpu extends ActionSubSet
 {
   final int _id;
 
+  /**
+   * Reconstructed run-queue depth of this CPU, see RunQueues.
+   */
+  final RunQueue _runQueue = new RunQueue();
+
   Cpu(Data data, int id)
   {
     super(data);
@@ -55,6 +60,33 @@ class Cpu extends ActionSubSet
     super.addAction(at);
   }
 
+
+  /**
+   * Time in ns this CPU was busy between the given times.  O(log
+   * numActions()) using the prefix sums of ActionSubSet.
+   *
+   * @param from a time as returned by Data.ns
+   *
+   * @param to a time as returned by Data.ns, to >= from.
+   */
+  long busy(long from, long to)
+  {
+    return onCpu(from, to);
+  }
+
+
+  /**
+   * The fraction of time this CPU was busy between the given times, 0..1.
+   *
+   * @param from a time as returned by Data.ns
+   *
+   * @param to a time as returned by Data.ns
+   */
+  double utilization(long from, long to)
+  {
+    return to > from ? (double) busy(from, to) / (to - from) : 0;
+  }
+
   @Override
   public boolean startsRunning(int i)
   {
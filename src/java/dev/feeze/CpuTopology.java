@@ -0,0 +1,216 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.CpuTopology
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * CpuTopology gives the cache-topology distance between two CPUs of the
+ * machine a recording was made on.  The recorder writes the topology as
+ * ENTRY_KIND_CPU_TOPOLOGY entries.  For older recordings without these
+ * entries, the topology of the machine feeze runs on may be read from
+ * /sys/devices/system/cpu by setting env var FEEZE_LOCAL_TOPOLOGY=true.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class CpuTopology extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * Distances between two CPUs and their names.
+   */
+  static final int SAME_CORE     = 0;
+  static final int SAME_CACHE    = 1;
+  static final int SAME_PACKAGE  = 2;
+  static final int OTHER_PACKAGE = 3;
+  static final int UNKNOWN       = 4;
+  static final String[] DISTANCE_NAMES = { "same core",
+                                           "same last-level cache",
+                                           "same package",
+                                           "other package",
+                                           "unknown topology" };
+
+
+  static final boolean USE_LOCAL = System.getenv().getOrDefault("FEEZE_LOCAL_TOPOLOGY","false").equals("true");
+
+
+  /**
+   * The directory to read the local topology from.
+   */
+  static final Path SYS_CPU = Path.of("/sys/devices/system/cpu");
+
+
+  /**
+   * The topology of the machine feeze runs on if USE_LOCAL is set, null
+   * otherwise.
+   */
+  static final CpuTopology LOCAL = USE_LOCAL ? readLocal() : null;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * Per CPU id: the core id, the package id and the lowest id of the CPUs
+   * sharing the last level cache, -1 if not known.
+   */
+  int[] _core = new int[0];
+  int[] _package = new int[0];
+  int[] _llc = new int[0];
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Read the topology of the local machine.  The CPU directories are
+   * enumerated since CPU ids may have holes, e.g., for CPUs that are not
+   * present.
+   */
+  private static CpuTopology readLocal()
+  {
+    var res = new CpuTopology();
+    try (var dirs = Files.list(SYS_CPU))
+      {
+        dirs.forEach(d ->
+          {
+            var n = d.getFileName().toString();
+            if (n.matches("cpu[0-9]+"))
+              {
+                var llc = -1;
+                for (var i = 0; Files.isDirectory(d.resolve("cache/index" + i)); i++)
+                  { // the last index is the last level cache
+                    llc = readInt(d.resolve("cache/index" + i + "/shared_cpu_list"));
+                  }
+                res.set(Integer.parseInt(n.substring(3)),
+                        readInt(d.resolve("topology/core_id")),
+                        readInt(d.resolve("topology/physical_package_id")),
+                        llc);
+              }
+          });
+      }
+    catch (IOException | NumberFormatException e)
+      {
+        System.err.println("*** failed to read CPU topology from " + SYS_CPU + ": " + e);
+      }
+    return res;
+  }
+
+
+  /**
+   * Read the leading int from the given file, e.g., an id or the first CPU of
+   * a list of CPUs, -1 if it cannot be read.
+   */
+  private static int readInt(Path p)
+  {
+    try
+      {
+        var s = Files.readString(p).trim();
+        var l = 0;
+        while (l < s.length() && Character.isDigit(s.charAt(l)))
+          {
+            l++;
+          }
+        return l == 0 ? -1 : Integer.parseInt(s.substring(0, l));
+      }
+    catch (IOException | NumberFormatException e)
+      {
+        return -1;
+      }
+  }
+
+
+  /**
+   * Set the topology of one CPU, -1 for ids that are not known.
+   */
+  void set(int cpu, int core, int pkg, int llc)
+  {
+    if (cpu >= _core.length)
+      {
+        var o = _core.length;
+        var l = Math.max(cpu + 1, 2 * o);
+        _core    = Arrays.copyOf(_core   , l);
+        _package = Arrays.copyOf(_package, l);
+        _llc     = Arrays.copyOf(_llc    , l);
+        Arrays.fill(_core   , o, l, -1);
+        Arrays.fill(_package, o, l, -1);
+        Arrays.fill(_llc    , o, l, -1);
+      }
+    _core   [cpu] = core;
+    _package[cpu] = pkg;
+    _llc    [cpu] = llc;
+  }
+
+
+  /**
+   * Is the topology of any CPU known?
+   */
+  boolean isEmpty()
+  {
+    return _core.length == 0;
+  }
+
+
+  /**
+   * Is the topology of the given CPU known?
+   */
+  boolean known(int cpu)
+  {
+    return 0 <= cpu && cpu < _core.length && _core[cpu] >= 0 && _package[cpu] >= 0;
+  }
+
+
+  /**
+   * The distance between two different CPUs, one of SAME_CORE..UNKNOWN.
+   */
+  int distance(int cpu1, int cpu2)
+  {
+    return
+      !known(cpu1) || !known(cpu2)                    ? UNKNOWN       :
+      _package[cpu1] != _package[cpu2]                ? OTHER_PACKAGE :
+      _core[cpu1] == _core[cpu2]                      ? SAME_CORE     :
+      _llc[cpu1] >= 0 && _llc[cpu1] == _llc[cpu2]     ? SAME_CACHE
+                                                      : SAME_PACKAGE;
+  }
+
+}
@@ -27,8 +27,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>
 
 package dev.feeze;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 
 import dev.flang.util.ANY;
 
@@ -44,8 +44,58 @@ import dev.flang.util.ANY;
 public class CumulativeThread extends FeezeThread
 {
 
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * States of a thread of _user while computing the number of running
+   * threads: not seen yet, seen and not running, running.
+   */
+  static final byte UNCOVERED = 0;
+  static final byte COVERED   = 1;
+  static final byte RUNNING   = 2;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
   final SystemUser _user;
-  volatile int[] _numRunning;
+
+
+  /**
+   * Number of actions for which the columns below are valid.
+   */
+  int _applied = 0;
+
+
+  /**
+   * Per action i: the number of running threads after action i, not taking
+   * into account threads that were running before the start of the
+   * recording, the minimum of this number up to action i including the state
+   * after the old thread was switched out, and the states of the old and the
+   * new thread before action i, needed to undo actions in case an action is
+   * inserted before older actions.
+   */
+  int[] _rawRunning = new int[16];
+  int[] _minRunning = new int[16];
+  byte[] _oldBefore = new byte[16];
+  byte[] _newBefore = new byte[16];
+
+
+  /**
+   * Current state per thread, indexed by SystemThread._originalNumber.
+   */
+  byte[] _threadState = new byte[16];
+
+
+  /**
+   * Actions of threads whose process was resolved since the last update(),
+   * merged into the actions by update(), see afterResolve().
+   */
+  final ArrayList<Integer> _resolved = new ArrayList<>();
+
+
+  /*--------------------------  constructors  ---------------------------*/
 
 
   CumulativeThread(SystemUser u)
@@ -56,6 +106,9 @@ public class CumulativeThread extends FeezeThread
   }
 
 
+  /*-----------------------------  methods  -----------------------------*/
+
+
   @Override
   public SystemUser user()
   {
@@ -75,85 +128,244 @@ public class CumulativeThread extends FeezeThread
   }
 
 
-  public int[] numRunning()
+  /**
+   * Add action.  The number of running threads is computed by update(), which
+   * is done by Data.processNewData() for all users in parallel.
+   */
+  @Override
+  void addAction(int at)
+  {
+    super.addAction(at);
+    // find the position the action was sorted to, this might be several
+    // positions below _applied, so search as far as ActionSubSet.addAction
+    // moved it:
+    var n = numActions() - 1;
+    while (n > 0 && at(n) != at)
+      {
+        n--;
+      }
+    if (n < _applied)
+      { // inserted before actions that were applied already
+        undo(n, 1);
+      }
+  }
+
+
+  /**
+   * A thread that was created with Offsets.PID_UNRESOLVED is about to be moved
+   * to its process, which may make it one of mine: undo the actions that were
+   * applied since its first switch while isMine() still gives the old result.
+   *
+   * @param switches the thread's SCHED_SWITCH entries while its process was
+   * not resolved, in the order they were added.
+   */
+  void beforeResolve(ArrayList<Integer> switches)
+  {
+    var p = _applied;
+    for (var at : switches)
+      {
+        p = Math.min(p, insertionPoint(at));
+      }
+    if (p < _applied)
+      {
+        undo(p, 0);
+      }
+  }
+
+
+  /**
+   * Thread t was moved to its process after beforeResolve(switches): add the
+   * switches that are mine now and that were not added for the other thread
+   * already.  They are merged into the actions by the next update() in one
+   * pass.
+   *
+   * @param t the thread that was resolved.
+   *
+   * @param switches t's SCHED_SWITCH entries while its process was not
+   * resolved.
+   */
+  void afterResolve(SystemThread t, ArrayList<Integer> switches)
+  {
+    for (var at : switches)
+      {
+        var ot = _data.oldThreadAt(at);
+        var other = ot == t ? _data.newThreadAt(at) : ot;
+        if (isMine(t, at) && !isMine(other, at))
+          {
+            _resolved.add(at);
+          }
+      }
+  }
+
+
+  /**
+   * Get the state of a thread, ensure it has an entry in _threadState.
+   */
+  private byte state(SystemThread t)
+  {
+    var n = t._originalNumber;
+    if (n >= _threadState.length)
+      {
+        _threadState = Arrays.copyOf(_threadState, Math.max(n + 1, 2 * _threadState.length));
+      }
+    return _threadState[n];
+  }
+
+
+  /**
+   * Is t one of the threads counted by this at the given SCHED_SWITCH entry,
+   * i.e., a thread of _user?
+   *
+   * @param t the old or new thread of the entry
+   *
+   * @param at the index of the entry
+   */
+  boolean isMine(SystemThread t, int at)
+  {
+    return t != null && t.user() == _user;
+  }
+
+
+  /**
+   * Undo the actions that were applied starting at index p.
+   *
+   * @param p the index of the first action to undo.
+   *
+   * @param shift 1 if these actions were moved one position up by the
+   * insertion of a new action at p, 0 if they were not moved yet.
+   */
+  private void undo(int p, int shift)
   {
-    var result = _numRunning;
-    if (result == null)
+    for (var i = _applied - 1; i >= p; i--)
       {
-        synchronized (this)
+        var a = at(i + shift);
+        var ot = _data.oldThreadAt(a);
+        var nt = _data.newThreadAt(a);
+        if (isMine(nt, a)) { _threadState[nt._originalNumber] = _newBefore[i]; }
+        if (isMine(ot, a)) { _threadState[ot._originalNumber] = _oldBefore[i]; }
+      }
+    _applied = p;
+    _prefixValid = Math.min(_prefixValid, Math.max(0, p-1));
+  }
+
+
+  /**
+   * Drop the slack of the columns of this as well.
+   */
+  @Override
+  void trimColumns()
+  {
+    super.trimColumns();
+    var l = numActions();
+    if (_rawRunning.length > l)
+      {
+        _rawRunning = Arrays.copyOf(_rawRunning, l);
+        _minRunning = Arrays.copyOf(_minRunning, l);
+        _oldBefore  = Arrays.copyOf(_oldBefore , l);
+        _newBefore  = Arrays.copyOf(_newBefore , l);
+      }
+  }
+
+
+  /**
+   * Apply all actions that were added since the last call.  This must be
+   * called while holding the lock on the Data, but calls for different users
+   * may run in parallel.
+   */
+  void update()
+  {
+    if (!_resolved.isEmpty())
+      {
+        _resolved.sort((a, b) -> Long.signum(_data.nanosAtSwitch(a) - _data.nanosAtSwitch(b)));
+        addActions(_resolved);
+        _resolved.clear();
+      }
+    var num = numActions();
+    if (_applied < num)
+      {
+        if (_rawRunning.length < num)
+          {
+            var l = Math.max(num, capacity());
+            _rawRunning = Arrays.copyOf(_rawRunning, l);
+            _minRunning = Arrays.copyOf(_minRunning, l);
+            _oldBefore  = Arrays.copyOf(_oldBefore , l);
+            _newBefore  = Arrays.copyOf(_newBefore , l);
+          }
+        var oldMin = minRunning();
+        var n   = _applied > 0 ? _rawRunning[_applied-1] : 0;
+        var min = oldMin;
+        for (var i = _applied; i < num; i++)
           {
-            result = _numRunning;
-            if (result == null)
+            var a = at(i);
+            var ot = _data.oldThreadAt(a);
+            var nt = _data.newThreadAt(a);
+            if (isMine(ot, a))
               {
-                result = new int[numActions()];
-                _numRunning = result;
-                var n = 0;
-                var covered = new BitSet();
-                var running = new BitSet();
-                var min = 0;
-                for (var i = 0; i<numActions(); i++)
-                  {
-                    var ot = _data.oldThreadAt(at(i));
-                    var nt = _data.newThreadAt(at(i));
-                    if (ot != null && ot.user() == _user)
-                      {
-                        if (running.get(ot._tid) || !covered.get(ot._tid))
-                          {
-                            n--;
-                            running.clear(ot._tid);
-                          }
-                        else
-                          {
-                          }
-                        covered.set(ot._tid);
-                      }
-                    min = Math.min(n, min);
-                    if (nt != null && nt.user() == _user)
-                      {
-                        if (!running.get(nt._tid))
-                          {
-                            n++;
-                            running.set(nt._tid);
-                          }
-                        covered.set(nt._tid);
-                      }
-                    result[i] = n;
+                var s = state(ot);
+                _oldBefore[i] = s;
+                if (s != COVERED)
+                  { // running or running since before the start of the recording
+                    n--;
                   }
-
-                // since some threads might have been running from the
-                // beginning, increase the number of threads running such that
-                // it will never be negative:
-                for (var i = 0; i<numActions(); i++)
+                _threadState[ot._originalNumber] = COVERED;
+              }
+            min = Math.min(n, min);
+            if (isMine(nt, a))
+              {
+                var s = state(nt);
+                _newBefore[i] = s;
+                if (s != RUNNING)
                   {
-                    result[i] -= min;
-                    if (false && i < 20) // NYI: DEBUG output, eventually remove this
-                      {
-                        var ot = _data.oldThreadAt(at(i));
-                        var nt = _data.newThreadAt(at(i));
-                        System.out.println("running #"+i+"/"+at(i)+" is "+result[i]+" for "+this+" old: "+ot+" new "+nt);
-                        if (!startsRunning(i) &&
-                            !continuesRunning(i) &&
-                            !stopsRunning(i))
-                          {
-                            System.out.println("^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^yyy!");
-                          }
-                      }
+                    n++;
                   }
+                _threadState[nt._originalNumber] = RUNNING;
               }
+            _rawRunning[i] = n;
+            _minRunning[i] = min;
+          }
+        _applied = num;
+        if (min != oldMin)
+          { // numRunning changed for all earlier actions
+            _prefixValid = 0;
           }
       }
-    return result;
   }
 
+
+  /**
+   * Minimum of the raw number of running threads, i.e., minus the number of
+   * threads that were running before the start of the recording.
+   */
+  private int minRunning()
+  {
+    return _applied > 0 ? _minRunning[_applied-1] : 0;
+  }
+
+
+  /**
+   * The number of threads of _user that are running after action i.
+   */
   public int numRunning(int i)
   {
     if (PRECONDITIONS) require
       (0 <= i,
        i < numActions());
-    var nr = numRunning();
-    return nr[i];
+
+    if (i >= _applied)
+      {
+        synchronized (_data)
+          {
+            update();
+          }
+      }
+    return _rawRunning[i] - minRunning();
   }
 
+  @Override
+  boolean runningAfter(int i)
+  {
+    return numRunning(i) > 0;
+  }
   @Override
   public boolean startsRunning(int i)
   {
@@ -170,6 +382,14 @@ public class CumulativeThread extends FeezeThread
     return numRunning(i) == 0 && (i == 0 || numRunning(i-1) > 0);
   }
 
+  /**
+   * Description of this lane for the tool tip.
+   */
+  String description()
+  {
+    return "All threads for user '" + _user + "'";
+  }
+
   /**
    * Name of this thread at given index.  Note that names can change during the
    * lifespan of a thread.
@@ -37,6 +37,8 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.TreeMap;
 
+import java.util.zip.CRC32C;
+
 import dev.flang.util.ANY;
 
 /*---------------------------------------------------------------------*/
@@ -50,6 +52,13 @@ import dev.flang.util.ANY;
 class Data extends ANY implements Offsets
 {
   private MappedByteBuffer _b;
+
+
+  /**
+   * Does the recording use the wide format with 24-bit thread numbers?  See
+   * Offsets.FORMAT_WIDE.
+   */
+  final boolean _wide;
   int names_processed = 0;
 
   TreeMap<Integer, SystemUser> _usersMap = new TreeMap<>();
@@ -58,10 +67,38 @@ class Data extends ANY implements Offsets
   TreeMap<Integer, SystemProcess> _processesMap = new TreeMap<>();
   ArrayList<SystemProcess> _processes = new ArrayList<>();
 
+  /**
+   * cgroups in the order of their ENTRY_KIND_CGROUP entries, processes refer
+   * to these by number.
+   */
+  ArrayList<SystemCgroup> _cgroups = new ArrayList<>();
+
+  /**
+   * Process of the threads whose process was not resolved by the recorder
+   * yet, see Offsets.PID_UNRESOLVED, null until needed.  Its user is not
+   * entered in _usersMap.
+   */
+  SystemProcess _unresolved = null;
+
+
+  /**
+   * Number of ENTRY_KIND_THREAD_PROCESS entries processed, i.e., of threads
+   * that were moved from _unresolved to their process.
+   */
+  int _numResolved = 0;
+
   TreeMap<Integer, SystemThread> _threadsMap = new TreeMap<>();
   ArrayList<SystemThread> _unsortedThreads = new ArrayList<>();
   ArrayList<SystemThread> _sortedThreads = new ArrayList<>();
 
+
+  /**
+   * Set when the order of _sortedThreads may have changed since it was
+   * sorted, i.e., when a thread was added or moved to its process or a
+   * process was moved to another cgroup.
+   */
+  boolean _threadOrderChanged = false;
+
   /**
    * Map from cpu id to Cpu
    */
@@ -84,9 +121,100 @@ class Data extends ANY implements Offsets
   ArrayList<Integer> _gaps = new ArrayList<>();
 
 
+  /**
+   * Indices of all ENTRY_KIND_USER_EVENT entries in increasing order and the
+   * cache for their decoded messages, null if not decoded yet.  The cache
+   * avoids allocation of new strings whenever user events are painted.
+   */
+  private int[] _userEventAt = new int[16];
+  private String[] _userEventMsgs = new String[16];
+  private int _numUserEvents = 0;
+
+
+  /**
+   * Scheduling latencies of all activations, updated by processNewData().
+   */
+  final WakeupLatencies _latencies = new WakeupLatencies(this);
+
+
+  /**
+   * Reconstruction of the run-queue depth per CPU, updated by processNewData().
+   */
+  final RunQueues _runQueues = new RunQueues(this);
+
+
+  /**
+   * The worst events found so far, updated by processNewData().
+   */
+  final Outliers _outliers = new Outliers(this);
+
+
+  /**
+   * Cache topology of the CPUs of the recording machine as given by the
+   * ENTRY_KIND_CPU_TOPOLOGY entries, updated by processNewData().
+   */
+  final CpuTopology _topology = new CpuTopology();
+
+
+  /**
+   * Thread migrations between CPUs, updated by processNewData().
+   */
+  final Migrations _migrations = new Migrations(this);
+
+
+  /**
+   * Lanes with the number of running threads of groups of threads created by
+   * the user, updated by processNewData().
+   */
+  final AggregateLanes _aggregateLanes = new AggregateLanes(this);
+
+
+  /**
+   * Coarse summary of all entries written by the recorder, including those
+   * not processed yet.
+   */
+  final Overview _overview = new Overview(this);
+
+
+  /**
+   * Number of entries that were fed to the analyses, see analyze().
+   */
+  private int _analyzed = 0;
+
+
+  /**
+   * Set while processNewData() reads data whose lanes are restored from a
+   * SidecarIndex: actions are not added to the lanes and entries are not
+   * analyzed.
+   */
+  boolean _restoring = false;
+
+
+  /**
+   * Index of the actions of all threads and CPUs once all data was read, null
+   * before.
+   */
+  ActionIndex _actionIndex = null;
+
+
+  /**
+   * Set env var FEEZE_NO_ACTION_INDEX=true to keep the actions in one array
+   * per thread and CPU.
+   */
+  static final boolean NO_ACTION_INDEX = System.getenv().getOrDefault("FEEZE_NO_ACTION_INDEX", "false").equals("true");
+
+
+  /**
+   * Minimum number of new actions of cumulative threads to update these in
+   * parallel.
+   */
+  static final int PARALLEL_CUMULATIVE_MIN_ACTIONS = 1 << 16;
+
+
   Data(MappedByteBuffer b)
   {
     _b = b;
+    _wide = b.get(HEADER_FORMAT_OFFSET) == FORMAT_WIDE;
   }
 
   void close()
@@ -158,20 +286,39 @@ class Data extends ANY implements Offsets
     return res;
   }
 
-  private int old_tnum(int at)
+  int old_tnum(int at)
   {
     if (PRECONDITIONS) require
       (kind(at) == ENTRY_KIND_SCHED_SWITCH);
 
-    return getUShort(at, ENTRY_SS_OLD_T_NUM_OFFSET);
+    return tnum(at, ENTRY_SS_OLD_T_NUM_OFFSET, ENTRY_SS_OLD_T_NUM_HI_OFFSET);
   }
 
-  private int new_tnum(int at)
+  int new_tnum(int at)
   {
     if (PRECONDITIONS) require
       (kind(at) == ENTRY_KIND_SCHED_SWITCH);
 
-    return getUShort(at, ENTRY_SS_NEW_T_NUM_OFFSET);
+    return tnum(at, ENTRY_SS_NEW_T_NUM_OFFSET, ENTRY_SS_NEW_T_NUM_HI_OFFSET);
+  }
+
+
+  /**
+   * CRC32C checksum of the first n entries written by the recorder, used to
+   * validate a SidecarIndex.  Entries are not changed once written, so this
+   * does not require the lock on this Data.
+   *
+   * @param n the number of entries, at most unprocessedEntryCount().
+   */
+  long entriesHash(long n)
+  {
+    if (PRECONDITIONS) require
+      (0 <= n,
+       n <= unprocessedEntryCount());
+
+    var crc = new CRC32C();
+    crc.update(_b.slice(entry_start_offset, (int) (n*ENTRY_SIZE)));
+    return crc.getValue();
   }
 
 
@@ -189,6 +336,15 @@ class Data extends ANY implements Offsets
   }
 
 
+  /**
+   * Has the recorder finished writing to this data?
+   */
+  boolean recordingDone()
+  {
+    return _b.get(24) != 0;
+  }
+
+
   int entryCount()
   {
     return names_processed;
@@ -217,7 +373,7 @@ class Data extends ANY implements Offsets
       (((1 << kind(at)) & (1 << ENTRY_KIND_SCHED_WAKING |
                            1 << ENTRY_KIND_SCHED_WAKEUP  )) != 0);
 
-    var tnum = getUShort(at, ENTRY_SW_CAUSING_T_NUM_OFFSET);
+    var tnum = tnum(at, ENTRY_SW_CAUSING_T_NUM_OFFSET, ENTRY_SW_CAUSING_T_NUM_HI_OFFSET);
     return _unsortedThreads.get(tnum);
   }
 
@@ -227,7 +383,7 @@ class Data extends ANY implements Offsets
       (((1 << kind(at)) & (1 << ENTRY_KIND_SCHED_WAKING |
                            1 << ENTRY_KIND_SCHED_WAKEUP  )) != 0);
 
-    var tnum = getUShort(at, ENTRY_SW_AFFECTED_T_NUM_OFFSET);
+    var tnum = tnum(at, ENTRY_SW_AFFECTED_T_NUM_OFFSET, ENTRY_SW_AFFECTED_T_NUM_HI_OFFSET);
     return _unsortedThreads.get(tnum);
   }
 
@@ -244,6 +400,25 @@ class Data extends ANY implements Offsets
       }
     return 0;
   }
+  /**
+   * The time of the last entry written by the recorder, which is after
+   * nanosMax() while a recording is shown progressively.
+   */
+  long nanosEnd()
+  {
+    return Math.max(nanosMax(), _overview.endNs());
+  }
+
+
+  /**
+   * Are all entries written by the recorder processed?
+   */
+  boolean allProcessed()
+  {
+    return names_processed >= unprocessedEntryCount();
+  }
+
+
   long nanosMax()
   {
     int at = entryCount()-1;
@@ -304,6 +479,42 @@ class Data extends ANY implements Offsets
   }
 
 
+  /**
+   * Get a thread number from entry at: the lower 16 bits at off and, in the
+   * wide format, bits 16..23 at hiOff.
+   */
+  int tnum(int at, int off, int hiOff)
+  {
+    var res = getUShort(at, off);
+    if (_wide)
+      {
+        res |= (getByte(at, hiOff) & 0xff) << 16;
+      }
+    return res;
+  }
+
+
+  /**
+   * Get an id from ENTRY_KIND_CPU_TOPOLOGY entry at, -1 if not known.
+   */
+  int topologyId(int at, int off)
+  {
+    var res = getUShort(at, off);
+    return res == CPU_TOPOLOGY_UNKNOWN ? -1 : res;
+  }
+
+
+  /**
+   * The cache topology of the CPUs: as recorded or, for recordings without
+   * ENTRY_KIND_CPU_TOPOLOGY entries, the topology of the machine feeze runs
+   * on if enabled via CpuTopology.USE_LOCAL.
+   */
+  CpuTopology topology()
+  {
+    return _topology.isEmpty() && CpuTopology.LOCAL != null ? CpuTopology.LOCAL : _topology;
+  }
+
+
   /**
    * Get name from zero or more entry of type ENTRY_KIND_MORE_CHARS following
    * at.
@@ -385,9 +596,236 @@ class Data extends ANY implements Offsets
     return getUShort(at, ENTRY_SS_CPU_ID_OFFSET);
   }
 
+  /**
+   * The fraction of time the given CPUs were busy between the given times,
+   * i.e., the sum of their busy times divided by their number and the length
+   * of the time span.  O(cpus * log actions).
+   *
+   * @param cpus a set of CPUs, e.g., _cpus for system-wide utilization.
+   *
+   * @param from a time as returned by ns()
+   *
+   * @param to a time as returned by ns()
+   *
+   * @return the utilization 0..1, 0 if cpus is empty or to <= from.
+   */
+  double utilization(Iterable<Cpu> cpus, long from, long to)
+  {
+    long busy = 0;
+    long n = 0;
+    for (var cpu : cpus)
+      {
+        busy += cpu.busy(from, to);
+        n++;
+      }
+    return n > 0 && to > from ? (double) busy / n / (to - from) : 0;
+  }
+
+
+  /**
+   * Feed the entries from _analyzed up to the given index to the analyses,
+   * i.e., wakeup latencies, run queues, migrations and outliers, and record
+   * the wakeups caused by threads.
+   *
+   * This is done by processNewData() for new entries unless the actions of the
+   * lanes were restored from a SidecarIndex, then it is done by calls to
+   * analyzeSome().
+   *
+   * @param until the index of the first entry not to analyze, at most
+   * names_processed.
+   */
+  private void analyze(int until)
+  {
+    while (_analyzed < until)
+      {
+        var at = _analyzed;
+        var k = kind(at);
+        if (k == ENTRY_KIND_SCHED_SWITCH)
+          {
+            var ot = thread(at, true);
+            var nt = thread(at, false);
+            _latencies.switchedIn(at, nt);
+            _runQueues.switchedIn(at, nt);
+            var cpu = cpuWithId(cpu_id(at));
+            if (cpu != null)
+              {
+                _migrations.switched(at, ot, nt, cpu);
+              }
+            _outliers.switched(at, ot, nt, cpu);
+          }
+        else if (k == ENTRY_KIND_SCHED_WAKING ||
+                 k == ENTRY_KIND_SCHED_WAKEUP)
+          {
+            var nt = affectedThreadAt(at);
+            if (k == ENTRY_KIND_SCHED_WAKING)
+              {
+                _latencies.waking(at, nt);
+                var ct = causingThreadAt(at);
+                ct.addCaused(at);
+                var cu = ct.user();
+                if (cu != null)
+                  {
+                    cu.cumulative().addCaused(at);
+                  }
+              }
+            else
+              {
+                _latencies.wakeup(at, nt);
+              }
+            var cpu = cpuWithId(cpu_id(at));
+            if (cpu != null)
+              {
+                _runQueues.woken(at, nt, cpu);
+              }
+          }
+        _analyzed++;
+      }
+  }
+
+
+  /**
+   * Are there entries that were processed but not analyzed yet?
+   */
+  synchronized boolean analysisPending()
+  {
+    return _analyzed < names_processed;
+  }
+
+
+  /**
+   * Analyze up to n entries that were processed but not analyzed yet, see
+   * analyze().
+   */
+  synchronized void analyzeSome(int n)
+  {
+    analyze((int) Math.min(names_processed, (long) _analyzed + n));
+  }
+
+
+  /**
+   * Get the Cpu with the given id, create it if it does not exist yet and add
+   * it to _cpus at the position of its id.  Used during processNewData.
+   *
+   * @param cpu_id a CPU id as returned by cpu_id().
+   *
+   * @return the Cpu, null if cpu_id is negative.
+   */
+  private Cpu cpuWithId(int cpu_id)
+  {
+    Cpu res = null;
+    if (cpu_id >= 0)
+      {
+        if (!_cpu_ids.get(cpu_id))
+          {
+            _cpu_ids.set(cpu_id);
+            var cpu = new Cpu(this, cpu_id);
+            _cpusMap.put(cpu_id, cpu);
+            // keep _cpus sorted by id:
+            var i = _cpus.size();
+            while (i > 0 && _cpus.get(i-1)._id > cpu_id)
+              {
+                i--;
+              }
+            _cpus.add(i, cpu);
+          }
+        res = _cpusMap.get(cpu_id);
+      }
+    return res;
+  }
+
+  /**
+   * Update the number of running threads of the cumulative threads of all
+   * users and of all aggregate lanes.  Users are independent, so for bulk loads, e.g., when a recording
+   * is opened, they are updated in parallel.  Used during processNewData.
+   */
+  void updateCumulative()
+  {
+    var pending = new ArrayList<CumulativeThread>();
+    long work = 0;
+    for (var u : _users)
+      {
+        var c = u._cumulative;
+        if (c != null && c._applied < c.numActions())
+          {
+            pending.add(c);
+            work += c.numActions() - c._applied;
+          }
+      }
+    for (var c : _aggregateLanes._lanes)
+      {
+        if (c._applied < c.numActions())
+          {
+            pending.add(c);
+            work += c.numActions() - c._applied;
+          }
+      }
+    if (work >= PARALLEL_CUMULATIVE_MIN_ACTIONS && pending.size() > 1)
+      {
+        pending.parallelStream().forEach(c -> c.update());
+      }
+    else
+      {
+        pending.forEach(c -> c.update());
+      }
+  }
+
+  /**
+   * The process of threads whose process is not known yet, create it if
+   * needed.
+   */
+  SystemProcess unresolvedProcess()
+  {
+    if (_unresolved == null)
+      {
+        var u = new SystemUser(this, PID_UNRESOLVED, "unresolved", _users.size());
+        _users.add(u);
+        _unresolved = new SystemProcess(PID_UNRESOLVED, PID_UNRESOLVED, "unresolved", _processes.size(), u);
+        _processes.add(_unresolved);
+      }
+    return _unresolved;
+  }
+
+
+  /**
+   * Set the cgroup of process p, which is used to group the processes of a
+   * user.
+   */
+  void setCgroup(SystemProcess p, SystemCgroup cg)
+  {
+    if (p._cgroup != cg)
+      {
+        if (p._cgroup != null)
+          { // the process was moved to another cgroup
+            p._cgroup._processes.remove(p);
+          }
+        p._cgroup = cg;
+        cg.addProcess(p);
+        _threadOrderChanged = true;
+      }
+  }
+
+
   synchronized void processNewData()
   {
-    var num_entries = (int) unprocessedEntryCount();
+    processNewData(Integer.MAX_VALUE);
+  }
+
+
+  /**
+   * Process up to max of the entries written by the recorder that were not
+   * processed yet, scan all of them for the overview.
+   *
+   * @param max the maximum number of entries to process, used to show a large
+   * recording progressively.
+   */
+  synchronized void processNewData(int max)
+  {
+    if (names_processed >= unprocessedEntryCount())
+      { // nothing new, the overview scanned at least what was processed
+        return;
+      }
+    _overview.update();
+    var num_entries = (int) Math.min(unprocessedEntryCount(), (long) names_processed + max);
     if (names_processed < num_entries)
       {
         while (names_processed < num_entries)
@@ -422,71 +860,111 @@ class Data extends ANY implements Offsets
                   _processes.add(p);
                   break;
                 }
+              case ENTRY_KIND_CGROUP:
+                {
+                  var id   = _b.getLong(entry_start_offset + names_processed*ENTRY_SIZE + ENTRY_CG_ID_OFFSET);
+                  var path = getName(names_processed);
+                  _cgroups.add(new SystemCgroup(id, path, _cgroups.size()));
+                  break;
+                }
+              case ENTRY_KIND_THREAD_CGROUP:
+                {
+                  var num = getInt(names_processed, ENTRY_TC_T_NUM_OFFSET);
+                  var cgn = getInt(names_processed, ENTRY_TC_CG_NUM_OFFSET);
+                  if (num >= 0 && num < _unsortedThreads.size() && cgn >= 0 && cgn < _cgroups.size())
+                    {
+                      _unsortedThreads.get(num).setCgroup(names_processed, _cgroups.get(cgn));
+                    }
+                  else
+                    {
+                      System.err.println("*** illegal thread number "+num+" or cgroup number "+cgn+" in ENTRY_KIND_THREAD_CGROUP for entry #"+names_processed);
+                    }
+                  break;
+                }
               case ENTRY_KIND_THREAD:
                 {
                   var tid  = getInt(names_processed, ENTRY_T_TID_OFFSET);
                   var pid  = getInt(names_processed, ENTRY_T_PID_OFFSET);
-                  var t = new SystemThread(this, tid, pid, _processesMap.get(pid));
+                  var p = pid == PID_UNRESOLVED ? unresolvedProcess() : _processesMap.get(pid);
+                  var t = new SystemThread(this, tid, pid, p);
                   _threadsMap.put(tid, t);
                   t._originalNumber = _unsortedThreads.size();
                   _unsortedThreads.add(t);
+                  _threadOrderChanged = true;
+                  break;
+                }
+              case ENTRY_KIND_THREAD_PROCESS:
+                {
+                  var num = getInt(names_processed, ENTRY_TP_T_NUM_OFFSET);
+                  var pid = getInt(names_processed, ENTRY_TP_PID_OFFSET);
+                  var p = _processesMap.get(pid);
+                  if (num >= 0 && num < _unsortedThreads.size() && p != null)
+                    {
+                      _unsortedThreads.get(num).resolved(p);
+                      _numResolved++;
+                      _threadOrderChanged = true;
+                    }
+                  else
+                    {
+                      System.err.println("*** illegal thread number "+num+" or process "+pid+" in ENTRY_KIND_THREAD_PROCESS for entry #"+names_processed);
+                    }
                   break;
                 }
               case ENTRY_KIND_SCHED_SWITCH:
                 {
                   var ot = thread(names_processed, true);
                   var nt = thread(names_processed, false);
-                  ot.addAction(names_processed);
-                  nt.addAction(names_processed);
-                  var cpu_id = cpu_id(names_processed);
-                  if (cpu_id >= 0)
+                  var cpu = cpuWithId(cpu_id(names_processed));
+                  if (!_restoring)
                     {
-                      if (!_cpu_ids.get(cpu_id))
+                      ot.addAction(names_processed);
+                      nt.addAction(names_processed);
+                      if (cpu != null)
                         {
-                          _cpu_ids.set(cpu_id);
-                          var cpu = new Cpu(this, cpu_id);
-                          _cpusMap.put(cpu_id, cpu);
-                          _cpus.add(cpu);
+                          cpu.addAction(names_processed);
                         }
-                      var cpu = _cpusMap.get(cpu_id);
-                      cpu.addAction(names_processed);
                     }
+                  ot.switchedOut(names_processed);
+                  _aggregateLanes.switched(names_processed, ot, nt);
                   break;
                 }
               case ENTRY_KIND_SCHED_WAKING:
               case ENTRY_KIND_SCHED_WAKEUP:
                 {
                   var nt = affectedThreadAt(names_processed);
-                  nt.addAction(names_processed);
-                  var cpu_id = cpu_id(names_processed);
-                  if (cpu_id >= 0)
+                  if (!_restoring)
                     {
-                      if (!_cpu_ids.get(cpu_id))
-                        {
-                          _cpu_ids.set(cpu_id);
-                          var cpu = new Cpu(this, cpu_id);
-                          _cpusMap.put(cpu_id, cpu);
-                          _cpus.add(cpu);
-                        }
+                      nt.addAction(names_processed);
                     }
+                  cpuWithId(cpu_id(names_processed));
                   break;
                 }
               case ENTRY_KIND_USER_EVENT:
                 {
                   var t = userEventThread(names_processed);
-                  if (t != null)
+                  if (t != null && !_restoring)
                     {
                       t.addAction(names_processed);
                     }
+                  if (_numUserEvents >= _userEventAt.length)
+                    {
+                      _userEventAt   = Arrays.copyOf(_userEventAt  , _userEventAt  .length*2);
+                      _userEventMsgs = Arrays.copyOf(_userEventMsgs, _userEventMsgs.length*2);
+                    }
+                  _userEventAt[_numUserEvents] = names_processed;
+                  _numUserEvents++;
                   break;
                 }
               case ENTRY_KIND_THREAD_NAME:
                 {
-                  var num = getUShort(names_processed, ENTRY_TN_T_NUM_OFFSET);
+                  var num = tnum(names_processed, ENTRY_TN_T_NUM_OFFSET, ENTRY_TN_T_NUM_HI_OFFSET);
                   if (num >= 0 && num < _unsortedThreads.size())
                     {
-                      var t = _unsortedThreads.get(num);
-                      t.addAction(names_processed);
+                      if (!_restoring)
+                        {
+                          var t = _unsortedThreads.get(num);
+                          t.addAction(names_processed);
+                        }
                     }
                   else
                     {
@@ -494,6 +972,14 @@ class Data extends ANY implements Offsets
                     }
                   break;
                 }
+              case ENTRY_KIND_CPU_TOPOLOGY:
+                {
+                  _topology.set(getUShort(names_processed, ENTRY_CT_CPU_ID_OFFSET),
+                                topologyId(names_processed, ENTRY_CT_CORE_ID_OFFSET),
+                                topologyId(names_processed, ENTRY_CT_PACKAGE_ID_OFFSET),
+                                topologyId(names_processed, ENTRY_CT_LLC_ID_OFFSET));
+                  break;
+                }
               case ENTRY_KIND_GAP:
                 {
                   _gaps.add(names_processed);
@@ -509,8 +995,27 @@ class Data extends ANY implements Offsets
                 }
               }
             names_processed++;
+            if (!_restoring)
+              {
+                analyze(names_processed);
+              }
           }
       }
+    updateCumulative();
+    if (_threadOrderChanged)
+      {
+        sortThreads();
+      }
+  }
+
+
+  /**
+   * Sort _sortedThreads by user, cgroup, process and tid and set their
+   * displayed numbers accordingly.
+   */
+  private void sortThreads()
+  {
+    _sortedThreads.clear();
     for (var t : _unsortedThreads)
       {
         _sortedThreads.add(t);
@@ -519,24 +1024,54 @@ class Data extends ANY implements Offsets
                   {
                     var u1 = t1._p._user._num;
                     var u2 = t2._p._user._num;
+                    var c1 = t1._p._cgroup == null ? -1 : t1._p._cgroup._num;
+                    var c2 = t2._p._cgroup == null ? -1 : t2._p._cgroup._num;
                     var p1 = t1._p._num;
                     var p2 = t2._p._num;
                     var i1 = t1._tid;
                     var i2 = t2._tid;
                     return u1 != u2 ? Integer.compare(u1, u2) :
+                           c1 != c2 ? Integer.compare(c1, c2) :
                            p1 != p2 ? Integer.compare(p1, p2)
                                     : Integer.compare(i1, i2);
                   });
-    _cpus.sort((c1,c2) -> Integer.compare(c1._id, c2._id));
     for (var n = 0; n < _sortedThreads.size(); n++)
       {
         _sortedThreads.get(n)._displayedNumber = n;
       }
+    _threadOrderChanged = false;
   }
 
+  /**
+   * Move the actions of all threads, cumulative threads, aggregate lanes and
+   * CPUs into one ActionIndex.  To be called once no more data will be read.
+   */
+  synchronized void buildActionIndex()
+  {
+    if (!NO_ACTION_INDEX && _actionIndex == null)
+      {
+        var lanes = new ArrayList<ActionSubSet>();
+        lanes.addAll(_unsortedThreads);
+        for (var u : _users)
+          {
+            if (u._cumulative != null)
+              {
+                lanes.add(u._cumulative);
+              }
+          }
+        lanes.addAll(_aggregateLanes._lanes);
+        lanes.addAll(_cpus);
+        if (ActionIndex.totalActions(lanes) < Integer.MAX_VALUE - 8)
+          {
+            _actionIndex = new ActionIndex(lanes);
+          }
+      }
+  }
+
+
   FeezeThread userEventThread(int at)
   {
-    var num = getUShort(at, ENTRY_UE_T_NUM);
+    var num = tnum(at, ENTRY_UE_T_NUM, ENTRY_UE_T_NUM_HI);
     if (num >= 0 && num < _unsortedThreads.size())
       {
         return _unsortedThreads.get(num);
@@ -554,7 +1089,8 @@ class Data extends ANY implements Offsets
     if (PRECONDITIONS) require
       (kind(at) == ENTRY_KIND_THREAD_NAME);
 
-    return getName(at, ENTRY_TN_NAME_OFFSET, ENTRY_TN_NAME_LENGTH);
+    return _wide ? getName(at, ENTRY_TN_WIDE_NAME_OFFSET, ENTRY_TN_WIDE_NAME_LENGTH)
+                 : getName(at, ENTRY_TN_NAME_OFFSET     , ENTRY_TN_NAME_LENGTH     );
   }
 
 
@@ -586,7 +1122,17 @@ class Data extends ANY implements Offsets
     if (PRECONDITIONS) require
       (kind(at) == ENTRY_KIND_USER_EVENT);
 
-    return getName(at, ENTRY_UE_MSG, ENTRY_UE_MSG_SIZE);
+    var i = Arrays.binarySearch(_userEventAt, 0, _numUserEvents, at);
+    var res = i >= 0 ? _userEventMsgs[i] : null;
+    if (res == null)
+      {
+        res = getName(at, ENTRY_UE_MSG, ENTRY_UE_MSG_SIZE);
+        if (i >= 0)
+          {
+            _userEventMsgs[i] = res;
+          }
+      }
+    return res;
   }
 
 
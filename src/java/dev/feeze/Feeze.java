@@ -105,64 +105,136 @@ public class Feeze extends ANY implements Offsets
       }
   }
 
+  /**
+   * Interval in ms at which new data written by a running recorder is
+   * processed and shown.
+   */
+  static final int LIVE_UPDATE_INTERVAL_MS = 250;
+
+
+  /**
+   * Maximum number of entries processed before the data window is updated.
+   * For a large recording, the window is shown after the first chunk with the
+   * Overview of the whole recording and the details are filled in chunk by
+   * chunk.
+   */
+  static final int PROGRESSIVE_CHUNK_SIZE = 1 << 18;
+
+
+  /**
+   * Number of entries analyzed in the background between two updates of the
+   * data window after the lanes were restored from a SidecarIndex.
+   */
+  static final int ANALYZE_CHUNK_SIZE = 1 << 20;
+
+
   static void showData(String shMemFileName)
   {
     FeezeDataFrame dataFrame = null;
+    Data data = null;
+    var sidecarFile = new File(shMemFileName + SidecarIndex.SUFFIX);
+    var useSidecar = true;
+    var restored = false;
     var done = false;
     while (!done)
       {
         try
           {
-            var f = new File(shMemFileName);
-            try (var channel = FileChannel.open(f.toPath(), StandardOpenOption.READ))
+            if (data == null)
               {
-                long l;
-                do
+                var f = new File(shMemFileName);
+                try (var channel = FileChannel.open(f.toPath(), StandardOpenOption.READ))
                   {
-                    var b0 = channel.map(FileChannel.MapMode.READ_ONLY, 0, 4096);
-                    b0.order(ByteOrder.LITTLE_ENDIAN);
-                    l = b0.getLong(0);
-                    var eso = b0.getInt(16);
-                    var es  = b0.getInt(20);
-                    if (eso != entry_start_offset)
+                    long l;
+                    do
                       {
-                        System.err.println("*** entry start offset is "+eso+" expected "+entry_start_offset);
-                        System.exit(1);
-                      }
-                    if (es != ENTRY_SIZE)
-                      {
-                        System.err.println("*** entry size is "+es+" expected "+ENTRY_SIZE);
-                        System.exit(1);
+                        var b0 = channel.map(FileChannel.MapMode.READ_ONLY, 0, 4096);
+                        b0.order(ByteOrder.LITTLE_ENDIAN);
+                        l = b0.getLong(0);
+                        var eso = b0.getInt(16);
+                        var es  = b0.getInt(20);
+                        if (eso != entry_start_offset)
+                          {
+                            System.err.println("*** entry start offset is "+eso+" expected "+entry_start_offset);
+                            System.exit(1);
+                          }
+                        if (es != ENTRY_SIZE)
+                          {
+                            System.err.println("*** entry size is "+es+" expected "+ENTRY_SIZE);
+                            System.exit(1);
+                          }
+                        var fmt = b0.get(HEADER_FORMAT_OFFSET);
+                        if (l != 0 && fmt != FORMAT_NARROW && fmt != FORMAT_WIDE)
+                          {
+                            System.err.println("*** unknown recording format "+fmt);
+                            System.exit(1);
+                          }
                       }
+                    while (l == 0);
+                    // the size is fixed by the recorder, so the same mapping is
+                    // used for all the data that is recorded later.
+                    var b = channel.map(FileChannel.MapMode.READ_ONLY, 0, l);
+                    b.order(ByteOrder.LITTLE_ENDIAN);
+                    data = new Data(b);
+                    _data = data;
                   }
-                while (l == 0);
-                var b = channel.map(FileChannel.MapMode.READ_ONLY, 0, l);
-                b.order(ByteOrder.LITTLE_ENDIAN);
-                _data = new Data(b);
-                _data.processNewData();
-                if (dataFrame == null)
-                  {
-                    dataFrame = new FeezeDataFrame(_data);
+              }
+            // read the done flag first to not miss any entries written before it was set:
+            var recordingDone = data.recordingDone();
+            SidecarIndex sidecar = null;
+            if (recordingDone && useSidecar && data.entryCount() == 0)
+              { // a complete recording is opened, try to restore its lanes:
+                sidecar = SidecarIndex.read(sidecarFile, data);
+                data._restoring = sidecar != null;
+              }
+            data.processNewData(sidecar != null ? Integer.MAX_VALUE : PROGRESSIVE_CHUNK_SIZE);
+            if (sidecar != null)
+              {
+                data._restoring = false;
+                restored = sidecar.apply(data);
+                if (!restored)
+                  { // start over without the sidecar
+                    System.err.println("*** " + sidecarFile + " does not match, ignored");
+                    data.close();
+                    data = null;
+                    useSidecar = false;
+                    continue;
                   }
-                done = b.get(24)!=0;
-                if (!done)
+              }
+            var complete = recordingDone && data.allProcessed();
+            if (complete)
+              {
+                data.buildActionIndex();
+                if (!restored)
                   {
-                    Threads.sleep(1000);
+                    SidecarIndex.write(sidecarFile, data);
                   }
               }
+            if (dataFrame == null)
+              {
+                dataFrame = new FeezeDataFrame(data);
+              }
+            else
+              {
+                dataFrame.newData();
+              }
+            done = complete;
           }
         catch (IOException e)
           {
             System.out.println(e);
           }
-        try
-          {
-            Thread.sleep(1000);
-          }
-        catch (InterruptedException e)
+        if (!done && (data == null || data.allProcessed()))
           {
+            Threads.sleep(data == null ? 1000 : LIVE_UPDATE_INTERVAL_MS);
           }
       }
+    // analyses that were skipped since the lanes were restored from a sidecar:
+    while (data.analysisPending())
+      {
+        data.analyzeSome(ANALYZE_CHUNK_SIZE);
+        dataFrame.newData();
+      }
   }
 
 
@@ -28,15 +28,28 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>
 package dev.feeze;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 
+import java.io.File;
+import java.io.IOException;
+
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 /*---------------------------------------------------------------------*/
 
@@ -49,9 +62,41 @@ import javax.swing.JPanel;
 public class FeezeDataFrame extends JFrame
 {
 
+  /**
+   * The window title, followed by the current outlier when navigating
+   * outliers.
+   */
+  static final String TITLE = "Feeze Scheduling Data";
+
+
+  /**
+   * Background of the thread filter field while its text is not a legal
+   * filter.
+   */
+  static final Color INVALID_FILTER_COLOR = new Color(255, 200, 200);
+
   boolean _closed = false;
 
 
+  /**
+   * The panorama showing the data, null until it was created in the AWT event
+   * dispatch thread.
+   */
+  volatile SchedulingPanorama _panorama = null;
+
+
+  /**
+   * The latency heatmap shown below the panorama, null until created.
+   */
+  volatile LatencyHeatmapPanel _heatmap = null;
+
+
+  /**
+   * The minimap shown above the panorama, null until created.
+   */
+  volatile MinimapPanel _minimap = null;
+
+
   /**
    * Helper to create a JButton with given text, KeyEvent and tool tip.
    */
@@ -65,7 +110,7 @@ public class FeezeDataFrame extends JFrame
 
   FeezeDataFrame(Data data)
   {
-    super("Feeze Scheduling Data");
+    super(TITLE);
     javax.swing.SwingUtilities.invokeLater(()->
       {
         var b1 = button("🠊🠈", KeyEvent.VK_C, "compress time axis");
@@ -73,14 +118,33 @@ public class FeezeDataFrame extends JFrame
         var b3 = button("+zoom", KeyEvent.VK_Z, "zoom in");
         var b4 = button("-zoom", KeyEvent.VK_O, "zoom out");
         var panorama = new SchedulingPanorama(data, b1, b2, b3, b4);
+        _panorama = panorama;
         var controls = new JPanel(new GridLayout(1,0));
         controls.add(b2);
         controls.add(b1);
         controls.add(b3);
         controls.add(b4);
+        var heatmap = new LatencyHeatmapPanel(panorama);
+        _heatmap = heatmap;
+        var minimap = new MinimapPanel(panorama);
+        _minimap = minimap;
+        var scroller = panorama.scroller(0, panorama.dataHeight());
+        scroller.getViewport().addChangeListener(e ->
+          {
+            heatmap.repaint();
+            minimap.repaint();
+          });
+        var bottom = new JPanel(new BorderLayout());
+        bottom.add(heatmap, BorderLayout.NORTH);
+        bottom.add(controls, BorderLayout.SOUTH);
+        var filter = filterField(panorama);
+        var top = new JPanel(new BorderLayout());
+        top.add(minimap, BorderLayout.NORTH);
+        top.add(filter, BorderLayout.SOUTH);
         final var content = new JPanel(new BorderLayout());
-        content.add(panorama.scroller(0, panorama.dataHeight()), BorderLayout.CENTER);
-        content.add(controls, BorderLayout.SOUTH);
+        content.add(top, BorderLayout.NORTH);
+        content.add(scroller, BorderLayout.CENTER);
+        content.add(bottom, BorderLayout.SOUTH);
         content.setOpaque(true);
 
         setContentPane(content);
@@ -109,6 +173,46 @@ public class FeezeDataFrame extends JFrame
                 {
                   Feeze.askToQuit(FeezeDataFrame.this);
                 }
+              else if (key.getKeyChar() == 'p' - 0x60)
+                {
+                  panorama.toggleFrameStats();
+                }
+              else if (key.getKeyChar() == 'e' - 0x60)
+                {
+                  exportFrameStats(panorama);
+                }
+              else if (key.getKeyChar() == 'f' - 0x60)
+                {
+                  panorama.toggleFollow();
+                }
+              else if (key.getKeyChar() == 'l' - 0x60)
+                {
+                  showLatencies(data);
+                }
+              else if (key.getKeyChar() == 'm' - 0x60)
+                {
+                  showMigrations(data);
+                }
+              else if (key.getKeyChar() == 'k' - 0x60)
+                {
+                  panorama.showCriticalPathAt(panorama.getMousePosition());
+                }
+              else if (key.getKeyChar() == 'n' - 0x60)
+                {
+                  setTitle(TITLE + " — " + panorama.nextOutlier(+1));
+                }
+              else if (key.getKeyChar() == 'b' - 0x60)
+                {
+                  setTitle(TITLE + " — " + panorama.nextOutlier(-1));
+                }
+              else if (key.getKeyChar() == 'o' - 0x60)
+                {
+                  setTitle(TITLE + " — " + panorama.nextOutlierKind());
+                }
+              else if (key.getKeyChar() == 'g' - 0x60)
+                {
+                  addAggregateLane(panorama);
+                }
               else if (false)
                 {
                   System.out.println("typed: "+key.getKeyCode()+" "+key.getExtendedKeyCode()+" "+key.getKeyChar()+" "+((int)key.getKeyChar())+" w:"+('w'-0x90));
@@ -120,12 +224,168 @@ public class FeezeDataFrame extends JFrame
         b2.addKeyListener(kl);
         b3.addKeyListener(kl);
         b4.addKeyListener(kl);
+        filter.addKeyListener(kl);
 
         setVisible(true);
         var ignore = Feeze._openDataFrames_.incrementAndGet();
       });
   }
 
+  /**
+   * Notify this frame that new data was processed during a live recording.
+   * May be called from any thread.
+   */
+  void newData()
+  {
+    javax.swing.SwingUtilities.invokeLater(()->
+      {
+        var p = _panorama;
+        if (p != null && !_closed)
+          {
+            p.dataChanged();
+          }
+        var h = _heatmap;
+        if (h != null && !_closed)
+          {
+            h.repaint();
+          }
+        var m = _minimap;
+        if (m != null && !_closed)
+          {
+            m.repaint();
+          }
+      });
+  }
+
+
+  /**
+   * Create the text field to enter a ThreadFilter for panorama.  The filter is
+   * applied on every change, the field turns red while its text is not a
+   * legal filter.
+   */
+  private static JTextField filterField(SchedulingPanorama panorama)
+  {
+    var res = new JTextField();
+    var bg = res.getBackground();
+    res.setToolTipText("<html>thread filter, all terms must match, '!' negates a term:<br>" +
+                       "<tt>name=&lt;regex&gt;</tt> or just <tt>&lt;regex&gt;</tt>, " +
+                       "<tt>process=&lt;regex|pid&gt;</tt>, <tt>user=&lt;regex|uid&gt;</tt>, " +
+                       "<tt>active</tt> (in visible window), <tt>cpu&gt;=&lt;time&gt;</tt>, e.g., <tt>cpu&gt;=10ms</tt></html>");
+    res.getDocument().addDocumentListener(new DocumentListener()
+      {
+        @Override public void insertUpdate (DocumentEvent e) { apply(); }
+        @Override public void removeUpdate (DocumentEvent e) { apply(); }
+        @Override public void changedUpdate(DocumentEvent e) { apply(); }
+        void apply()
+        {
+          var spec = res.getText();
+          try
+            {
+              panorama.setFilter(spec.isBlank() ? null : new ThreadFilter(spec));
+              res.setBackground(bg);
+            }
+          catch (IllegalArgumentException x)
+            {
+              res.setBackground(INVALID_FILTER_COLOR);
+            }
+        }
+      });
+    return res;
+  }
+
+
+  /**
+   * Ask for the specification of an aggregate lane and add it to panorama.
+   */
+  void addAggregateLane(SchedulingPanorama panorama)
+  {
+    var spec = JOptionPane.showInputDialog(this,
+                                           "aggregate lane: pid=<pid>, name=<regex>, cpus=<list> or cgroup=<regex>",
+                                           Feeze.DIALOG_HEADER,
+                                           JOptionPane.QUESTION_MESSAGE);
+    var err = spec == null ? null : panorama.addAggregateLane(spec);
+    if (err != null)
+      {
+        JOptionPane.showMessageDialog(this,
+                                      err,
+                                      Feeze.DIALOG_HEADER,
+                                      JOptionPane.ERROR_MESSAGE);
+      }
+  }
+
+
+  /**
+   * Show a summary of the wakeup latencies in data.
+   */
+  void showLatencies(Data data)
+  {
+    String s;
+    synchronized (data)
+      {
+        s = data._latencies.summary();
+      }
+    var text = new JTextArea(s);
+    text.setEditable(false);
+    JOptionPane.showMessageDialog(this,
+                                  new JScrollPane(text),
+                                  Feeze.DIALOG_HEADER,
+                                  JOptionPane.INFORMATION_MESSAGE);
+  }
+
+
+  /**
+   * Show a summary of the thread migrations in data and the thread x CPU
+   * residency heatmap.
+   */
+  void showMigrations(Data data)
+  {
+    String s;
+    MigrationsPanel heatmap;
+    synchronized (data)
+      {
+        s = data._migrations.summary();
+        heatmap = new MigrationsPanel(data);
+      }
+    var text = new JTextArea(s, 10, 60);
+    text.setEditable(false);
+    var content = new JPanel(new BorderLayout());
+    content.add(new JScrollPane(text), BorderLayout.NORTH);
+    var sp = new JScrollPane(heatmap);
+    sp.setPreferredSize(new Dimension(Math.min(900, heatmap.getPreferredSize().width + 20), 400));
+    content.add(sp, BorderLayout.CENTER);
+    JOptionPane.showMessageDialog(this,
+                                  content,
+                                  Feeze.DIALOG_HEADER,
+                                  JOptionPane.INFORMATION_MESSAGE);
+  }
+
+
+  /**
+   * Ask for a file name and export the histogram of frame times of the given
+   * panorama as CSV to this file.
+   */
+  void exportFrameStats(SchedulingPanorama panorama)
+  {
+    var fc = new JFileChooser();
+    fc.setSelectedFile(new File("feeze_frame_times.csv"));
+    if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
+      {
+        var f = fc.getSelectedFile();
+        try
+          {
+            panorama._frameStats.exportHistogram(f.toPath());
+          }
+        catch (IOException e)
+          {
+            JOptionPane.showMessageDialog(this,
+                                          "Failed to write '" + f + "': " + e,
+                                          Feeze.DIALOG_HEADER,
+                                          JOptionPane.ERROR_MESSAGE);
+          }
+      }
+  }
+
+
   synchronized void closeThisFrame()
   {
     if (!_closed)
@@ -78,6 +78,7 @@ class FeezeToolTip extends JToolTip
   JLabel _stateLabel = new JLabel("state");
   JLabel _cpuLabel   = new JLabel("CPU");
   JLabel _timeLabel  = new JLabel("time");
+  JLabel _latencyLabel = new JLabel("latency");
 
 
   /*---------------------------  constructors  --------------------------*/
@@ -114,6 +115,9 @@ class FeezeToolTip extends JToolTip
     _timeLabel.setFont(tooltipFont);
     _renderer.add(_timeLabel);
 
+    _latencyLabel.setFont(tooltipFont);
+    _renderer.add(_latencyLabel);
+
     ToolTipManager.sharedInstance().registerComponent(p);
   }
 
@@ -0,0 +1,216 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.FrameStats
+ *
+ *---------------------------------------------------------------------*/
+
+
+package dev.feeze;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * FrameStats collects performance statistics for the frames painted by a
+ * SchedulingPanorama. The statistics of the last frame can be shown in a
+ * head-up display (HUD) and the histogram of all frame times can be exported
+ * as CSV.
+ *
+ * This helps to tell whether a sluggish window is due to feeze or due to the
+ * machine it is running on.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class FrameStats extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * Buckets of the frame time histogram, 4 sub-buckets per power of two, so
+   * the relative error of a bucket is 1/4.
+   */
+  static final LogLinearBuckets BUCKETS = new LogLinearBuckets(2);
+
+
+  static final Color HUD_BACKGROUND = new Color(255, 255, 255, 208);
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * Counters for the frame that is currently being painted.
+   */
+  long _frameStart;
+  long _allocatedStart;
+  int  _eventsVisited;
+  int  _lanesDrawn;
+  int  _layoutCacheHits;
+  int  _layoutCacheMisses;
+
+
+  /**
+   * Statistics of the last frame that was completely painted.
+   */
+  long _lastPaintNanos;
+  long _lastAllocated = -1;
+  int  _lastEventsVisited;
+  int  _lastLanesDrawn;
+  int  _lastLayoutCacheHits;
+  int  _lastLayoutCacheMisses;
+  long _lastIngestionLag;
+  boolean _lastCoarse;
+
+
+  /**
+   * Histogram of the paint times of all frames.
+   */
+  final long[] _histogram = new long[BUCKETS._numBuckets];
+  long _frames;
+  long _maxPaintNanos;
+  long _totalPaintNanos;
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Start a new frame, reset the per-frame counters.
+   */
+  void startFrame()
+  {
+    _eventsVisited     = 0;
+    _lanesDrawn        = 0;
+    _layoutCacheHits   = 0;
+    _layoutCacheMisses = 0;
+    _allocatedStart    = Allocations.current();
+    _frameStart        = System.nanoTime();
+  }
+
+
+  /**
+   * End the current frame, record its statistics.
+   *
+   * @param ingestionLag number of entries written by the recorder that were
+   * not yet processed.
+   *
+   * @param coarse true if the frame was drawn at a coarse level of detail.
+   */
+  void endFrame(long ingestionLag, boolean coarse)
+  {
+    var t = System.nanoTime() - _frameStart;
+    _lastPaintNanos        = t;
+    _lastAllocated         = Allocations.since(_allocatedStart);
+    _lastEventsVisited     = _eventsVisited;
+    _lastLanesDrawn        = _lanesDrawn;
+    _lastLayoutCacheHits   = _layoutCacheHits;
+    _lastLayoutCacheMisses = _layoutCacheMisses;
+    _lastIngestionLag      = ingestionLag;
+    _lastCoarse            = coarse;
+    _histogram[BUCKETS.bucket(t)]++;
+    _frames++;
+    _totalPaintNanos += t;
+    _maxPaintNanos = Math.max(_maxPaintNanos, t);
+  }
+
+
+  /**
+   * Write the frame time histogram as CSV to given file.
+   *
+   * @param p the file to write to.
+   */
+  void exportHistogram(Path p) throws IOException
+  {
+    try (var w = new PrintWriter(Files.newBufferedWriter(p)))
+      {
+        w.println("from_ns,to_ns,frames");
+        for (var b = 0; b < BUCKETS._numBuckets; b++)
+          {
+            if (_histogram[b] != 0)
+              {
+                var to = b+1 < BUCKETS._numBuckets ? BUCKETS.bucketStart(b+1) : Long.MAX_VALUE;
+                w.println(BUCKETS.bucketStart(b) + "," + to + "," + _histogram[b]);
+              }
+          }
+      }
+  }
+
+
+  /**
+   * Draw the HUD in the top right corner of the given visible rectangle.
+   *
+   * @param g the graphics to draw to
+   *
+   * @param r the visible rectangle
+   *
+   * @param zoom the zoom used to draw strings
+   */
+  void drawHUD(Graphics g, Rectangle r, Zoom zoom)
+  {
+    var lines = new String[]
+      {
+        "paint time "       + TimeAsString.getString(_lastPaintNanos, 1),
+        "avg / max "        + TimeAsString.getString(_frames == 0 ? 0 : _totalPaintNanos / _frames, 1) + " / " + TimeAsString.getString(_maxPaintNanos, 1),
+        "frames "           + _frames,
+        "events visited "   + _lastEventsVisited,
+        "lanes drawn "      + _lastLanesDrawn,
+        "layout cache hits "+ _lastLayoutCacheHits + " misses " + _lastLayoutCacheMisses,
+        "ingestion lag "    + _lastIngestionLag + " entries",
+        "level of detail "  + (_lastCoarse ? "coarse" : "full"),
+        "allocated "        + (_lastAllocated < 0 ? "n/a" : _lastAllocated + " bytes"),
+      };
+    g.setFont(zoom.standardFont());
+    FontMetrics fm = g.getFontMetrics();
+    var w = 0;
+    for (var l : lines)
+      {
+        w = Math.max(w, fm.stringWidth(l));
+      }
+    var h = fm.getHeight();
+    var x = r.x + r.width - w - 3*h/2;
+    var y = r.y + h/2;
+    zoom.drawFilledRect(g, Color.gray, HUD_BACKGROUND, 1, x, y, w + h, h * lines.length + h/2);
+    g.setColor(Color.black);
+    for (var i = 0; i < lines.length; i++)
+      {
+        g.drawString(lines[i], x + h/2, y + h/4 + fm.getAscent() + i*h);
+      }
+  }
+
+}
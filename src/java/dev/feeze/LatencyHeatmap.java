@@ -0,0 +1,164 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.LatencyHeatmap
+ *
+ *---------------------------------------------------------------------*/
+
+
+package dev.feeze;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * LatencyHeatmap counts activations per time bucket and per latency row in a
+ * SummaryPyramid, so for any zoom factor there is a level with about one
+ * bucket per pixel and a heatmap can be drawn in time proportional to the
+ * number of pixels.
+ *
+ * Latency rows are logarithmic, row r counts latencies in [2^(MIN_LOG2+r),
+ * 2^(MIN_LOG2+r+1)), the first and last rows also count all smaller and
+ * larger latencies, respectively.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class LatencyHeatmap extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * log2 of the width in ns of a time bucket at level 0, i.e., about 4ms.
+   */
+  static final int BASE_LOG2 = 22;
+
+
+  /**
+   * Number of levels, the top level has buckets of about 9.7 hours.
+   */
+  static final int NUM_LEVELS = 24;
+
+
+  /**
+   * log2 of the latency of row 0, i.e., about 1us.
+   */
+  static final int MIN_LOG2 = 10;
+
+
+  /**
+   * Number of latency rows, the top row starts at about 1s.
+   */
+  static final int ROWS = 21;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * Number of activations per time bucket and latency row.
+   */
+  final SummaryPyramid _pyramid = new SummaryPyramid(BASE_LOG2, NUM_LEVELS, ROWS);
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * The latency row for given latency.
+   *
+   * @param latency a latency in ns
+   *
+   * @return the row, 0 <= result < ROWS.
+   */
+  static int row(long latency)
+  {
+    var e = 63 - Long.numberOfLeadingZeros(Math.max(1, latency));
+    return Math.max(0, Math.min(ROWS - 1, e - MIN_LOG2));
+  }
+
+
+  /**
+   * The smallest latency that is counted in given row, 0 for row 0.
+   */
+  static long rowStart(int r)
+  {
+    return r == 0 ? 0 : 1L << (MIN_LOG2 + r);
+  }
+
+
+  /**
+   * log2 of the width in ns of a time bucket at given level.
+   */
+  int bucketLog2(int level)
+  {
+    return _pyramid.bucketLog2(level);
+  }
+
+
+  /**
+   * The highest level whose buckets are not wider than given time, 0 if
+   * even level 0 is wider.
+   *
+   * @param ns a time span in ns, e.g., the time covered by one pixel.
+   */
+  int levelFor(double ns)
+  {
+    return Math.max(0, _pyramid.levelFor(ns));
+  }
+
+
+  /**
+   * Record one activation.
+   *
+   * @param relativeNs the time of the activation relative to the start of the
+   * recording.
+   *
+   * @param latency the latency of the activation.
+   */
+  void add(long relativeNs, long latency)
+  {
+    _pyramid.add(relativeNs, row(latency));
+  }
+
+
+  /**
+   * Number of activations in the given range of time buckets and given row.
+   *
+   * @param level the level
+   *
+   * @param from the first time bucket
+   *
+   * @param to the last time bucket, inclusive
+   *
+   * @param r the latency row
+   */
+  int count(int level, long from, long to, int r)
+  {
+    return _pyramid.count(level, from, to, r);
+  }
+
+}
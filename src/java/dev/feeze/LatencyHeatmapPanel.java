@@ -0,0 +1,299 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.LatencyHeatmapPanel
+ *
+ *---------------------------------------------------------------------*/
+
+
+package dev.feeze;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * LatencyHeatmapPanel shows the wakeup latencies below a SchedulingPanorama:
+ * x is the time using the same scale as the panorama, y are the logarithmic
+ * latency rows of LatencyHeatmap with the largest latencies at the top, and
+ * the color gives the number of activations.
+ *
+ * Clicking a cell moves the panorama to the activation with the largest
+ * latency in this cell and highlights its critical path.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class LatencyHeatmapPanel extends JComponent
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  private static final long serialVersionUID = 1L;
+
+
+  /**
+   * Height of one latency row in pixels.
+   */
+  static final int ROW_HEIGHT = 4;
+
+
+  /**
+   * Labels for latencies 2^10, 2^20 and 2^30 ns.
+   */
+  static final String[] LABELS = { "1us", "1ms", "1s" };
+
+
+  /**
+   * Colors for intensities 0..255, from white to dark purple.
+   */
+  static final int[] COLORS = new int[256];
+  static
+  {
+    var c = SchedulingPanorama.TOKIWA_COLORS[0][0];
+    for (var i = 0; i < COLORS.length; i++)
+      {
+        var r = 255 - (255 - c.getRed  ()) * i / 255;
+        var g = 255 - (255 - c.getGreen()) * i / 255;
+        var b = 255 - (255 - c.getBlue ()) * i / 255;
+        COLORS[i] = 0xff000000 | r << 16 | g << 8 | b;
+      }
+  }
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The panorama whose time axis is used.
+   */
+  final SchedulingPanorama _panorama;
+
+
+  /**
+   * The data to show.
+   */
+  final transient Data _data;
+
+
+  /**
+   * The image drawn to and its pixels, reallocated if the size changes.
+   */
+  transient BufferedImage _image;
+  int[] _pixels;
+
+
+  /**
+   * Counts per pixel column and latency row of the last paint.
+   */
+  int[] _columnCounts = new int[0];
+
+
+  /**
+   * {level, from, to} as set by buckets(), only used on the event dispatch
+   * thread.
+   */
+  final long[] _buckets = new long[3];
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create heatmap for the given panorama.
+   */
+  LatencyHeatmapPanel(SchedulingPanorama p)
+  {
+    _panorama = p;
+    _data = p._data;
+    setPreferredSize(new Dimension(0, LatencyHeatmap.ROWS * ROW_HEIGHT));
+    setToolTipText("wakeup latencies: click to show the activation with the largest latency");
+    addMouseListener(new MouseAdapter()
+      {
+        @Override
+        public void mouseClicked(MouseEvent e)
+        {
+          jumpTo(e.getX(), e.getY());
+        }
+      });
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * The first and last time bucket and level for the given x coordinate in the
+   * panorama, stored in _buckets as {level, from, to}.
+   */
+  void buckets(LatencyHeatmap hm, int px)
+  {
+    var t0 = Math.max(0, _panorama.posx_to_nanos(px));
+    var t1 = Math.max(t0 + 1, _panorama.posx_to_nanos(px + 1));
+    var l = hm.levelFor(t1 - t0);
+    var s = hm.bucketLog2(l);
+    _buckets[0] = l;
+    _buckets[1] = t0 >>> s;
+    _buckets[2] = Math.max(_buckets[1], (t1 - 1) >>> s);
+  }
+
+
+  /**
+   * Paint the heatmap.
+   *
+   * @param g the graphics to draw to.
+   */
+  @Override
+  protected void paintComponent(Graphics g)
+  {
+    var w = getWidth();
+    var h = getHeight();
+    g.setColor(Color.white);
+    g.fillRect(0, 0, w, h);
+    if (w <= 0 || h <= 0)
+      {
+        return;
+      }
+    if (_image == null || _image.getWidth() != w || _image.getHeight() != h)
+      {
+        _image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        _pixels = ((DataBufferInt) _image.getRaster().getDataBuffer()).getData();
+      }
+    var rows = LatencyHeatmap.ROWS;
+    if (_columnCounts.length < w * rows)
+      {
+        _columnCounts = new int[w * rows];
+      }
+
+    // x range that is below the visible part of the panorama:
+    var off = SwingUtilities.convertPoint(this, 0, 0, _panorama);
+    var vr = _panorama.getVisibleRect();
+    var x0 = Math.max(0, vr.x - off.x);
+    var x1 = Math.min(w, vr.x + vr.width - off.x);
+
+    var max = 0;
+    var b = _buckets;
+    synchronized (_data)
+      {
+        var hm = _data._latencies._heatmap;
+        for (var x = x0; x < x1; x++)
+          {
+            buckets(hm, x + off.x);
+            for (var r = 0; r < rows; r++)
+              {
+                var c = hm.count((int) b[0], b[1], b[2], r);
+                _columnCounts[x * rows + r] = c;
+                max = Math.max(max, c);
+              }
+          }
+      }
+
+    Arrays.fill(_pixels, COLORS[0]);
+    var lmax = Math.log1p(max);
+    for (var x = x0; x < x1; x++)
+      {
+        for (var r = 0; r < rows; r++)
+          {
+            var c = _columnCounts[x * rows + r];
+            if (c > 0)
+              {
+                var col = COLORS[Math.max(1, (int) (255 * Math.log1p(c) / lmax))];
+                var yt = (rows - 1 - r) * ROW_HEIGHT;
+                for (var y = yt; y < yt + ROW_HEIGHT && y < h; y++)
+                  {
+                    _pixels[y * w + x] = col;
+                  }
+              }
+          }
+      }
+    g.drawImage(_image, 0, 0, null);
+
+    // labels for about 1us, 1ms and 1s left of the data:
+    g.setColor(Color.gray);
+    g.drawLine(x0 - 1, 0, x0 - 1, h);
+    var fm = g.getFontMetrics();
+    for (var r = 0; r < rows; r++)
+      {
+        if ((LatencyHeatmap.MIN_LOG2 + r) % 10 == 0)
+          {
+            var s = LABELS[(LatencyHeatmap.MIN_LOG2 + r) / 10 - 1];
+            var yb = (rows - r) * ROW_HEIGHT;
+            g.drawLine(x0 - 4, yb, x0 - 1, yb);
+            g.drawString(s, x0 - 6 - fm.stringWidth(s), Math.max(fm.getAscent(), yb));
+          }
+      }
+  }
+
+
+  /**
+   * Move the panorama to the activation with the largest latency in the cell
+   * at the given position and highlight its critical path.
+   *
+   * @param x the x coordinate in this panel
+   *
+   * @param y the y coordinate in this panel
+   */
+  void jumpTo(int x, int y)
+  {
+    var off = SwingUtilities.convertPoint(this, 0, 0, _panorama);
+    var r = LatencyHeatmap.ROWS - 1 - y / ROW_HEIGHT;
+    var best = -1;
+    synchronized (_data)
+      {
+        var l = _data._latencies;
+        var b = _buckets;
+        buckets(l._heatmap, x + off.x);
+        var s = l._heatmap.bucketLog2((int) b[0]);
+        var from = b[1] << s;
+        var to   = (b[2] + 1) << s;
+        for (var i = l.firstActivationFrom(from); i < l.numActivations() && l.runNs(i) < to; i++)
+          {
+            if (LatencyHeatmap.row(l.latency(i)) == r &&
+                (best < 0 || l.latency(i) > l.latency(best)))
+              {
+                best = i;
+              }
+          }
+        if (best >= 0)
+          {
+            _panorama.jumpTo(l.runNs(best), _data.newThreadAt(l.runAt(best)));
+            _panorama.showCriticalPath(best);
+          }
+      }
+  }
+
+}
@@ -0,0 +1,196 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.LatencyHistogram
+ *
+ *---------------------------------------------------------------------*/
+
+
+package dev.feeze;
+
+import java.util.Arrays;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * LatencyHistogram is a log-linear histogram of latencies in nanoseconds
+ * similar to an HDR histogram, see LogLinearBuckets: the relative error of any
+ * recorded value is at most 1/16 while the whole range of long values is
+ * covered.
+ *
+ * The array of counts grows only up to the highest bucket used, so
+ * histograms that only see short latencies stay small.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class LatencyHistogram extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * 16 sub-buckets per power of two.
+   */
+  static final LogLinearBuckets BUCKETS = new LogLinearBuckets(4);
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * Counts per bucket, grown on demand.
+   */
+  long[] _counts = new long[BUCKETS._subBuckets];
+
+
+  /**
+   * Total number of values, their sum, minimum and maximum.
+   */
+  long _count;
+  long _sum;
+  long _min = Long.MAX_VALUE;
+  long _max = Long.MIN_VALUE;
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Record one value.
+   *
+   * @param ns a latency in nanoseconds, negative values are recorded as 0.
+   */
+  void add(long ns)
+  {
+    ns = Math.max(0, ns);
+    var b = BUCKETS.bucket(ns);
+    if (b >= _counts.length)
+      {
+        _counts = Arrays.copyOf(_counts, Math.min(BUCKETS._numBuckets, Math.max(b + 1, 2 * _counts.length)));
+      }
+    _counts[b]++;
+    _count++;
+    _sum += ns;
+    _min = Math.min(_min, ns);
+    _max = Math.max(_max, ns);
+  }
+
+
+  /**
+   * Number of values recorded.
+   */
+  long count()
+  {
+    return _count;
+  }
+
+
+  /**
+   * Number of values recorded in given bucket.
+   *
+   * @param b a bucket index
+   */
+  long count(int b)
+  {
+    return b < _counts.length ? _counts[b] : 0;
+  }
+
+
+  /**
+   * Minimum, maximum and mean of recorded values, 0 if empty.
+   */
+  long min()  { return _count == 0 ? 0 : _min; }
+  long max()  { return _count == 0 ? 0 : _max; }
+  long mean() { return _count == 0 ? 0 : _sum / _count; }
+
+
+  /**
+   * Value at the given percentile, i.e., the upper bound of the bucket that
+   * contains the value at this rank, limited by the maximum value.
+   *
+   * @param p percentile, 0 <= p <= 100
+   *
+   * @return the value in nanoseconds, 0 if empty.
+   */
+  long percentile(double p)
+  {
+    if (PRECONDITIONS) require
+      (0 <= p && p <= 100);
+
+    var res = 0L;
+    if (_count > 0)
+      {
+        var rank = Math.max(1, (long) Math.ceil(p / 100 * _count));
+        var n = 0L;
+        var b = 0;
+        while (b < _counts.length && n + _counts[b] < rank)
+          {
+            n += _counts[b];
+            b++;
+          }
+        res = Math.min(_max, BUCKETS.bucketEnd(b));
+      }
+    return res;
+  }
+
+
+  /**
+   * Add all values recorded in another histogram to this.
+   *
+   * @param o another histogram
+   */
+  void addAll(LatencyHistogram o)
+  {
+    if (o._counts.length > _counts.length)
+      {
+        _counts = Arrays.copyOf(_counts, o._counts.length);
+      }
+    for (var b = 0; b < o._counts.length; b++)
+      {
+        _counts[b] += o._counts[b];
+      }
+    _count += o._count;
+    _sum += o._sum;
+    _min = Math.min(_min, o._min);
+    _max = Math.max(_max, o._max);
+  }
+
+
+  /**
+   * Short summary for display, e.g. in a tool tip.
+   */
+  public String toString()
+  {
+    return _count == 0
+      ? "no activations"
+      : ("p50 "   + TimeAsString.getString(percentile(50), 1) +
+         " p99 "  + TimeAsString.getString(percentile(99), 1) +
+         " max "  + TimeAsString.getString(max(), 1) +
+         " ("     + _count + (_count == 1 ? " activation)" : " activations)"));
+  }
+
+}
@@ -0,0 +1,145 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.LogLinearBuckets
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * LogLinearBuckets maps non-negative long values to the buckets of a
+ * log-linear histogram similar to an HDR histogram: Every power of two is
+ * split into 2^subBucketsLog2 linear sub-buckets, so the relative error of any
+ * value is at most 1/2^subBucketsLog2 while the whole range of long values is
+ * covered by a few hundred buckets.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class LogLinearBuckets extends ANY
+{
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * log2 of the number of sub-buckets per power of two and the number of
+   * sub-buckets.
+   */
+  final int _subBucketsLog2;
+  final int _subBuckets;
+
+
+  /**
+   * Number of buckets needed to cover all non-negative long values.
+   */
+  final int _numBuckets;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create buckets with 2^subBucketsLog2 sub-buckets per power of two.
+   *
+   * @param subBucketsLog2 the log2 of the number of sub-buckets, 0..8.
+   */
+  LogLinearBuckets(int subBucketsLog2)
+  {
+    if (PRECONDITIONS) require
+      (0 <= subBucketsLog2 && subBucketsLog2 <= 8);
+
+    _subBucketsLog2 = subBucketsLog2;
+    _subBuckets = 1 << subBucketsLog2;
+    _numBuckets = (64 - subBucketsLog2) * _subBuckets;
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Log-linear bucket for a given value: the highest one bit gives the power
+   * of two, the following _subBucketsLog2 bits give the sub-bucket.
+   *
+   * @param v a value, negative values are treated as 0.
+   *
+   * @return the bucket index, 0 <= result < _numBuckets.
+   */
+  int bucket(long v)
+  {
+    if (v < _subBuckets)
+      {
+        return (int) Math.max(0, v);
+      }
+    else
+      {
+        var e = 63 - Long.numberOfLeadingZeros(v);
+        var m = (int) (v >>> (e - _subBucketsLog2)) & (_subBuckets - 1);
+        return (e - _subBucketsLog2 + 1) * _subBuckets + m;
+      }
+  }
+
+
+  /**
+   * The smallest value that falls into given bucket.
+   *
+   * @param b a bucket index
+   *
+   * @return the lower bound of the bucket.
+   */
+  long bucketStart(int b)
+  {
+    if (b < _subBuckets)
+      {
+        return b;
+      }
+    else
+      {
+        var e = b / _subBuckets + _subBucketsLog2 - 1;
+        var m = b % _subBuckets;
+        return (1L << e) + ((long) m << (e - _subBucketsLog2));
+      }
+  }
+
+
+  /**
+   * The largest value that falls into given bucket.
+   *
+   * @param b a bucket index
+   *
+   * @return the upper bound of the bucket.
+   */
+  long bucketEnd(int b)
+  {
+    return b + 1 < _numBuckets ? bucketStart(b + 1) - 1 : Long.MAX_VALUE;
+  }
+
+}
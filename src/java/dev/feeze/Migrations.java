@@ -0,0 +1,331 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.Migrations
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * Migrations counts how often threads are switched in on a different CPU than
+ * the one they ran on before, per thread, per process, per time window and
+ * per cache-topology distance, see CpuTopology.  It also records the time
+ * every thread spent running on every CPU.
+ *
+ * This is fed incrementally by Data.processNewData() with every SCHED_SWITCH
+ * entry.  All methods must be called while holding the lock on the Data.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class Migrations extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * log2 of the length in ns of the time windows migrations are counted in,
+   * i.e., about 1s.
+   */
+  static final int WINDOW_LOG2 = 30;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The data this is working on.
+   */
+  final Data _data;
+
+
+  /**
+   * Per thread, indexed by SystemThread._originalNumber: the CPU id it ran on
+   * last and is running on now, -1 if none, the time it was switched in, the
+   * number of migrations and the time in ns it ran per CPU id, null if it
+   * never ran.
+   */
+  int[] _lastCpu = new int[16];
+  long[] _switchedInNs = new long[16];
+  int[] _perThread = new int[16];
+  long[][] _residency = new long[16][];
+  {
+    Arrays.fill(_lastCpu, -1);
+  }
+
+
+  /**
+   * Number of migrations per process (by _num) and per time window.
+   */
+  int[] _perProcess = new int[16];
+  int[] _perWindow = new int[16];
+
+
+  /**
+   * Number of migrations per distance as given by CpuTopology.
+   */
+  final long[] _perDistance = new long[CpuTopology.DISTANCE_NAMES.length];
+
+
+  /**
+   * Total number of migrations.
+   */
+  long _total = 0;
+
+
+  /**
+   * Cached value of _data.nanosMin(), -1 if not known yet.
+   */
+  long _nanosMin = -1;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create migration analysis for given data.
+   */
+  Migrations(Data data)
+  {
+    _data = data;
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Add d to a[i], grow a if needed.
+   *
+   * @return a or its grown copy.
+   */
+  private static int[] add(int[] a, int i, int d)
+  {
+    if (i >= a.length)
+      {
+        a = Arrays.copyOf(a, Math.max(i + 1, 2 * a.length));
+      }
+    a[i] += d;
+    return a;
+  }
+
+
+  /**
+   * Make sure the per thread arrays have room for thread number n.
+   */
+  private void ensureThread(int n)
+  {
+    if (n >= _lastCpu.length)
+      {
+        var l = _lastCpu.length;
+        var nl = Math.max(n + 1, 2 * l);
+        _lastCpu      = Arrays.copyOf(_lastCpu     , nl);
+        _switchedInNs = Arrays.copyOf(_switchedInNs, nl);
+        _perThread    = Arrays.copyOf(_perThread   , nl);
+        _residency    = Arrays.copyOf(_residency   , nl);
+        Arrays.fill(_lastCpu, l, nl, -1);
+      }
+  }
+
+
+  /**
+   * Process a SCHED_SWITCH entry.
+   *
+   * @param at the index of the entry
+   *
+   * @param ot the thread that is switched out
+   *
+   * @param nt the thread that is switched in
+   *
+   * @param cpu the CPU
+   */
+  void switched(int at, SystemThread ot, SystemThread nt, Cpu cpu)
+  {
+    if (_nanosMin < 0)
+      {
+        _nanosMin = _data.nanosMin();
+      }
+    var ns = _data.ns(at) - _nanosMin;
+    var id = cpu._id;
+    if (!ot.isSwapper())
+      {
+        var n = ot._originalNumber;
+        ensureThread(n);
+        var c = _lastCpu[n];
+        if (c >= 0)
+          {
+            var r = _residency[n];
+            if (r == null || c >= r.length)
+              {
+                r = r == null ? new long[c + 1] : Arrays.copyOf(r, c + 1);
+                _residency[n] = r;
+              }
+            r[c] += Math.max(0, ns - _switchedInNs[n]);
+          }
+      }
+    if (!nt.isSwapper())
+      {
+        var n = nt._originalNumber;
+        ensureThread(n);
+        var c = _lastCpu[n];
+        if (c >= 0 && c != id)
+          {
+            _perThread[n]++;
+            if (nt._p != _data._unresolved)
+              { // otherwise, credited to the process by resolved()
+                _perProcess = add(_perProcess, nt._p._num, 1);
+              }
+            _perWindow = add(_perWindow, (int) (Math.max(0, ns) >>> WINDOW_LOG2), 1);
+            _perDistance[_data.topology().distance(c, id)]++;
+            _total++;
+          }
+        _lastCpu[n] = id;
+        _switchedInNs[n] = ns;
+      }
+  }
+
+
+  /**
+   * Thread t that was created with Offsets.PID_UNRESOLVED was moved to its
+   * process: credit its migrations so far to the process.
+   */
+  void resolved(SystemThread t)
+  {
+    var m = forThread(t);
+    if (m > 0)
+      {
+        _perProcess = add(_perProcess, t._p._num, m);
+      }
+  }
+
+
+  /**
+   * Number of migrations of given thread.
+   */
+  int forThread(SystemThread t)
+  {
+    var n = t._originalNumber;
+    return n < _perThread.length ? _perThread[n] : 0;
+  }
+
+
+  /**
+   * Number of migrations of the threads of given process.
+   */
+  int forProcess(SystemProcess p)
+  {
+    return p._num < _perProcess.length ? _perProcess[p._num] : 0;
+  }
+
+
+  /**
+   * Number of migrations in the time window with given index, i.e., starting
+   * at index * 2^WINDOW_LOG2 ns after the start of the recording.
+   */
+  int forWindow(int index)
+  {
+    return index < _perWindow.length ? _perWindow[index] : 0;
+  }
+
+
+  /**
+   * Time in ns given thread ran on the CPU with given id.
+   */
+  long residency(SystemThread t, int cpuId)
+  {
+    var n = t._originalNumber;
+    var r = n < _residency.length ? _residency[n] : null;
+    return r != null && cpuId < r.length ? r[cpuId] : 0;
+  }
+
+
+  /**
+   * The threads that migrated at least once, most migrations first.
+   */
+  ArrayList<SystemThread> migratingThreads()
+  {
+    var res = new ArrayList<SystemThread>();
+    for (var t : _data._unsortedThreads)
+      {
+        if (forThread(t) > 0)
+          {
+            res.add(t);
+          }
+      }
+    res.sort((a, b) -> Integer.compare(forThread(b), forThread(a)));
+    return res;
+  }
+
+
+  /**
+   * Create a textual summary of the migrations: in total, per distance, per
+   * process and the busiest time windows.
+   */
+  String summary()
+  {
+    var sb = new StringBuilder();
+    sb.append("migrations: ").append(_total).append('\n');
+    for (var d = 0; d < _perDistance.length; d++)
+      {
+        if (_perDistance[d] > 0)
+          {
+            sb.append("  ").append(CpuTopology.DISTANCE_NAMES[d]).append(": ").append(_perDistance[d]).append('\n');
+          }
+      }
+    var procs = new ArrayList<SystemProcess>(_data._processesMap.values());
+    procs.sort((a, b) -> Integer.compare(forProcess(b), forProcess(a)));
+    for (var p : procs)
+      {
+        if (forProcess(p) > 0)
+          {
+            sb.append("process ").append(p).append(": ").append(forProcess(p)).append('\n');
+          }
+      }
+    var maxW = -1;
+    for (var w = 0; w < _perWindow.length; w++)
+      {
+        if (maxW < 0 || _perWindow[w] > _perWindow[maxW])
+          {
+            maxW = w;
+          }
+      }
+    if (maxW >= 0 && _perWindow[maxW] > 0)
+      {
+        sb.append("most migrations in one window: ").append(_perWindow[maxW])
+          .append(" starting at ").append(TimeAsString.getString((long) maxW << WINDOW_LOG2, 1)).append('\n');
+      }
+    return sb.toString();
+  }
+
+}
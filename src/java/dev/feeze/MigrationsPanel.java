@@ -0,0 +1,159 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.MigrationsPanel
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+
+import java.util.ArrayList;
+
+import javax.swing.JComponent;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * MigrationsPanel shows a thread x CPU residency heatmap: one row per thread
+ * that migrated, most migrations first, one column per CPU, and the color
+ * gives the fraction of the thread's running time spent on this CPU.
+ *
+ * The data is copied when the panel is created, so this does not change
+ * during a live recording.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class MigrationsPanel extends JComponent
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  private static final long serialVersionUID = 1L;
+
+
+  /**
+   * Maximum number of threads shown.
+   */
+  static final int MAX_ROWS = 200;
+
+
+  /**
+   * Size of a cell and width of the column with thread names in pixels.
+   */
+  static final int CELL_WIDTH = 10;
+  static final int CELL_HEIGHT = 14;
+  static final int LABEL_WIDTH = 280;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * Row labels, CPU ids of the columns and fraction of time per row and
+   * column 0..255.
+   */
+  final String[] _labels;
+  final int[] _cpuIds;
+  final int[][] _intensity;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create residency heatmap for given data, must be called while holding the
+   * lock on data.
+   */
+  MigrationsPanel(Data data)
+  {
+    var m = data._migrations;
+    var threads = m.migratingThreads();
+    var rows = Math.min(MAX_ROWS, threads.size());
+    _cpuIds = new int[data._cpus.size()];
+    for (var c = 0; c < _cpuIds.length; c++)
+      {
+        _cpuIds[c] = data._cpus.get(c)._id;
+      }
+    _labels = new String[rows];
+    _intensity = new int[rows][_cpuIds.length];
+    for (var r = 0; r < rows; r++)
+      {
+        var t = threads.get(r);
+        _labels[r] = t + " (" + m.forThread(t) + ")";
+        long total = 0;
+        for (var id : _cpuIds)
+          {
+            total += m.residency(t, id);
+          }
+        for (var c = 0; c < _cpuIds.length; c++)
+          {
+            _intensity[r][c] = total > 0 ? (int) (255 * m.residency(t, _cpuIds[c]) / total) : 0;
+          }
+      }
+    setPreferredSize(new Dimension(LABEL_WIDTH + _cpuIds.length * CELL_WIDTH,
+                                   (rows + 1) * CELL_HEIGHT));
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Paint the heatmap.
+   *
+   * @param g the graphics to draw to.
+   */
+  @Override
+  protected void paintComponent(Graphics g)
+  {
+    g.setColor(Color.white);
+    g.fillRect(0, 0, getWidth(), getHeight());
+    var fm = g.getFontMetrics();
+    var ty = (CELL_HEIGHT + fm.getAscent()) / 2 - 1;
+    g.setColor(Color.gray);
+    for (var c = 0; c < _cpuIds.length; c += 4)
+      {
+        g.drawString(Integer.toString(_cpuIds[c]), LABEL_WIDTH + c * CELL_WIDTH, ty);
+      }
+    for (var r = 0; r < _labels.length; r++)
+      {
+        var y = (r + 1) * CELL_HEIGHT;
+        for (var c = 0; c < _cpuIds.length; c++)
+          {
+            g.setColor(new Color(LatencyHeatmapPanel.COLORS[_intensity[r][c]]));
+            g.fillRect(LABEL_WIDTH + c * CELL_WIDTH, y, CELL_WIDTH - 1, CELL_HEIGHT - 1);
+          }
+        g.setColor(Color.black);
+        g.drawString(_labels[r], 2, y + ty);
+      }
+  }
+
+}
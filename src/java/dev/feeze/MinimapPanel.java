@@ -0,0 +1,231 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.MinimapPanel
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import javax.swing.JComponent;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * MinimapPanel shows the whole recording in a strip above a
+ * SchedulingPanorama: the system-wide CPU utilization and the gaps from the
+ * Overview, the outliers as ticks at the top and the part that is visible in
+ * the panorama as a frame.
+ *
+ * The Overview keeps prefix sums per chunk, so painting takes constant time
+ * per pixel column independent of the length of the recording.
+ *
+ * Clicking or dragging moves the panorama to the time under the mouse.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class MinimapPanel extends JComponent
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  private static final long serialVersionUID = 1L;
+
+
+  /**
+   * Height of the strip in pixels.
+   */
+  static final int HEIGHT = 32;
+
+
+  /**
+   * Height of the outlier ticks in pixels.
+   */
+  static final int TICK_HEIGHT = 6;
+
+
+  /**
+   * Colors of the outlier ticks per Outliers kind.
+   */
+  static final Color[] OUTLIER_COLORS = { new Color(255,  0,  0),
+                                          new Color(  0, 63,255),
+                                          new Color(255,140,  0),
+                                          new Color(127,  0,191) };
+
+
+  /**
+   * Color of the frame showing the visible part of the panorama.
+   */
+  static final Color VIEW_COLOR = Color.darkGray;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The panorama that is navigated.
+   */
+  final SchedulingPanorama _panorama;
+
+
+  /**
+   * The data to show.
+   */
+  final transient Data _data;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create minimap for the given panorama.
+   */
+  MinimapPanel(SchedulingPanorama p)
+  {
+    _panorama = p;
+    _data = p._data;
+    setPreferredSize(new Dimension(0, HEIGHT));
+    setToolTipText("whole recording: click or drag to move the view");
+    var ma = new MouseAdapter()
+      {
+        @Override
+        public void mousePressed(MouseEvent e)
+        {
+          moveTo(e.getX());
+        }
+        @Override
+        public void mouseDragged(MouseEvent e)
+        {
+          moveTo(e.getX());
+        }
+      };
+    addMouseListener(ma);
+    addMouseMotionListener(ma);
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * The length of the recording in ns, at least 1.
+   */
+  long relNsEnd()
+  {
+    return Math.max(1, _data.nanosEnd() - _data.nanosMin());
+  }
+
+
+  /**
+   * The x coordinate for given time relative to the start of the recording.
+   */
+  int x(long relNs, long relNsEnd)
+  {
+    return (int) ((double) relNs * getWidth() / relNsEnd);
+  }
+
+
+  /**
+   * Paint the minimap.
+   *
+   * @param g the graphics to draw to.
+   */
+  @Override
+  protected void paintComponent(Graphics g)
+  {
+    var w = getWidth();
+    var h = getHeight();
+    g.setColor(Color.white);
+    g.fillRect(0, 0, w, h);
+    synchronized (_data)
+      {
+        if (w > 0 && _data.entryCount() > 0)
+          {
+            var o = _data._overview;
+            var nanosMin = _data.nanosMin();
+            var end = relNsEnd();
+            for (var x = 0; x < w; x++)
+              {
+                var t0 = nanosMin + (long) ((double) end *  x      / w);
+                var t1 = nanosMin + (long) ((double) end * (x + 1) / w);
+                var uh = (int) Math.round(o.utilization(t0, t1) * (h - TICK_HEIGHT));
+                g.setColor(SchedulingPanorama.UTILIZATION_COLOR);
+                g.fillRect(x, h - uh, 1, uh);
+                if (o.gaps(t0, t1) > 0)
+                  {
+                    g.setColor(SchedulingPanorama.GAP_COLOR);
+                    g.fillRect(x, 0, 1, h);
+                  }
+              }
+            var xp = x(_data.nanosMax() - nanosMin, end);
+            if (xp < w)
+              {
+                g.setColor(SchedulingPanorama.LOADING_COLOR);
+                g.fillRect(xp, 0, w - xp, h);
+              }
+            for (var k = 0; k < Outliers.KIND_NAMES.length; k++)
+              {
+                g.setColor(OUTLIER_COLORS[k % OUTLIER_COLORS.length]);
+                for (var ol : _data._outliers.sorted(k))
+                  {
+                    g.fillRect(x(ol._ns, end), 0, 1, TICK_HEIGHT);
+                  }
+              }
+            var vr = _panorama.getVisibleRect();
+            var v0 = x(Math.max(0, _panorama.posx_to_nanos(vr.x           )), end);
+            var v1 = x(Math.max(0, _panorama.posx_to_nanos(vr.x + vr.width)), end);
+            g.setColor(VIEW_COLOR);
+            g.drawRect(v0, 0, Math.max(1, v1 - v0), h - 1);
+          }
+      }
+  }
+
+
+  /**
+   * Move the middle of the panorama to the time at the given x coordinate.
+   *
+   * @param x the x coordinate in this panel
+   */
+  void moveTo(int x)
+  {
+    var w = getWidth();
+    if (w > 0)
+      {
+        var ns = (long) ((double) relNsEnd() * Math.max(0, Math.min(w, x)) / w);
+        _panorama.jumpTo(ns, null);
+        repaint();
+      }
+  }
+
+}
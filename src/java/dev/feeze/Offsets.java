@@ -37,6 +37,20 @@ public interface Offsets
 {
   public static int entry_start_offset = 0x20;
 
+  // struct shared_buffer header as defined in feeze_record.c:
+  //
+  public static int HEADER_FORMAT_OFFSET = 0x19;
+
+  // formats of thread numbers in entries:
+  //
+  //  - narrow: 16-bit thread numbers as written by older recorders
+  //
+  //  - wide: bits 16..23 of thread numbers are stored in the *_T_NUM_HI
+  //    bytes, the thread name is shortened to ENTRY_TN_WIDE_NAME_LENGTH
+  //
+  public static int FORMAT_NARROW = 0;
+  public static int FORMAT_WIDE   = 1;
+
   // struct entry as defined in feeze_record.c:
   //
 
@@ -49,14 +63,19 @@ public interface Offsets
   public static int ENTRY_SS_OLD_T_NUM_OFFSET      = 0x08;
   public static int ENTRY_SS_NEW_T_NUM_OFFSET      = 0x0a;
   public static int ENTRY_SS_CPU_ID_OFFSET         = 0x0c;
+  public static int ENTRY_SS_OLD_T_NUM_HI_OFFSET   = 0x0e;
+  public static int ENTRY_SS_NEW_T_NUM_HI_OFFSET   = 0x0f;
 
   public static int ENTRY_SW_CAUSING_T_NUM_OFFSET  = 0x08;
   public static int ENTRY_SW_AFFECTED_T_NUM_OFFSET = 0x0a;
   public static int ENTRY_SW_CPU_ID_OFFSET         = 0x0c;
+  public static int ENTRY_SW_CAUSING_T_NUM_HI_OFFSET  = 0x0e;
+  public static int ENTRY_SW_AFFECTED_T_NUM_HI_OFFSET = 0x0f;
 
   public static int ENTRY_UE_T_NUM                 = 0x08;
   public static int ENTRY_UE_COLOR_BYTE            = 0x0a;
   public static int ENTRY_UE_PAD_BYTE              = 0x0b;
+  public static int ENTRY_UE_T_NUM_HI              = 0x0b;  // wide format only, pad byte otherwise
   public static int ENTRY_UE_MSG                   = 0x0c;
   public static int ENTRY_UE_MSG_SIZE                      = 0x04;
 
@@ -74,6 +93,29 @@ public interface Offsets
   public static int ENTRY_TN_T_NUM_OFFSET          = 0x08;
   public static int ENTRY_TN_NAME_OFFSET           = 0x0a;
   public static int ENTRY_TN_NAME_LENGTH                   = 0x06;
+  public static int ENTRY_TN_T_NUM_HI_OFFSET       = 0x0a;  // wide format only
+  public static int ENTRY_TN_WIDE_NAME_OFFSET      = 0x0b;
+  public static int ENTRY_TN_WIDE_NAME_LENGTH              = 0x05;
+
+  public static int ENTRY_CG_ID_OFFSET             = 0x08;
+
+  public static int ENTRY_TC_T_NUM_OFFSET          = 0x08;
+  public static int ENTRY_TC_CG_NUM_OFFSET         = 0x0c;
+
+  public static int ENTRY_TP_T_NUM_OFFSET          = 0x08;
+  public static int ENTRY_TP_PID_OFFSET            = 0x0c;
+
+  public static int ENTRY_CT_CPU_ID_OFFSET         = 0x08;
+  public static int ENTRY_CT_CORE_ID_OFFSET        = 0x0a;
+  public static int ENTRY_CT_PACKAGE_ID_OFFSET     = 0x0c;
+  public static int ENTRY_CT_LLC_ID_OFFSET         = 0x0e;
+
+  // value in ENTRY_KIND_CPU_TOPOLOGY for an id that is not known:
+  public static int CPU_TOPOLOGY_UNKNOWN           = 0xffff;
+
+  // pid in ENTRY_KIND_THREAD if the process is set later by
+  // ENTRY_KIND_THREAD_PROCESS:
+  public static int PID_UNRESOLVED                 = -2;
 
   public static int ENTRY_MC_STR_OFFSET            = 0x08;
   public static int ENTRY_MC_STR_SIZE                      = 0x08;
@@ -91,5 +133,9 @@ public interface Offsets
   public static int ENTRY_KIND_THREAD_NAME   =  8;
   public static int ENTRY_KIND_GAP           =  9;
   public static int ENTRY_KIND_MORE_CHARS    = 10;
+  public static int ENTRY_KIND_CGROUP        = 11;
+  public static int ENTRY_KIND_THREAD_PROCESS = 12;
+  public static int ENTRY_KIND_THREAD_CGROUP  = 13;
+  public static int ENTRY_KIND_CPU_TOPOLOGY   = 14;
 
 }
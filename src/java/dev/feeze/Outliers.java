@@ -0,0 +1,391 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.Outliers
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * Outliers keeps the worst events found in the recorded data in bounded
+ * priority queues, one per kind of event:
+ *
+ * - the longest wakeup latencies,
+ *
+ * - the longest off-CPU gaps of threads that usually run periodically, i.e.,
+ *   gaps much longer than the average of their earlier gaps,
+ *
+ * - the longest on-CPU bursts,
+ *
+ * - the longest periods a CPU was idle while threads were waiting in the run
+ *   queue of another CPU, i.e., the load was not balanced.  Threads waiting
+ *   in the run queue of the idle CPU itself are wakeup latencies.
+ *
+ * This is fed incrementally by Data.processNewData() with every SCHED_SWITCH
+ * entry after WakeupLatencies and RunQueues were updated.  All methods must be
+ * called while holding the lock on the Data.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class Outliers extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * The kinds of outliers and their names.
+   */
+  static final int LATENCY           = 0;
+  static final int OFF_CPU           = 1;
+  static final int ON_CPU            = 2;
+  static final int IDLE_WHILE_QUEUED = 3;
+  static final String[] KIND_NAMES = { "wakeup latency",
+                                       "off-CPU gap",
+                                       "on-CPU burst",
+                                       "CPU idle while other CPU queued" };
+
+
+  /**
+   * Maximum number of outliers kept per kind.
+   */
+  static final int MAX_PER_KIND = 64;
+
+
+  /**
+   * Number of earlier off-CPU gaps of a thread needed before a gap may be an
+   * outlier and factor by which it has to exceed their average.
+   */
+  static final int PERIODIC_MIN_GAPS = 8;
+  static final int PERIODIC_FACTOR = 4;
+
+
+  /*----------------------------  classes  ------------------------------*/
+
+
+  /**
+   * One outlier: an event of the given kind that started at _ns and took
+   * _duration ns.
+   */
+  static class Outlier
+  {
+    final int _kind;
+    final long _ns;
+    final long _duration;
+
+    /**
+     * The thread this happened to, null for IDLE_WHILE_QUEUED.
+     */
+    final SystemThread _thread;
+
+    /**
+     * The CPU this happened on, null if not known.
+     */
+    final Cpu _cpu;
+
+    /**
+     * The activation in WakeupLatencies for LATENCY, -1 otherwise.
+     */
+    final int _activation;
+
+    Outlier(int kind, long ns, long duration, SystemThread thread, Cpu cpu, int activation)
+    {
+      _kind = kind;
+      _ns = ns;
+      _duration = duration;
+      _thread = thread;
+      _cpu = cpu;
+      _activation = activation;
+    }
+
+    @Override
+    public String toString()
+    {
+      return KIND_NAMES[_kind] + " of " + TimeAsString.getString(_duration, 1) +
+        (_thread != null ? " " + _thread : "") +
+        (_cpu    != null ? " on " + _cpu : "");
+    }
+  }
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The data this is working on.
+   */
+  final Data _data;
+
+
+  /**
+   * Min-heaps of the outliers per kind, the smallest kept outlier is at the
+   * head.
+   */
+  final ArrayList<PriorityQueue<Outlier>> _worst = new ArrayList<>();
+  {
+    for (var k = 0; k < KIND_NAMES.length; k++)
+      {
+        _worst.add(new PriorityQueue<>((a, b) -> Long.compare(a._duration, b._duration)));
+      }
+  }
+
+
+  /**
+   * Per thread, indexed by SystemThread._originalNumber: the time it was
+   * switched in and out last, -1 if not known, the number of off-CPU gaps
+   * seen and their average.
+   */
+  long[] _switchedInNs  = new long[16];
+  long[] _switchedOutNs = new long[16];
+  int[] _numGaps = new int[16];
+  double[] _meanGap = new double[16];
+  {
+    Arrays.fill(_switchedInNs , -1);
+    Arrays.fill(_switchedOutNs, -1);
+  }
+
+
+  /**
+   * Per CPU id: the time the CPU started running the idle thread, -1 if it is
+   * not idle.
+   */
+  long[] _idleSince = new long[16];
+  {
+    Arrays.fill(_idleSince, -1);
+  }
+
+
+  /**
+   * Cached value of _data.nanosMin(), -1 if not known yet.
+   */
+  long _nanosMin = -1;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create outlier finder for given data.
+   */
+  Outliers(Data data)
+  {
+    _data = data;
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Add an outlier if it is among the worst of its kind.
+   */
+  private void add(int kind, long ns, long duration, SystemThread thread, Cpu cpu, int activation)
+  {
+    var q = _worst.get(kind);
+    if (duration > 0 && (q.size() < MAX_PER_KIND || q.peek()._duration < duration))
+      {
+        q.add(new Outlier(kind, ns, duration, thread, cpu, activation));
+        if (q.size() > MAX_PER_KIND)
+          {
+            q.poll();
+          }
+      }
+  }
+
+
+  /**
+   * Make sure the per thread arrays have room for thread number n.
+   */
+  private void ensureThread(int n)
+  {
+    if (n >= _switchedInNs.length)
+      {
+        var l = _switchedInNs.length;
+        var nl = Math.max(n + 1, 2 * l);
+        _switchedInNs  = Arrays.copyOf(_switchedInNs , nl);
+        _switchedOutNs = Arrays.copyOf(_switchedOutNs, nl);
+        _numGaps       = Arrays.copyOf(_numGaps      , nl);
+        _meanGap       = Arrays.copyOf(_meanGap      , nl);
+        Arrays.fill(_switchedInNs , l, nl, -1);
+        Arrays.fill(_switchedOutNs, l, nl, -1);
+      }
+  }
+
+
+  /**
+   * Process a SCHED_SWITCH entry.
+   *
+   * @param at the index of the entry
+   *
+   * @param ot the thread that is switched out
+   *
+   * @param nt the thread that is switched in
+   *
+   * @param cpu the CPU, null if unknown.
+   */
+  void switched(int at, SystemThread ot, SystemThread nt, Cpu cpu)
+  {
+    if (_nanosMin < 0)
+      {
+        _nanosMin = _data.nanosMin();
+      }
+    var ns = _data.ns(at) - _nanosMin;
+
+    var l = _data._latencies;
+    var a = l.numActivations() - 1;
+    if (a >= 0 && l.runAt(a) == at)
+      {
+        var w = _data.ns(l.wakingAt(a)) - _nanosMin;
+        add(LATENCY, w, l.latency(a), nt, cpu, a);
+      }
+
+    if (!ot.isSwapper())
+      {
+        var n = ot._originalNumber;
+        ensureThread(n);
+        var in = _switchedInNs[n];
+        if (in >= 0)
+          {
+            add(ON_CPU, in, ns - in, ot, cpu, -1);
+          }
+        _switchedInNs[n] = -1;
+        _switchedOutNs[n] = ns;
+      }
+    if (!nt.isSwapper())
+      {
+        var n = nt._originalNumber;
+        ensureThread(n);
+        var out = _switchedOutNs[n];
+        if (out >= 0)
+          {
+            var gap = ns - out;
+            var c = _numGaps[n];
+            if (c >= PERIODIC_MIN_GAPS && gap > PERIODIC_FACTOR * _meanGap[n])
+              {
+                add(OFF_CPU, out, gap, nt, cpu, -1);
+              }
+            _meanGap[n] += (gap - _meanGap[n]) / Math.min(c + 1, 2 * PERIODIC_MIN_GAPS);
+            _numGaps[n] = c + 1;
+          }
+        _switchedInNs[n] = ns;
+      }
+
+    if (cpu != null)
+      {
+        var id = cpu._id;
+        if (id >= _idleSince.length)
+          {
+            var ol = _idleSince.length;
+            _idleSince = Arrays.copyOf(_idleSince, Math.max(id + 1, 2 * ol));
+            Arrays.fill(_idleSince, ol, _idleSince.length, -1);
+          }
+        var since = _idleSince[id];
+        if (since >= 0 && !nt.isSwapper())
+          {
+            idleWhileQueued(cpu, since, ns);
+          }
+        _idleSince[id] = nt.isSwapper() ? (since >= 0 ? since : ns) : -1;
+      }
+  }
+
+
+  /**
+   * Add the longest time span within an idle period of cpu during which the
+   * run queue of some other CPU was not empty as an IDLE_WHILE_QUEUED outlier.
+   *
+   * @param cpu the CPU that was idle
+   *
+   * @param from the start of the idle period, relative to the start of the
+   * recording.
+   *
+   * @param to the end of the idle period, exclusive.
+   */
+  private void idleWhileQueued(Cpu cpu, long from, long to)
+  {
+    var all = _data._runQueues._nonEmpty;
+    var own = cpu._runQueue;
+    var i = all.indexAt(from);
+    var j = own.indexAt(from);
+    var t = from;
+    var start = -1L;
+    var bestStart = -1L;
+    var bestLength = 0L;
+    while (t < to)
+      {
+        var a = i >= 0 ? all._depth[i] : 0;
+        var o = j >= 0 && own._depth[j] > 0 ? 1 : 0;
+        var next = Math.min(to, Math.min(i + 1 < all._size ? all._ns[i + 1] : Long.MAX_VALUE,
+                                         j + 1 < own._size ? own._ns[j + 1] : Long.MAX_VALUE));
+        if (a - o > 0)
+          {
+            start = start >= 0 ? start : t;
+            if (next - start > bestLength)
+              {
+                bestStart = start;
+                bestLength = next - start;
+              }
+          }
+        else
+          {
+            start = -1;
+          }
+        while (i + 1 < all._size && all._ns[i + 1] <= next)
+          {
+            i++;
+          }
+        while (j + 1 < own._size && own._ns[j + 1] <= next)
+          {
+            j++;
+          }
+        t = next;
+      }
+    if (bestStart >= 0)
+      {
+        add(IDLE_WHILE_QUEUED, bestStart, bestLength, null, cpu, -1);
+      }
+  }
+
+
+  /**
+   * The outliers of given kind, worst first.
+   */
+  Outlier[] sorted(int kind)
+  {
+    var res = _worst.get(kind).toArray(new Outlier[0]);
+    Arrays.sort(res, (a, b) -> Long.compare(b._duration, a._duration));
+    return res;
+  }
+
+}
@@ -0,0 +1,286 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.Overview
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * Overview is a coarse summary of a recording per chunk of CHUNK_SIZE
+ * entries: the time range, the time the CPUs were busy and the number of gaps.
+ *
+ * It is built by one fast sequential scan over all entries written by the
+ * recorder that does not need the threads, processes or users, so it is
+ * available before these entries are processed by Data.processNewData().
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class Overview extends ANY implements Offsets
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * log2 of the number of entries per chunk.
+   */
+  static final int CHUNK_LOG2 = 12;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The data this summarizes.
+   */
+  final Data _data;
+
+
+  /**
+   * Number of entries scanned so far.
+   */
+  int _scanned = 0;
+
+
+  /**
+   * Per chunk: the maximum time of its timed entries and of those of all
+   * earlier chunks, i.e., an increasing end time, -1 if there is none yet,
+   * and the prefix sums of the busy times of all CPUs and of the number of
+   * gaps up to and including this chunk, so any range of chunks is summarized
+   * in constant time.
+   */
+  long[] _endNs = new long[16];
+  long[] _busyUntil = new long[16];
+  int[] _gapsUntil = new int[16];
+
+
+  /**
+   * The time of the first timed entry, -1 if there is none yet.
+   */
+  long _startNs = -1;
+
+
+  /**
+   * Thread numbers of the idle threads, i.e., those with tid 0, and the
+   * number of threads scanned.
+   */
+  final BitSet _idleThreads = new BitSet();
+  int _numThreads = 0;
+
+
+  /**
+   * Per CPU id: the time it became busy, -1 if it is idle.
+   */
+  long[] _busySince = new long[0];
+
+
+  /**
+   * The ids of the CPUs seen so far.
+   */
+  final BitSet _cpuIds = new BitSet();
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create overview of given data.
+   */
+  Overview(Data data)
+  {
+    _data = data;
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Number of chunks that contain scanned entries.
+   */
+  int numChunks()
+  {
+    return (_scanned + (1 << CHUNK_LOG2) - 1) >>> CHUNK_LOG2;
+  }
+
+
+  /**
+   * Number of CPUs seen so far.
+   */
+  int numCpus()
+  {
+    return _cpuIds.cardinality();
+  }
+
+
+  /**
+   * The time of the last timed entry scanned so far, -1 if none.
+   */
+  long endNs()
+  {
+    var c = numChunks();
+    return c > 0 ? _endNs[c - 1] : -1;
+  }
+
+
+  /**
+   * Scan all entries written by the recorder that were not scanned yet.  Must
+   * be called while holding the lock on the Data.
+   */
+  void update()
+  {
+    var n = (int) _data.unprocessedEntryCount();
+    while (_scanned < n)
+      {
+        var at = _scanned;
+        var c = at >>> CHUNK_LOG2;
+        if (c >= _endNs.length)
+          {
+            var l = 2 * _endNs.length;
+            _endNs     = Arrays.copyOf(_endNs    , l);
+            _busyUntil = Arrays.copyOf(_busyUntil, l);
+            _gapsUntil = Arrays.copyOf(_gapsUntil, l);
+          }
+        if ((at & ((1 << CHUNK_LOG2) - 1)) == 0)
+          {
+            _endNs    [c] = c > 0 ? _endNs    [c - 1] : -1;
+            _busyUntil[c] = c > 0 ? _busyUntil[c - 1] :  0;
+            _gapsUntil[c] = c > 0 ? _gapsUntil[c - 1] :  0;
+          }
+        var k = _data.kind(at);
+        if (k == ENTRY_KIND_THREAD)
+          {
+            if (_data.getInt(at, ENTRY_T_TID_OFFSET) == 0)
+              {
+                _idleThreads.set(_numThreads);
+              }
+            _numThreads++;
+          }
+        else if (_data.isTimed(at))
+          {
+            var ns = _data.ns(at);
+            if (_startNs < 0)
+              {
+                _startNs = ns;
+              }
+            _endNs[c] = Math.max(_endNs[c], ns);
+            if (k == ENTRY_KIND_SCHED_SWITCH)
+              {
+                var id = _data.cpu_id(at);
+                if (id >= _busySince.length)
+                  {
+                    var o = _busySince.length;
+                    _busySince = Arrays.copyOf(_busySince, Math.max(id + 1, 2 * o));
+                    Arrays.fill(_busySince, o, _busySince.length, -1);
+                  }
+                _cpuIds.set(id);
+                var since = _busySince[id];
+                if (since >= 0)
+                  { // attribute the whole busy time to the chunk it ends in
+                    _busyUntil[c] += Math.max(0, ns - since);
+                  }
+                var nt = _data.new_tnum(at);
+                _busySince[id] = _idleThreads.get(nt) ? -1 : ns;
+              }
+            else if (k == ENTRY_KIND_GAP)
+              {
+                _gapsUntil[c]++;
+              }
+          }
+        _scanned++;
+      }
+  }
+
+
+  /**
+   * The first chunk whose end time is at or after given time, numChunks() if
+   * none.
+   *
+   * @param ns a time as returned by Data.ns.
+   */
+  int chunkAt(long ns)
+  {
+    var l = 0;
+    var r = numChunks();
+    while (l < r)
+      {
+        var m = (l + r) >>> 1;
+        if (_endNs[m] < ns) { l = m + 1; }
+        else                { r = m;     }
+      }
+    return l;
+  }
+
+
+  /**
+   * The approximate fraction of time the CPUs were busy between the given
+   * times, i.e., the busy time of the chunks from the one containing from to
+   * the one containing to divided by their duration and the number of CPUs.
+   * O(log numChunks()).
+   *
+   * @param from a time as returned by Data.ns
+   *
+   * @param to a time as returned by Data.ns
+   *
+   * @return the utilization 0..1.
+   */
+  double utilization(long from, long to)
+  {
+    var c0 = chunkAt(from);
+    var c1 = Math.min(numChunks() - 1, chunkAt(to));
+    var busy = c1 < c0 ? 0 : _busyUntil[c1] - (c0 > 0 ? _busyUntil[c0 - 1] : 0);
+    var t0 = c0 > 0 ? _endNs[c0 - 1] : _startNs;
+    var t1 = c1 >= 0 ? _endNs[c1] : t0;
+    var n = numCpus();
+    return n > 0 && t1 > t0 ? Math.min(1.0, (double) busy / n / (t1 - t0)) : 0;
+  }
+
+
+  /**
+   * Number of gaps in the chunks from the one containing from to the one
+   * containing to.
+   *
+   * @param from a time as returned by Data.ns
+   *
+   * @param to a time as returned by Data.ns
+   */
+  int gaps(long from, long to)
+  {
+    var c0 = chunkAt(from);
+    var c1 = Math.min(numChunks() - 1, chunkAt(to));
+    return c1 < c0 ? 0 : _gapsUntil[c1] - (c0 > 0 ? _gapsUntil[c0 - 1] : 0);
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.RasterLanes
+ *
+ *---------------------------------------------------------------------*/
+
+
+package dev.feeze;
+
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import java.util.Arrays;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * RasterLanes is a transparent pixel buffer covering the visible rectangle of
+ * a SchedulingPanorama.  The state bars of CPUs and threads are written into
+ * this buffer as horizontal pixel spans, which is much cheaper than one Java2D
+ * call with a color change per state segment.  Once all lanes are written,
+ * the buffer is drawn in one call.
+ *
+ * Arrows, text and outlines are not supported here, these are still drawn via
+ * Java2D after the buffer was drawn.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class RasterLanes extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * Should state bars be drawn using RasterLanes?  Set env var
+   * FEEZE_JAVA2D_LANES=true to use one Java2D call per state segment instead.
+   */
+  static final boolean ENABLED = !System.getenv().getOrDefault("FEEZE_JAVA2D_LANES", "false").equals("true");
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The image and its pixels, allocated lazily and enlarged when the visible
+   * rectangle grows.
+   */
+  BufferedImage _image;
+  int[] _pixels;
+
+
+  /**
+   * Width of a line in _pixels, i.e., the width of _image.
+   */
+  int _stride;
+
+
+  /**
+   * The area of the panorama currently covered by this buffer.
+   */
+  int _x, _y, _w, _h;
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Start a new frame covering the given rectangle: make sure the buffer is
+   * large enough and clear it.
+   *
+   * @param r the visible rectangle to be drawn.
+   */
+  void begin(Rectangle r)
+  {
+    if (_image == null || _image.getWidth() < r.width || _image.getHeight() < r.height)
+      {
+        _image  = new BufferedImage(Math.max(1, r.width), Math.max(1, r.height), BufferedImage.TYPE_INT_ARGB);
+        _pixels = ((DataBufferInt) _image.getRaster().getDataBuffer()).getData();
+        _stride = _image.getWidth();
+      }
+    _x = r.x;
+    _y = r.y;
+    _w = r.width;
+    _h = r.height;
+    for (var l = 0; l < _h; l++)
+      {
+        Arrays.fill(_pixels, l * _stride, l * _stride + _w, 0);
+      }
+  }
+
+
+  /**
+   * Draw a horizontal line with the same pixels as Zoom.drawHLine.
+   *
+   * @param argb the color as returned by Color.getRGB().
+   *
+   * @param width the zoomed (!) width of the line
+   *
+   * @param x1 the x coordinate of the start
+   *
+   * @param y the y coordinate
+   *
+   * @param x2 the x coordinate of the end, inclusive.
+   */
+  void hLine(int argb, int width, int x1, int y, int x2)
+  {
+    var xl = Math.max(x1, _x) - _x;
+    var xr = Math.min(x2, _x + _w - 1) - _x;
+    if (xl <= xr)
+      {
+        var yt = Math.max(y - width/2        , _y) - _y;
+        var yb = Math.min(y - width/2 + width, _y + _h) - _y;
+        for (var l = yt; l < yb; l++)
+          {
+            Arrays.fill(_pixels, l * _stride + xl, l * _stride + xr + 1, argb);
+          }
+      }
+  }
+
+
+  /**
+   * Draw the buffer to the area it covers.
+   *
+   * @param g the graphics to draw to.
+   */
+  void draw(Graphics g)
+  {
+    if (_w > 0 && _h > 0)
+      {
+        g.drawImage(_image, _x, _y, _x + _w, _y + _h, 0, 0, _w, _h, null);
+      }
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.RunQueue
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.Arrays;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * RunQueue is the reconstructed run-queue depth of one CPU, i.e., the number
+ * of threads that were woken onto this CPU and that were not switched in yet.
+ *
+ * The depth is kept as a compact step function, i.e., the times of every
+ * change and the new depth, plus a SummaryPyramid to find the maximum depth
+ * during the time covered by one pixel quickly when zoomed out.
+ *
+ * All methods must be called while holding the lock on the Data.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class RunQueue extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * log2 of the width in ns of a bucket at pyramid level 0, i.e., about 16ms.
+   * For finer zoom levels, the step function is used directly.
+   */
+  static final int BASE_LOG2 = 24;
+
+
+  /**
+   * Number of pyramid levels, the top level has buckets of about 19 hours.
+   */
+  static final int NUM_LEVELS = 22;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * Times relative to the start of the recording at which the depth changed
+   * and the new depth, sorted by time.
+   */
+  long[] _ns    = new long[16];
+  int[]  _depth = new int[16];
+  int _size = 0;
+
+
+  /**
+   * Maximum depth per time bucket.
+   */
+  final SummaryPyramid _pyramid = new SummaryPyramid(BASE_LOG2, NUM_LEVELS);
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * The current depth, i.e., the depth after the last change.
+   */
+  int depth()
+  {
+    return _size > 0 ? _depth[_size-1] : 0;
+  }
+
+
+  /**
+   * Change the depth by delta at given time.
+   *
+   * @param relativeNs the time relative to the start of the recording.
+   *
+   * @param delta +1 if a thread was woken onto this CPU, -1 if it was switched
+   * in.
+   */
+  void change(long relativeNs, int delta)
+  {
+    var d = Math.max(0, depth() + delta);
+    var n = _size;
+    if (n > 0 && _ns[n-1] >= relativeNs)
+      { // changes at the same time or slightly out of order are merged
+        _depth[n-1] = d;
+      }
+    else
+      {
+        if (n >= _ns.length)
+          {
+            _ns    = Arrays.copyOf(_ns   , 2*n);
+            _depth = Arrays.copyOf(_depth, 2*n);
+          }
+        _ns   [n] = relativeNs;
+        _depth[n] = d;
+        _size = n + 1;
+      }
+    _pyramid.set(relativeNs, d);
+  }
+
+
+  /**
+   * Index of the last change at or before given time, -1 if none.
+   */
+  int indexAt(long relativeNs)
+  {
+    var i = Arrays.binarySearch(_ns, 0, _size, relativeNs);
+    return i >= 0 ? i : -i - 2;
+  }
+
+
+  /**
+   * The depth at given time.
+   *
+   * @param relativeNs a time relative to the start of the recording.
+   */
+  int depthAt(long relativeNs)
+  {
+    var i = indexAt(relativeNs);
+    return i >= 0 ? _depth[i] : 0;
+  }
+
+
+  /**
+   * The maximum depth during the given time span.
+   *
+   * @param from the start, relative to the start of the recording.
+   *
+   * @param to the end, inclusive, relative to the start of the recording.
+   */
+  int maxDepth(long from, long to)
+  {
+    var l = _pyramid.levelFor(to - from + 1);
+    int res;
+    if (l >= 0)
+      {
+        var s = _pyramid.bucketLog2(l);
+        res = _pyramid.max(l, Math.max(0, from) >>> s, Math.max(0, to) >>> s);
+      }
+    else
+      {
+        var i = indexAt(from);
+        res = i >= 0 ? _depth[i] : 0;
+        for (i++; i < _size && _ns[i] <= to; i++)
+          {
+            res = Math.max(res, _depth[i]);
+          }
+      }
+    return res;
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.RunQueues
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.Arrays;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * RunQueues reconstructs the run-queue depth of every CPU from the target CPUs
+ * of SCHED_WAKING and SCHED_WAKEUP entries: a woken thread is added to the
+ * run queue of its target CPU and removed when it is switched in by
+ * SCHED_SWITCH on any CPU.
+ *
+ * Threads that were preempted are not counted since the recorded entries do
+ * not tell whether a thread that was switched out is still runnable.
+ *
+ * In addition, the number of CPUs whose run queue is not empty is kept as a
+ * step function to find CPUs that are idle while threads wait on other CPUs.
+ *
+ * This is fed incrementally by Data.processNewData() and stores the result in
+ * Cpu._runQueue.  All methods must be called while holding the lock on the
+ * Data.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class RunQueues extends ANY
+{
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The data this is working on.
+   */
+  final Data _data;
+
+
+  /**
+   * Per thread, indexed by SystemThread._originalNumber: the CPU whose run
+   * queue the thread is waiting in, null if none.
+   */
+  Cpu[] _queuedOn = new Cpu[16];
+
+
+  /**
+   * Number of CPUs whose run queue is not empty.  The RunQueue is used as a
+   * step function over time only, its depth is a number of CPUs.
+   */
+  final RunQueue _nonEmpty = new RunQueue();
+
+
+  /**
+   * Cached value of _data.nanosMin(), -1 if not known yet.
+   */
+  long _nanosMin = -1;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create run-queue reconstruction for given data.
+   */
+  RunQueues(Data data)
+  {
+    _data = data;
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Time of entry at relative to the start of the recording.
+   */
+  private long relativeNs(int at)
+  {
+    if (_nanosMin < 0)
+      {
+        _nanosMin = _data.nanosMin();
+      }
+    return _data.ns(at) - _nanosMin;
+  }
+
+
+  /**
+   * Make sure _queuedOn has room for thread number n.
+   */
+  private void ensure(int n)
+  {
+    if (n >= _queuedOn.length)
+      {
+        _queuedOn = Arrays.copyOf(_queuedOn, Math.max(n + 1, 2 * _queuedOn.length));
+      }
+  }
+
+
+  /**
+   * Change the run-queue depth of given CPU and update _nonEmpty if it
+   * changed from or to zero.
+   */
+  private void change(Cpu cpu, long ns, int delta)
+  {
+    var rq = cpu._runQueue;
+    var was = rq.depth() > 0;
+    rq.change(ns, delta);
+    var is = rq.depth() > 0;
+    if (was != is)
+      {
+        _nonEmpty.change(ns, is ? +1 : -1);
+      }
+  }
+
+
+  /**
+   * Process a SCHED_WAKING or SCHED_WAKEUP entry.
+   *
+   * @param at the index of the entry
+   *
+   * @param t the thread that is woken
+   *
+   * @param cpu the target CPU
+   */
+  void woken(int at, SystemThread t, Cpu cpu)
+  {
+    var n = t._originalNumber;
+    ensure(n);
+    var old = _queuedOn[n];
+    if (old != cpu)
+      {
+        var ns = relativeNs(at);
+        if (old != null)
+          { // SCHED_WAKEUP chose a different CPU than SCHED_WAKING
+            change(old, ns, -1);
+          }
+        change(cpu, ns, +1);
+        _queuedOn[n] = cpu;
+      }
+  }
+
+
+  /**
+   * Process a SCHED_SWITCH entry.
+   *
+   * @param at the index of the entry
+   *
+   * @param t the thread that is switched in
+   */
+  void switchedIn(int at, SystemThread t)
+  {
+    var n = t._originalNumber;
+    ensure(n);
+    var cpu = _queuedOn[n];
+    if (cpu != null)
+      {
+        change(cpu, relativeNs(at), -1);
+        _queuedOn[n] = null;
+      }
+  }
+
+}
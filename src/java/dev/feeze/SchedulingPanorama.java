@@ -33,20 +33,30 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Point;
 import java.awt.Rectangle;
 
+import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.TreeSet;
 
 import javax.swing.JButton;
 import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
 import javax.swing.JToolTip;
 import javax.swing.SwingUtilities;
 
+import javax.swing.table.DefaultTableModel;
+
 import dev.flang.swing.Panorama;
 
 import dev.flang.util.ANY;
@@ -200,7 +210,65 @@ class SchedulingPanorama extends Panorama
    */
   final Data _data;
   boolean _cpusEnabled = false;
-  final boolean[] _usersEnabled;
+  boolean[] _usersEnabled;
+
+
+  /**
+   * In follow mode, the view scrolls to the newest data whenever new data was
+   * recorded.
+   */
+  volatile boolean _follow = false;
+
+
+  /**
+   * The activations on the selected critical path as computed by
+   * WakeupLatencies.criticalPath(), null if none is selected.
+   */
+  int[] _criticalPath = null;
+
+
+
+  /**
+   * The kind of outliers navigated by nextOutlier() and the rank of the
+   * current one, -1 if none was shown yet.
+   */
+  int _outlierKind = Outliers.LATENCY;
+  int _outlierRank = -1;
+
+
+
+  /**
+   * Time selection made by dragging with the right mouse button, relative to
+   * the start of the recording, -1 if none.
+   */
+  long _selectionFrom = -1;
+  long _selectionTo = -1;
+
+
+  /**
+   * Number of threads in _data._sortedThreads when _threads was created.
+   */
+  int _threadsCreatedFor = -1;
+
+
+  /**
+   * The thread filter set by setFilter(), null if all threads are shown.
+   *
+   * _visibleThreads is the set of SystemThread._originalNumber of the threads
+   * selected by _filter, _visibleUsers the set of SystemUser._num of the
+   * users with at least one selected thread.  Both are extended for new
+   * threads, _filterEvaluatedFor is the number of threads evaluated so far and
+   * _filterWindow the visible time window when the filter was set.
+   * _filterResolvedFor is Data._numResolved at the last evaluation, the
+   * filter is re-evaluated for all threads when threads were moved to their
+   * process since then.
+   */
+  transient ThreadFilter _filter = null;
+  BitSet _visibleThreads;
+  BitSet _visibleUsers;
+  int _filterEvaluatedFor;
+  int _filterResolvedFor;
+  long[] _filterWindow;
 
 
   final Zoom _zoom = new Zoom();
@@ -240,6 +308,16 @@ class SchedulingPanorama extends Panorama
   int _lastX = -1, _lastW = -1;
 
 
+  /**
+   * Rectangles reused by paintPanorama and threadY0 to avoid allocation of a
+   * new Rectangle for every frame or call.  Only to be used by the AWT event
+   * dispatch thread.
+   */
+  final Rectangle _paintRect   = new Rectangle();
+  final Rectangle _visibleRect = new Rectangle();
+  final Rectangle _layoutRect  = new Rectangle();
+
+
   /**
    * Cached results for {@code threadY}.
    */
@@ -261,6 +339,11 @@ class SchedulingPanorama extends Panorama
    */
   volatile ArrayList<FeezeThread> _threads = null;
 
+  /**
+   * The index of every thread in _threads, created together with _threads.
+   */
+  transient volatile IdentityHashMap<FeezeThread, Integer> _threadIndices = null;
+
   /**
    * Is thread for given index shown? This is set by {@code threadY()}
    * depending on the visible thread activity.
@@ -271,6 +354,43 @@ class SchedulingPanorama extends Panorama
   FeezeToolTip _toolTip = new FeezeToolTip(this);
 
 
+  /**
+   * Performance statistics of painted frames and flag to show these in a HUD
+   * in the data area.
+   */
+  final transient FrameStats _frameStats = new FrameStats();
+  volatile boolean _showFrameStats = false;
+
+
+  /**
+   * Set by paintPanorama while the user is interacting to draw a coarse level
+   * of detail: no waking-arrows, no thread names and no user events in the
+   * data area and blurring of stretches below COARSE_MIN_STRETCH pixels.
+   */
+  boolean _coarse = false;
+
+
+  /**
+   * Minimum width of a stretch in (unzoomed) pixels that is drawn individually
+   * when drawing at a coarse level of detail, smaller stretches are blurred.
+   */
+  static final int COARSE_MIN_STRETCH = 4;
+
+
+  /**
+   * Pixel buffer the state bars are written to if RasterLanes.ENABLED.
+   */
+  final transient RasterLanes _rasterLanes = new RasterLanes();
+
+
+  /**
+   * Set by paintPanorama if the current frame draws its state bars into
+   * _rasterLanes.  Then, all waking-arrows and user events have to be deferred
+   * until _rasterLanes was drawn.
+   */
+  boolean _raster = false;
+
+
   /* (non-Javadoc)
    * @see javax.swing.JComponent#createToolTip()
    */
@@ -300,7 +420,7 @@ class SchedulingPanorama extends Panorama
         if (t instanceof CumulativeThread ct)
           {
             var nr = ct.numRunning(ai);
-            name = "All threads for user '"+t.user()+"'";
+            name = ct.description();
             state =
               (nr == 0 ? "no threads running" :
                nr == 1 ? "one thread running"
@@ -310,6 +430,11 @@ class SchedulingPanorama extends Panorama
           {
             var duration = "";
             name = t.toString(ai);
+            var cg = ai >= 0 && t instanceof SystemThread st ? st.cgroupAt(t.at(ai)) : null;
+            if (cg != null)
+              {
+                name = name + " in " + cg;
+              }
             var tstate = ai < 0 ? ThreadState.error : stateAt(t, ai);
             if (ai == 0 && nanos_to_posx(_data.nanosAtSwitch(t.at(ai))) > x)
               { // For first action, if it is to the right of `x`, running / not running are swapped and we do not know the time
@@ -351,6 +476,17 @@ class SchedulingPanorama extends Panorama
         _toolTip._stateLabel.setText(state);
         _toolTip._cpuLabel.setText(cpu);
         _toolTip._timeLabel.setText("at "+time);
+        String latency;
+        synchronized (_data)
+          {
+            var h = _data._latencies.forLane(t);
+            latency = "wakeup latency " + (h == null ? "n/a" : h.toString());
+            if (t instanceof SystemThread st)
+              {
+                latency = latency + ", " + _data._migrations.forThread(st) + " migrations";
+              }
+          }
+        _toolTip._latencyLabel.setText(latency);
         _toolTip.revalidate();
         _toolTip.repaint();
       }
@@ -369,6 +505,48 @@ class SchedulingPanorama extends Panorama
     super(b1,b2,b3,b4);
     _data = data;
     _usersEnabled = new boolean[_data._users.size()];
+    var selector = new MouseAdapter()
+      {
+        @Override
+        public void mousePressed(MouseEvent e)
+        {
+          if (SwingUtilities.isRightMouseButton(e))
+            {
+              _selectionFrom = Math.max(0, posx_to_nanos(e.getX()));
+              _selectionTo = _selectionFrom;
+              repaint();
+            }
+        }
+        @Override
+        public void mouseDragged(MouseEvent e)
+        {
+          if (SwingUtilities.isRightMouseButton(e) && _selectionFrom >= 0)
+            {
+              _selectionTo = Math.max(0, posx_to_nanos(e.getX()));
+              repaint();
+            }
+        }
+        @Override
+        public void mouseReleased(MouseEvent e)
+        {
+          if (SwingUtilities.isRightMouseButton(e) && _selectionFrom >= 0)
+            {
+              if (_selectionFrom == _selectionTo)
+                {
+                  _selectionFrom = -1;
+                  _selectionTo = -1;
+                  repaint();
+                }
+              else
+                {
+                  showAggregates(Math.min(_selectionFrom, _selectionTo),
+                                 Math.max(_selectionFrom, _selectionTo));
+                }
+            }
+        }
+      };
+    addMouseListener(selector);
+    addMouseMotionListener(selector);
   }
 
 
@@ -583,7 +761,7 @@ class SchedulingPanorama extends Panorama
    */
   public int dataWidth()
   {
-    return nanos_to_zoom_x(relative_ns(_data.nanosMax()));
+    return nanos_to_zoom_x(relative_ns(_data.nanosEnd()));
   }
 
 
@@ -616,34 +794,470 @@ class SchedulingPanorama extends Panorama
   {
     if (_threads == null)
       {
-        synchronized (SchedulingPanorama.this)
+        synchronized (_data)
           {
             if (_threads == null)
               {
                 _threads = new ArrayList();
+                _threadsCreatedFor = threadsCreatedFor();
+                var al = _data._aggregateLanes;
+                if (al._user != null)
+                  {
+                    _threads.addAll(al.lanesOf(al._user));    // aggregate lanes not belonging to a process first
+                  }
+                var f = _filter;
+                if (f != null)
+                  {
+                    if (_filterResolvedFor != _data._numResolved)
+                      {
+                        _filterResolvedFor = _data._numResolved;
+                        _visibleThreads.clear();
+                        _visibleUsers.clear();
+                        _filterEvaluatedFor = 0;
+                      }
+                    _filterEvaluatedFor = f.evaluate(_data, _filterWindow, _visibleThreads, _visibleUsers, _filterEvaluatedFor);
+                  }
                 SystemUser u = null;
+                SystemProcess p = null;
                 for (var t : _data._sortedThreads)
                   {
                     var u2 = t.user();
+                    if (f != null && !_visibleUsers.get(u2._num))
+                      { // no thread of this user was selected, so hide the user including its cumulative pseudo-thread
+                        continue;
+                      }
                     if (u != u2)
                       {
                         u = u2;
-                        if (!_usersEnabled[u._num])
+                        if (!userEnabled(u))
                           {
                             _threads.add(u.cumulative());    // add cumulative pseudo-thread if needed.
                           }
                       }
-                    if (_usersEnabled[u._num])
+                    if (userEnabled(u) && (f == null || _visibleThreads.get(t._originalNumber)))
                       {
+                        if (p != t._p)
+                          {
+                            p = t._p;
+                            _threads.addAll(al.lanesOf(p));  // aggregate lanes of a process before its threads
+                          }
                         _threads.add(t);   // add only if no cumulative pseudo-thread was added
                       }
                   }
+                var ti = new IdentityHashMap<FeezeThread, Integer>();
+                for (var i = 0; i < _threads.size(); i++)
+                  {
+                    ti.put(_threads.get(i), i);
+                  }
+                _threadIndices = ti;
                 _threadY = null;
                 _userNums = null;
               }
           }
       }
-    return _threads.size();
+    return _threads.size();
+  }
+
+
+  /**
+   * Show only the threads selected by the given filter, re-evaluating it for
+   * all threads.
+   *
+   * @param f the filter, null to show all threads.
+   */
+  void setFilter(ThreadFilter f)
+  {
+    var vr = getVisibleRect();
+    synchronized (_data)
+      {
+        synchronized (this)
+          {
+            _filter = f;
+            _visibleThreads = new BitSet();
+            _visibleUsers = new BitSet();
+            _filterEvaluatedFor = 0;
+            _filterResolvedFor = _data._numResolved;
+            _filterWindow = new long[] { Math.max(0, posx_to_nanos(vr.x)),
+                                         Math.max(0, posx_to_nanos(vr.x + vr.width)) };
+            _threads = null;
+          }
+        numThreads();
+      }
+    adjustPosY(getY() + topFrame());
+    repaint();
+    _leftRuler.repaint();
+  }
+
+
+  /**
+   * The value of _threadsCreatedFor for the current data: a new value
+   * requires _threads to be recreated, this includes threads that were moved
+   * to their process.
+   */
+  int threadsCreatedFor()
+  {
+    return _data._sortedThreads.size() + _data._aggregateLanes._lanes.size() + _data._numResolved;
+  }
+
+
+  /**
+   * Add an aggregate lane described by spec, which is "pid=<pid>",
+   * "name=<regex>", "cpus=<list>", e.g., "cpus=0-3,8", or "cgroup=<regex>",
+   * which adds one lane for every cgroup whose path matches.
+   *
+   * The lanes are filled in the background and shown once this is done.
+   *
+   * @return null if lanes are being added, an error message otherwise.
+   */
+  String addAggregateLane(String spec)
+  {
+    var eq = spec.indexOf('=');
+    var key = eq < 0 ? "" : spec.substring(0, eq).trim();
+    var val = eq < 0 ? "" : spec.substring(eq + 1).trim();
+    var al = _data._aggregateLanes;
+    var lanes = new ArrayList<AggregateLane>();
+    synchronized (_data)
+      {
+        switch (key)
+          {
+          case "pid" ->
+            {
+              try
+                {
+                  var p = _data._processesMap.get(Integer.parseInt(val));
+                  if (p == null)
+                    {
+                      return "no process with pid " + val;
+                    }
+                  lanes.add(new AggregateLane(p));
+                }
+              catch (NumberFormatException e)
+                {
+                  return "illegal pid '" + val + "'";
+                }
+            }
+          case "name" ->
+            {
+              try
+                {
+                  lanes.add(new AggregateLane(al.user(), java.util.regex.Pattern.compile(val)));
+                }
+              catch (java.util.regex.PatternSyntaxException e)
+                {
+                  return "illegal pattern: " + e.getMessage();
+                }
+            }
+          case "cpus" ->
+            {
+              var ids = AggregateLanes.parseCpuList(val);
+              if (ids == null)
+                {
+                  return "illegal CPU list '" + val + "'";
+                }
+              lanes.add(new AggregateLane(al.user(), ids, val));
+            }
+          case "cgroup" ->
+            {
+              try
+                {
+                  var pattern = java.util.regex.Pattern.compile(val);
+                  for (var cg : _data._cgroups)
+                    {
+                      if (pattern.matcher(cg._path).find())
+                        {
+                          lanes.add(new AggregateLane(al.user(), cg));
+                        }
+                    }
+                  if (lanes.isEmpty())
+                    {
+                      return "no cgroup matching '" + val + "'";
+                    }
+                }
+              catch (java.util.regex.PatternSyntaxException e)
+                {
+                  return "illegal pattern: " + e.getMessage();
+                }
+            }
+          default ->
+            {
+              return "expected pid=<pid>, name=<regex>, cpus=<list> or cgroup=<regex>";
+            }
+          }
+      }
+    al.add(lanes.toArray(new AggregateLane[lanes.size()]), this::dataChanged);
+    return null;
+  }
+
+
+  /**
+   * Is the detailed view of the threads of given user enabled?
+   *
+   * @param u a user, may be one that was added by a live recording after
+   * this panorama was created.
+   */
+  boolean userEnabled(SystemUser u)
+  {
+    if (u._num >= _usersEnabled.length)
+      {
+        _usersEnabled = Arrays.copyOf(_usersEnabled, Math.max(u._num + 1, _data._users.size()));
+      }
+    return _usersEnabled[u._num];
+  }
+
+
+  /**
+   * Called in the AWT event dispatch thread after new data was processed
+   * during a live recording to update the view.  The repaint is requested via
+   * requestRepaint() to limit it to the target frame rate.
+   */
+  void dataChanged()
+  {
+    var threadsChanged = false;
+    synchronized (_data)
+      {
+        synchronized (SchedulingPanorama.this)
+          {
+            if (_threadsCreatedFor != threadsCreatedFor())
+              {
+                _threads = null;
+                threadsChanged = true;
+              }
+            var cy = _cpuY;
+            if (cy != null && cy.length != numCpus())
+              {
+                _threadY = null;
+                threadsChanged = true;
+              }
+          }
+      }
+    if (_follow)
+      {
+        followRightEdge();
+        if (_showFrameStats)
+          { // the HUD is not at a fixed position within the data, so it cannot be blitted
+            requestRepaint();
+          }
+      }
+    else
+      {
+        adjustPosX(getX() + leftFrame());
+      }
+    if (threadsChanged)
+      {
+        adjustPosY(getY() + topFrame());
+        requestRepaint();
+      }
+  }
+
+
+  /**
+   * Move the view such that the given time and thread are in the center.
+   * This ends follow mode.
+   *
+   * @param ns a time relative to the start of the recording
+   *
+   * @param t a thread, if it is not shown individually, the cumulative
+   * thread of its user will be used. May be null to keep the vertical
+   * position.
+   */
+  void jumpTo(long ns, SystemThread t)
+  {
+    if (_follow)
+      {
+        toggleFollow();
+      }
+    rememberCenter();
+    _rememberedMiddleNs = ns;
+    if (t != null)
+      {
+        var ti = threadIndex(t);
+        if (ti < 0)
+          {
+            ti = threadIndex(t.user().cumulative());
+          }
+        if (ti >= 0)
+          {
+            _rememberedMiddleThread = ti;
+          }
+      }
+    recallPos();
+    repaint();
+  }
+
+
+  /**
+   * Select the critical path that ends in the given activation and highlight
+   * it.
+   *
+   * @param activation an activation as recorded by WakeupLatencies, -1 to
+   * remove the highlight.
+   */
+  void showCriticalPath(int activation)
+  {
+    synchronized (_data)
+      {
+        _criticalPath = activation >= 0 ? _data._latencies.criticalPath(activation) : null;
+      }
+    repaint();
+  }
+
+
+  /**
+   * Select the critical path of the activation of the thread at the given
+   * position, i.e., the last activation whose waking is at or before the
+   * given time.  Remove the highlight if there is no such activation.
+   *
+   * @param p a position in this panorama, may be null.
+   */
+  void showCriticalPathAt(Point p)
+  {
+    var a = -1;
+    if (p != null)
+      {
+        synchronized (_data)
+          {
+            var i = threadAt(p.y);
+            if (0 <= i && i < numThreads() && thread(i) instanceof SystemThread t)
+              {
+                a = _data._latencies.activationAt(t, posx_to_nanos(p.x));
+              }
+          }
+      }
+    showCriticalPath(a);
+  }
+
+
+  /**
+   * Move the view to the next or previous outlier of the current kind, worst
+   * first.  For a wakeup latency, its critical path is highlighted.
+   *
+   * @param delta +1 for the next, i.e., less severe, -1 for the previous one.
+   *
+   * @return a description of the outlier, e.g., to be shown in the title.
+   */
+  String nextOutlier(int delta)
+  {
+    Outliers.Outlier o = null;
+    int n;
+    synchronized (_data)
+      {
+        var s = _data._outliers.sorted(_outlierKind);
+        n = s.length;
+        if (n > 0)
+          {
+            _outlierRank = Math.max(0, Math.min(n - 1, _outlierRank + delta));
+            o = s[_outlierRank];
+          }
+      }
+    String res;
+    if (o == null)
+      {
+        res = "no " + Outliers.KIND_NAMES[_outlierKind] + " outliers";
+      }
+    else
+      {
+        jumpTo(o._ns + o._duration / 2, o._thread);
+        showCriticalPath(o._activation);
+        res = "#" + (_outlierRank + 1) + "/" + n + ": " + o;
+      }
+    return res;
+  }
+
+
+  /**
+   * Switch to the next kind of outliers and show the worst one.
+   *
+   * @return a description of the outlier, e.g., to be shown in the title.
+   */
+  String nextOutlierKind()
+  {
+    _outlierKind = (_outlierKind + 1) % Outliers.KIND_NAMES.length;
+    _outlierRank = -1;
+    return nextOutlier(+1);
+  }
+
+
+  /**
+   * Show a table with the aggregates of all lanes, i.e., CPUs, threads and
+   * cumulative threads, in the given time span.
+   *
+   * @param from start of the time span, relative to the start of the recording
+   *
+   * @param to end of the time span, relative to the start of the recording
+   */
+  void showAggregates(long from, long to)
+  {
+    var names = ActionSubSet.AGGREGATE_NAMES;
+    var columns = new String[names.length + 2];
+    columns[0] = "lane";
+    columns[1] = names[ActionSubSet.ON_CPU] + " [µs]";
+    columns[2] = names[ActionSubSet.ON_CPU] + " [%]";
+    for (var a = 1; a < names.length; a++)
+      {
+        columns[a + 2] = names[a];
+      }
+    var model = new DefaultTableModel(columns, 0)
+      {
+        @Override
+        public Class<?> getColumnClass(int c)
+        {
+          return c == 0 ? String.class : c == 2 ? Double.class : Long.class;
+        }
+        @Override
+        public boolean isCellEditable(int r, int c)
+        {
+          return false;
+        }
+      };
+    synchronized (_data)
+      {
+        var nanosMin = _data.nanosMin();
+        var agg = new long[names.length];
+        var lanes = new ArrayList<ActionSubSet>(_data._cpus);
+        for (var i = 0; i < numThreads(); i++)
+          {
+            lanes.add(thread(i));
+          }
+        for (var l : lanes)
+          {
+            l.aggregate(nanosMin + from, nanosMin + to, agg);
+            var row = new Object[columns.length];
+            row[0] = l.toString();
+            row[1] = agg[ActionSubSet.ON_CPU] / 1000;
+            row[2] = Math.round(1000.0 * agg[ActionSubSet.ON_CPU] / (to - from)) / 10.0;
+            for (var a = 1; a < names.length; a++)
+              {
+                row[a + 2] = agg[a];
+              }
+            model.addRow(row);
+          }
+      }
+    var table = new JTable(model);
+    table.setAutoCreateRowSorter(true);
+    var sp = new JScrollPane(table);
+    sp.setPreferredSize(new Dimension(800, 400));
+    JOptionPane.showMessageDialog(this,
+                                  sp,
+                                  "Selection " + TimeAsString.getString(from, 1) + " .. " + TimeAsString.getString(to, 1),
+                                  JOptionPane.INFORMATION_MESSAGE);
+  }
+
+
+  /**
+   * Toggle follow mode that scrolls to the newest data during a live
+   * recording.
+   */
+  void toggleFollow()
+  {
+    _follow = !_follow;
+    if (_follow)
+      {
+        followRightEdge();
+      }
+    else
+      {
+        stopFollowing();
+      }
   }
 
 
@@ -672,14 +1286,9 @@ class SchedulingPanorama extends Panorama
     if (ANY.PRECONDITIONS) ANY.require
       (t != null);
 
-    // NYI: OPTIMIZATION: This might be expensive in case we have many threads,
-    // we could instead store the index in FeezeThread.
-    var res = numThreads()-1;
-    while (res >= 0 && thread(res) != t)
-      {
-        res--;
-      }
-    return res;
+    var n = numThreads();
+    var i = _threadIndices.get(t);
+    return i != null && i < n && thread(i) == t ? i : -1;
   }
 
 
@@ -832,12 +1441,14 @@ class SchedulingPanorama extends Panorama
     assert
       (t >= 0);
 
-    var r = getVisibleRect(); // NYI: make this an argument
+    var r = _layoutRect; // NYI: make this an argument
+    computeVisibleRect(r);
     var ts = SCALA_IN_MAIN_AREA ? 2*zoom(NORMAL_THREAD_SPACING) : 0;
     if (_lastThreadSpacing != ts || _lastPixelsPerNano != pixelsPerNano() ||
         _lastX != r.x || _lastW != r.width ||
         _threadY == null)
       {
+        _frameStats._layoutCacheMisses++;
         synchronized (SchedulingPanorama.this)
           {
             var changed = false;
@@ -897,12 +1508,17 @@ class SchedulingPanorama extends Panorama
             _lastW = r.width;
             if (changed)
               {
-                javax.swing.SwingUtilities.invokeLater(this::repaint);
-                javax.swing.SwingUtilities.invokeLater(_leftRuler::repaint);
+                requestRepaint();
+                _leftRuler.repaint();
               }
           }
       }
 
+    else
+      {
+        _frameStats._layoutCacheHits++;
+      }
+
     var l = _threadY.length;
     var res = t < l ? _threadY[Math.max(0,t)] : (_threadY[l-1] + ts*(t-l));
     return res;
@@ -1017,6 +1633,26 @@ class SchedulingPanorama extends Panorama
   }
 
 
+  /**
+   * The label shown in the process header of thread i.  The processes of a
+   * user are sorted by cgroup, the first process of every cgroup is labeled
+   * with its cgroup to make this grouping visible.
+   */
+  String processLabel(int i)
+  {
+    var p = thread(i).process();
+    var j = i - 1;
+    while (j >= 0 && thread(j).process() == p)
+      {
+        j--;
+      }
+    var pp = j >= 0 && thread(j).user() == p._user ? thread(j).process() : null;
+    var cg = p._cgroup;
+    return cg != null && (pp == null || pp._cgroup != cg) ? "[" + cg + "] " + p
+                                                         : p.toString();
+  }
+
+
   /**
    * For a given thread t, check if there are any relevant events shown in
    * visible rectangle r.  If so, return 1, otherwise, return a factor between 0
@@ -1134,6 +1770,44 @@ class SchedulingPanorama extends Panorama
   }
 
 
+  /**
+   * Find the end of a dense region of a lane that starts at x0, i.e., of
+   * windows of w pixels that contain at least two scheduler actions according
+   * to the given pyramid, so every stretch in them is blurred.
+   *
+   * @param p the pyramid of the scheduler actions of the lane.
+   *
+   * @param x0 the start of the region.
+   *
+   * @param x1 the maximum end of the region.
+   *
+   * @param w the width of a window, the minimum width of a stretch that is
+   * not blurred.
+   *
+   * @return the x position of the first window starting at or after x0 that
+   * is not dense, x0 if the pyramid is too coarse for windows of w pixels.
+   */
+  int denseUntil(SummaryPyramid p, int x0, int x1, int w)
+  {
+    w = Math.max(1, w);
+    var res = x0;
+    var l = p.levelFor(posx_to_nanos(x0 + w) - posx_to_nanos(x0));
+    if (l >= 0)
+      {
+        var s = p.bucketLog2(l);
+        while (res < x1 &&
+               p.count(l,
+                       Math.max(0, posx_to_nanos(res    )    ) >>> s,
+                       Math.max(0, posx_to_nanos(res + w) - 1) >>> s,
+                       0) >= 2)
+          {
+            res += w;
+          }
+      }
+    return res;
+  }
+
+
   /**
    * For a given x position, find the next gap index left of that position.
    */
@@ -1177,6 +1851,14 @@ class SchedulingPanorama extends Panorama
 
   static Color _color_waking_arrow_  = _color_waking_.darker();
 
+  static final Color GAP_COLOR = new Color(255,0,100,63);  // overlay for gaps in the recorded data
+  static final Color RUN_QUEUE_COLOR = new Color(255,140,0,127);  // underlay for run-queue depth in CPU lanes
+  static final int RUN_QUEUE_MAX_DRAWN = 4;  // run-queue depth that fills the whole CPU lane
+  static final Color CRITICAL_PATH_COLOR = new Color(255,0,0,159);  // highlight of the selected critical path
+  static final Color SELECTION_COLOR = new Color(0,63,255,31);  // overlay for the time selection
+  static final Color UTILIZATION_COLOR = new Color(31,191,31,127);  // system-wide CPU utilization in the CPUs header
+  static final Color LOADING_COLOR = new Color(127,127,127,63);  // overlay for the time not processed yet
+
   static int _width_blocked_       = _passiveWidth_;
   static int _width_running_       = _activeWidth_;
   static int _width_waking_        = _wakingWidth_;
@@ -1204,6 +1886,8 @@ class SchedulingPanorama extends Panorama
     unknown      (_color_unknown_, _width_unknown_, _widthCPU_unknown_, "UNKNOWN", false),
     error        (_color_error_  , _width_error_  , _widthCPU_error_  , "ERROR"  , false);
 
+    static final ThreadState[] VALUES = values();  // states by ordinal, see ActionSubSet.state()
+
     final Color  _color;             // color this state is drawn in
     final int    _width;             // width of the thread line in this state
     final int    _widthCpu;          // width of the CPU line in this state
@@ -1267,17 +1951,7 @@ class SchedulingPanorama extends Panorama
    */
   ThreadState stateAt(ActionSubSet resource, int at)
   {
-    while (at >= 0 && !resource.isSched(at))
-      {
-        at--;
-      }
-    return
-      at < 0                                                      ? ThreadState.error   :
-      resource.stopsRunning(at)                                   ? ThreadState.blocked :
-      resource.startsRunning(at) || resource.continuesRunning(at) ? ThreadState.running :
-      resource.waking(at)                                         ? ThreadState.waking  :
-      resource.wakesup(at)                                        ? ThreadState.wakesup
-                                                                  : ThreadState.error;
+    return at < 0 ? ThreadState.error : ThreadState.VALUES[resource.state(at)];
   }
 
 
@@ -1320,6 +1994,234 @@ class SchedulingPanorama extends Panorama
   }
 
 
+  /**
+   * Waking-arrows pointing upwards have to be drawn after all threads were
+   * drawn since they have to be drawn over threads that are further down.
+   * These are recorded here as triples (x, y1, y2) during paintPanorama to
+   * avoid allocation of one job per arrow.
+   */
+  int[] _deferredArrows = new int[3*64];
+  int _numDeferredArrows = 0;
+
+
+  /**
+   * Record a waking-arrow to be drawn by drawDeferredArrows().
+   *
+   * @param x the x coordinate of the arrow
+   *
+   * @param y1 the y coordinate of the start
+   *
+   * @param y2 the y coordinate of the end
+   */
+  void deferArrow(int x, int y1, int y2)
+  {
+    var n = _numDeferredArrows;
+    if (3*n+3 > _deferredArrows.length)
+      {
+        _deferredArrows = Arrays.copyOf(_deferredArrows, _deferredArrows.length*2);
+      }
+    _deferredArrows[3*n  ] = x;
+    _deferredArrows[3*n+1] = y1;
+    _deferredArrows[3*n+2] = y2;
+    _numDeferredArrows = n+1;
+  }
+
+
+  /**
+   * Draw and forget all the arrows recorded by deferArrow().
+   *
+   * @param g the graphics to draw to
+   */
+  void drawDeferredArrows(Graphics g)
+  {
+    g.setColor(_color_waking_arrow_);
+    for (var i = 0; i < _numDeferredArrows; i++)
+      {
+        _zoom.drawVArrow(g, 1, _deferredArrows[3*i], _deferredArrows[3*i+1], _deferredArrows[3*i+2]);
+      }
+    _numDeferredArrows = 0;
+  }
+
+
+  /**
+   * y coordinate of the lane of given thread or, if it is not shown
+   * individually, of the cumulative thread of its user, -1 if none.
+   */
+  int laneY(SystemThread t)
+  {
+    var ti = threadIndex(t);
+    if (ti < 0)
+      {
+        ti = threadIndex(t.user().cumulative());
+      }
+    return ti >= 0 ? threadY(ti) : -1;
+  }
+
+
+  /**
+   * Highlight the selected critical path: for every activation the time from
+   * waking until running on the lane of the woken thread, an arrow from the
+   * waker at the time of waking and the time the waker was running before it
+   * woke the thread.
+   *
+   * @param g the graphics to draw to
+   *
+   * @param r the clip rectangle
+   */
+  void drawCriticalPath(Graphics g, Rectangle r)
+  {
+    var path = _criticalPath;
+    if (path != null)
+      {
+        var l = _data._latencies;
+        var nanosMin = _data.nanosMin();
+        var h = zoom(2);
+        g.setColor(CRITICAL_PATH_COLOR);
+        for (var k = 0; k < path.length; k++)
+          {
+            var a = path[k];
+            var xw = nanos_to_posx(_data.ns(l.wakingAt(a)) - nanosMin);
+            var xr = nanos_to_posx(l.runNs(a));
+            var xs = k + 1 < path.length ? nanos_to_posx(l.runNs(path[k+1])) : xw;
+            if (xr >= r.x && xs <= r.x + r.width)
+              {
+                var yt = laneY(_data.newThreadAt(l.runAt(a)));
+                if (yt >= 0)
+                  {
+                    g.fillRect(xw, yt - h, Math.max(1, xr - xw), 2*h);
+                  }
+                var w = l.waker(a);
+                var yw = w != null ? laneY(w) : -1;
+                if (yw >= 0)
+                  {
+                    if (xs < xw)
+                      {
+                        g.fillRect(xs, yw - h/2, xw - xs, Math.max(1, h));
+                      }
+                    if (yt >= 0 && yt != yw)
+                      {
+                        _zoom.drawVArrow(g, 2, xw, yw, yt);
+                      }
+                  }
+              }
+          }
+      }
+  }
+
+
+  /**
+   * Height of a column in a bar chart drawn by fillColumns for the time
+   * covered by one pixel column.
+   */
+  interface ColumnHeight
+  {
+    /**
+     * @param from start of the time covered by the column, relative to the
+     * start of the recording
+     *
+     * @param to end of the time covered by the column, inclusive.
+     *
+     * @return the height in pixels.
+     */
+    int height(long from, long to);
+  }
+
+
+  /**
+   * Draw a bar chart with one column per pixel between the start and the end
+   * of the recording within the clip rectangle.  Adjacent columns with equal
+   * heights are merged into one fillRect.
+   *
+   * @param g the graphics to draw to, with the color already set.
+   *
+   * @param r the clip rectangle
+   *
+   * @param relNsMax the end of the recording relative to its start.
+   *
+   * @param yb the y coordinate of the bottom of the bars.
+   *
+   * @param h the height of each column.
+   */
+  void fillColumns(Graphics g, Rectangle r, long relNsMax, int yb, ColumnHeight h)
+  {
+    var x0 = Math.max(r.x, nanos_to_posx(0));
+    var x1 = Math.min(r.x + r.width, nanos_to_posx(relNsMax));
+    var runX = x0;
+    var runH = 0;
+    for (var x = x0; x <= x1; x++)
+      {
+        var ch = 0;
+        if (x < x1)
+          {
+            var t0 = posx_to_nanos(x);
+            var t1 = Math.max(t0, posx_to_nanos(x + 1) - 1);
+            ch = h.height(t0, t1);
+          }
+        if (ch != runH || x == x1)
+          {
+            if (runH > 0)
+              {
+                g.fillRect(runX, yb - runH, x - runX, runH);
+              }
+            runX = x;
+            runH = ch;
+          }
+      }
+  }
+
+
+  /**
+   * Draw the run-queue depth of a CPU as a bar from the bottom of its lane
+   * whose height is proportional to the maximum depth during the time of each
+   * pixel column.
+   *
+   * @param g the graphics to draw to
+   *
+   * @param cpu the cpu
+   *
+   * @param y the y coordinate of the horizontal line of the cpu's lane
+   *
+   * @param r the clip rectangle
+   *
+   * @param relNsMax the end of the recording relative to its start.
+   */
+  void showRunQueue(Graphics g, Cpu cpu, int y, Rectangle r, long relNsMax)
+  {
+    var rq = cpu._runQueue;
+    var h = zoom(CPU_SPACING);
+    g.setColor(RUN_QUEUE_COLOR);
+    fillColumns(g, r, relNsMax, y + h / 2,
+                (t0, t1) -> Math.min(RUN_QUEUE_MAX_DRAWN, rq.maxDepth(t0, t1)) * h / RUN_QUEUE_MAX_DRAWN);
+  }
+
+
+  /**
+   * Draw the system-wide CPU utilization as a bar chart into the header of
+   * the CPUs area.  Beyond the processed data, the coarse utilization of the
+   * Overview is shown.
+   *
+   * @param g the graphics to draw to
+   *
+   * @param r the clip rectangle
+   *
+   * @param nanosMin the start of the recording
+   *
+   * @param relNsMax the end of the processed data relative to its start.
+   *
+   * @param relNsEnd the end of the recording relative to its start.
+   */
+  void showUtilization(Graphics g, Rectangle r, long nanosMin, long relNsMax, long relNsEnd)
+  {
+    var yt = cpusY();
+    var yb = cpusYHeaderBottom();
+    var o = _data._overview;
+    g.setColor(UTILIZATION_COLOR);
+    fillColumns(g, r, relNsEnd, yb,
+                (t0, t1) -> (int) Math.round((t1 < relNsMax ? _data.utilization(_data._cpus, nanosMin + t0, nanosMin + t1 + 1)
+                                                            : o.utilization(nanosMin + t0, nanosMin + t1 + 1)) * (yb - yt)));
+  }
+
+
   /**
    * Show when a thread or CPU is running along a horizontal line
    *
@@ -1332,16 +2234,12 @@ class SchedulingPanorama extends Panorama
    * @param r the visible rectangle to draw to
    *
    * @param cpu true when drawing CPU states, false for threads
-   *
-   * @param toDo List of drawing jobs to be performed after all threads were
-   * drawn (since these have to be drawn over threads that are further down).
    */
   void showRunning(Graphics g,
                    ActionSubSet resource,
                    int y,
                    Rectangle r,
-                   boolean cpu,
-                   ArrayList<Runnable> toDo)
+                   boolean cpu)
   {
     var blurredState = BlurredState.plain;
     int blurredUpToX = -1;
@@ -1352,16 +2250,24 @@ class SchedulingPanorama extends Panorama
         from_a--;
       }
     int to_a = actionAt(resource, r.x+r.width)+1;
-    for (var a = from_a; a<to_a; a++)
+    var minStretch = zoom(_coarse ? COARSE_MIN_STRETCH : 1);
+    // at a coarse level, the actions of a thread in stretches that are blurred
+    // anyway are skipped using its pyramid of scheduler actions:
+    var pyramid = _coarse && resource instanceof SystemThread ? resource.schedPyramid() : null;
+    _frameStats._lanesDrawn++;
+    // visit only the scheduler actions, user events are drawn by showUserEvents:
+    var a = from_a;
+    while (a < to_a)
       {
+        _frameStats._eventsVisited++;
+        var next = Math.max(a+1, resource.nextStateChange(a));
         var state = stateAt(resource, a);
         if (a == 0)
           {
             var pstate = resource.isSched(a) ? state.prev()
                                              : ThreadState.blocked;
             var xl = nanos_to_posx(resource.nanosAt(a));
-            g.setColor(pstate._color);
-            _zoom.drawHLine(g, pstate.width(cpu), nanos_to_posx(0), y, xl);
+            bar(g, pstate._color, pstate.width(cpu), nanos_to_posx(0), y, xl);
           }
         if (resource.isSched(a))
           {
@@ -1370,27 +2276,40 @@ class SchedulingPanorama extends Panorama
             var xl = nanos_to_posx(nl);
             var xr = nanos_to_posx(nr);
 
-            if (xl < xr-zoom(1)) // stretch is at least zoom(1) pixels wide
+            if (xl < xr-minStretch) // stretch is at least minStretch pixels wide
               {
-                g.setColor(state._color);
-                _zoom.drawHLine(g,state.width(cpu),xl,y,xr-1);
+                bar(g, state._color, state.width(cpu), xl, y, xr-1);
                 blurredState = BlurredState.plain;
               }
             else if (blurredUpToX < xr)
               {
-                g.setColor(VERY_DARK_GREEN);
-                _zoom.drawHLine(g,
-                                cpu ? _activeWidthCPU_ : _activeWidth_,
-                                Math.min(xl, xr-zoom(1)/* do not allow blurred region below zoom(1) pixels */),
-                                y,
-                                xr-1);
+                bar(g,
+                    VERY_DARK_GREEN,
+                    cpu ? _activeWidthCPU_ : _activeWidth_,
+                    Math.min(xl, xr-minStretch/* do not allow blurred region below minStretch pixels */),
+                    y,
+                    xr-1);
                 blurredUpToX = xr;
                 blurredState = blurredState.blur();
+                var xe = pyramid != null ? denseUntil(pyramid, xr, r.x + r.width, minStretch) : xr;
+                if (xe > xr)
+                  {
+                    bar(g, VERY_DARK_GREEN, _activeWidth_, xr, y, xe-1);
+                    blurredUpToX = xe;
+                    // continue with the state at xe:
+                    var j = actionAt(resource, xe);
+                    while (j > next && !resource.isSched(j))
+                      {
+                        j--;
+                      }
+                    next = Math.max(next, j);
+                  }
               }
 
             // draw arrow from thread that wakes up this thread to this thread:
             if (state == ThreadState.waking &&
                 !cpu &&
+                !_coarse &&
                 (!SUPRESS_ARROWS_WHEN_BLURRED || blurredState == BlurredState.plain           ) &&
                 (!ONLY_ONE_ARROW_WHEN_BLURRED || blurredState != BlurredState.blurredWithArrow) &&
                 arrowDrawnAtX < xl + zoom(2)
@@ -1405,16 +2324,137 @@ class SchedulingPanorama extends Panorama
                         var y0 = threadY(t0i);
                         var s = _zoom.zoom(0.5 * _activeWidth_                            + 1);
                         var e = _zoom.zoom(0.5 * (cpu ? _wakingWidthCPU_ : _wakingWidth_) + 1);
-                        if (y0 <= y) {                g.setColor(state._color.darker()); _zoom.drawVArrow(g, 1, xl, (int) (y0 + s), (int) (y - e));
-                        } else       { toDo.add(()->{ g.setColor(state._color.darker()); _zoom.drawVArrow(g, 1, xl, (int) (y0 - s), (int) (y + e)); } ); }
+                        if      (y0 > y)  { deferArrow(xl, (int) (y0 - s), (int) (y + e)); }
+                        else if (_raster) { deferArrow(xl, (int) (y0 + s), (int) (y - e)); }
+                        else              { g.setColor(_color_waking_arrow_); _zoom.drawVArrow(g, 1, xl, (int) (y0 + s), (int) (y - e)); }
                         arrowDrawnAtX = xl;
                         blurredState = blurredState.drawnArrow();
                       }
                   }
               }
           }
+        a = next;
+      }
+
+    if (!_coarse)
+      {
+        if (_raster)
+          {
+            deferUserEvents(resource, y, from_a, to_a);
+          }
+        else
+          {
+            showUserEvents(g, resource, y, from_a, to_a);
+          }
+      }
+  }
+
+
+  /**
+   * User events have to be drawn after _rasterLanes was drawn. The lanes are
+   * recorded here as quadruples (resource, y, from_a, to_a) during
+   * paintPanorama to avoid allocation of one job per lane.
+   */
+  transient ActionSubSet[] _deferredUserEventLanes = new ActionSubSet[16];
+  int[] _deferredUserEvents = new int[3*16];
+  int _numDeferredUserEvents = 0;
+
+
+  /**
+   * Record user events of a lane to be drawn by drawDeferredUserEvents().
+   *
+   * @param resource the FeezeThread of Cpu
+   *
+   * @param y the y coordinate of the horizontal line
+   *
+   * @param from_a the first action to check
+   *
+   * @param to_a the first action after the last action to check
+   */
+  void deferUserEvents(ActionSubSet resource, int y, int from_a, int to_a)
+  {
+    var n = _numDeferredUserEvents;
+    if (n >= _deferredUserEventLanes.length)
+      {
+        _deferredUserEventLanes = Arrays.copyOf(_deferredUserEventLanes, 2*n);
+        _deferredUserEvents     = Arrays.copyOf(_deferredUserEvents    , 6*n);
+      }
+    _deferredUserEventLanes[n] = resource;
+    _deferredUserEvents[3*n  ] = y;
+    _deferredUserEvents[3*n+1] = from_a;
+    _deferredUserEvents[3*n+2] = to_a;
+    _numDeferredUserEvents = n+1;
+  }
+
+
+  /**
+   * Draw and forget all the user events recorded by deferUserEvents().
+   *
+   * @param g the graphics to draw to
+   */
+  void drawDeferredUserEvents(Graphics g)
+  {
+    for (var i = 0; i < _numDeferredUserEvents; i++)
+      {
+        showUserEvents(g,
+                       _deferredUserEventLanes[i],
+                       _deferredUserEvents[3*i  ],
+                       _deferredUserEvents[3*i+1],
+                       _deferredUserEvents[3*i+2]);
+        _deferredUserEventLanes[i] = null;
+      }
+    _numDeferredUserEvents = 0;
+  }
+
+
+  /**
+   * Draw a state bar either into _rasterLanes or, if disabled, via Java2D.
+   *
+   * @param g the graphics to draw to
+   *
+   * @param c the color of the bar
+   *
+   * @param width the unzoomed width of the bar
+   *
+   * @param x1 the x coordinate of the start
+   *
+   * @param y the y coordinate
+   *
+   * @param x2 the x coordinate of the end
+   */
+  void bar(Graphics g, Color c, int width, int x1, int y, int x2)
+  {
+    if (_raster)
+      {
+        _rasterLanes.hLine(c.getRGB(), zoom(width), x1, y, x2);
+      }
+    else
+      {
+        g.setColor(c);
+        _zoom.drawHLine(g, width, x1, y, x2);
       }
+  }
 
+
+  /**
+   * Show the user events of a thread or CPU.
+   *
+   * @param g the graphics to draw to
+   *
+   * @param resource the FeezeThread of Cpu to show
+   *
+   * @param y the y coordinate of the horizontal line
+   *
+   * @param from_a the first action to check
+   *
+   * @param to_a the first action after the last action to check
+   */
+  void showUserEvents(Graphics g,
+                      ActionSubSet resource,
+                      int y,
+                      int from_a,
+                      int to_a)
+  {
     var lastUserEvent = -1;  // do not draw several user events at the same x position
     for (var a = from_a; a<to_a; a++)
       {
@@ -1466,9 +2506,23 @@ class SchedulingPanorama extends Panorama
    */
   protected void paintPanorama(Graphics g)
   {
-    long nt = System.nanoTime();
-
-    var r = getVisibleRect();
+    var allocated = Allocations.REPORT ? Allocations.current() : -1;
+    _frameStats.startFrame();
+    _coarse = interacting();
+    _raster = RasterLanes.ENABLED;
+
+    var v = _visibleRect;
+    computeVisibleRect(v);
+    // paint only the area within the clip, e.g., the area that became visible
+    // when scrolling copied the rest via blitting:
+    var r = _paintRect;
+    r.setBounds(v);
+    g.getClipBounds(r);
+    SwingUtilities.computeIntersection(v.x, v.y, v.width, v.height, r);
+    if (_raster)
+      {
+        _rasterLanes.begin(r);
+      }
     g.setColor(Color.white);
     g.fillRect(r.x, r.y, r.width, r.height);
 
@@ -1476,14 +2530,17 @@ class SchedulingPanorama extends Panorama
       {
         if (_data.entryCount() > 0)
           {
-            var toDo = new ArrayList<Runnable>();
-            var pr = SchedulingPanorama.this.getVisibleRect();
+            _numDeferredArrows = 0;
+            _numDeferredUserEvents = 0;
             if (numCpus() > 0 &&
                 cpusY()                               <  r.y+r.height &&
                 cpuY(numCpus()-1) + zoom(CPU_SPACING) >= r.y             )
               {
                 g.setColor(PROCESS_COLS3[2][0].darker());
                 g.fillRect(0, cpusY(), getWidth(), cpusYHeaderBottom()-cpusY());
+                var nanosMin = _data.nanosMin();
+                var relNsMax = _data.nanosMax() - nanosMin;
+                showUtilization(g, r, nanosMin, relNsMax, _data.nanosEnd() - nanosMin);
                 if (_cpusEnabled)
                   {
                     g.setColor(PROCESS_COLS3[2][0]);
@@ -1499,7 +2556,11 @@ class SchedulingPanorama extends Panorama
 
                         var cpu = _data.cpu(i);
                         var y = cpuY(i);
-                        showRunning(g, cpu, y, r, true, toDo);
+                        if (!_coarse)
+                          {
+                            showRunQueue(g, cpu, y, r, relNsMax);
+                          }
+                        showRunning(g, cpu, y, r, true);
                       }
                   }
                 g.setColor(Color.white);
@@ -1549,7 +2610,7 @@ class SchedulingPanorama extends Panorama
                       }
                     long nameShownAtNS = posx_to_nanos(r.x) & ~(NAME_DIST_NS-1);
                     int nameShownAt = nanos_to_posx(nameShownAtNS);
-                    while (nameShownAtNS < _data.nanosAtOrBefore(_data.entryCount()-1)-_data.nanosMin() && nameShownAt < r.x+r.width)
+                    while (!_coarse && nameShownAtNS < _data.nanosAtOrBefore(_data.entryCount()-1)-_data.nanosMin() && nameShownAt < r.x+r.width)
                       {
                         int x = nameShownAt;
                         g.setColor(gray);
@@ -1558,7 +2619,7 @@ class SchedulingPanorama extends Panorama
                         nameShownAt = nanos_to_posx(nameShownAtNS);
                       }
 
-                    showRunning(g, t, y, r, false, toDo);
+                    showRunning(g, t, y, r, false);
                   }
                 else  // not shown:
                   {
@@ -1570,10 +2631,13 @@ class SchedulingPanorama extends Panorama
                   }
               }
 
-            for (var run : toDo)
+            if (_raster)
               {
-                run.run();
+                _rasterLanes.draw(g);
+                drawDeferredUserEvents(g);
               }
+            drawDeferredArrows(g);
+            drawCriticalPath(g, r);
 
             var from_gap = Math.max(0,gapAt(r.x)-1);
             var to_gap   = Math.min(_data._gaps.size()-1, gapAt(r.x+r.width)+1);
@@ -1585,20 +2649,63 @@ class SchedulingPanorama extends Panorama
                 var xmax = nanos_to_posx(          _data.nanosAtSwitch(ar)   - _data.nanosMin()    );
                 if (xmax >= r.x && xmin <= r.x+r.width)
                   {
-                    g.setColor(new Color(255,0,100,63));
+                    g.setColor(GAP_COLOR);
                     var y0 = numCpus() > 0 ? cpusY()
                                            : threadYUserTop(0);
                     var y1 = threadYBottom(numThreads()-1);
                     g.fillRect(xmin,y0,xmax-xmin+1,y1-y0+1);
                   }
               }
+
+            // the time that was not processed yet while a recording is shown progressively:
+            var xl0 = nanos_to_posx(_data.nanosMax() - _data.nanosMin());
+            var xl1 = nanos_to_posx(_data.nanosEnd() - _data.nanosMin());
+            if (xl1 > xl0 && xl1 >= r.x && xl0 <= r.x+r.width)
+              {
+                g.setColor(LOADING_COLOR);
+                var y0 = numCpus() > 0 ? cpusYHeaderBottom()
+                                       : threadYUserTop(0);
+                var y1 = threadYBottom(numThreads()-1);
+                g.fillRect(xl0,y0,xl1-xl0,y1-y0+1);
+              }
           }
       }
 
+    if (_selectionFrom >= 0)
+      {
+        var xs0 = nanos_to_posx(Math.min(_selectionFrom, _selectionTo));
+        var xs1 = nanos_to_posx(Math.max(_selectionFrom, _selectionTo));
+        g.setColor(SELECTION_COLOR);
+        g.fillRect(xs0, r.y, Math.max(1, xs1 - xs0), r.height);
+      }
+
     if (SCALA_IN_MAIN_AREA)  //  additional scala in the data area
       {
         drawScale(g, r, threadY(0) - zoom(NORMAL_THREAD_SPACING), false);
       }
+
+    _frameStats.endFrame(_data.unprocessedEntryCount() - _data.entryCount(), _coarse);
+    if (_showFrameStats)
+      {
+        _frameStats.drawHUD(g, v, _zoom);
+      }
+
+    if (Allocations.REPORT)
+      {
+        allocated = Allocations.since(allocated);
+        System.err.println("paintPanorama allocated " + allocated + " bytes" +
+                           (allocated > Allocations.FRAME_BUDGET ? ", exceeds budget of " + Allocations.FRAME_BUDGET + " bytes!" : ""));
+      }
+  }
+
+
+  /**
+   * Toggle the display of the HUD with frame statistics.
+   */
+  void toggleFrameStats()
+  {
+    _showFrameStats = !_showFrameStats;
+    repaint();
   }
 
 
@@ -2032,7 +3139,7 @@ class SchedulingPanorama extends Panorama
                 {
                   synchronized (SchedulingPanorama.this)
                     {
-                      _usersEnabled[u._num] = !_usersEnabled[u._num];
+                      _usersEnabled[u._num] = !userEnabled(u);
                       _threads = null;
                     }
                   c.repaint();
@@ -2121,7 +3228,7 @@ class SchedulingPanorama extends Panorama
               g.setFont(_zoom.standardFont());
               if (yproctop < yprocbot)
                 {
-                  _zoom.drawString(g, t.process().toString(), procLineX, yprocbot - (int) zoomedUserNameHeight()/3);
+                  _zoom.drawString(g, processLabel(i), procLineX, yprocbot - (int) zoomedUserNameHeight()/3);
                   _zoom.drawString(g, t.toString(from_a), threadNameX, y - zoom(2));
                 }
               else if (isFirstThreadOfProcess(i))
@@ -2138,7 +3245,7 @@ class SchedulingPanorama extends Panorama
 
           if (u != null)
             {
-              _zoom.drawFold(g, _usersEnabled[u._num], Color.gray, Color.white, userLineX, (int) (yuserbot-6*gapEighth), (int) (8*gapEighth));
+              _zoom.drawFold(g, userEnabled(u), Color.gray, Color.white, userLineX, (int) (yuserbot-6*gapEighth), (int) (8*gapEighth));
             }
 
           verticalForProcess(g, i, procLineX);
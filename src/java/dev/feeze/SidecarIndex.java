@@ -0,0 +1,464 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.SidecarIndex
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * SidecarIndex is a file next to a recording, named like the recording with
+ * SUFFIX appended, that stores the actions of all threads, cumulative threads
+ * and CPUs, the thread name changes and the swapper flags of the threads.
+ *
+ * When a recording is opened again, the sidecar is mapped and its arrays are
+ * copied in bulk into the lanes instead of building them by processing all
+ * entries, so the data can be shown immediately.  The lanes need int arrays
+ * for fast access while painting, so they do not use the mapping directly.  The analyses like wakeup latencies are then done in
+ * the background, see Data.analyzeSome().
+ *
+ * The sidecar is valid only if the size, the number of entries and the
+ * CRC32C checksum of the entries of the recording are the same as when it was
+ * written.  Its contents are checked as well, e.g., that the actions of every
+ * lane are sorted entry indices of the recording, such that a corrupt sidecar
+ * is ignored instead of breaking the lanes.
+ *
+ * Format, all values big endian:
+ *
+ *   long MAGIC, int VERSION, long byteSize, long numEntries, long hash,
+ *   int numThreads, per thread: byte swapper, int n, n * (int action index,
+ *   int entry index) of thread name changes,
+ *   int numCumulative, per cumulative thread: int user number,
+ *   int numCpus, per CPU: int cpu id,
+ *   int numLanes, (numLanes+1) * int offset, offsets[numLanes] * int action.
+ *
+ * Lanes are the threads in recording order, followed by the cumulative
+ * threads and the CPUs.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class SidecarIndex extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * Suffix added to the name of the recording.
+   */
+  static final String SUFFIX = ".feezeidx";
+
+
+  /**
+   * "feezeidx" in ASCII.
+   */
+  static final long MAGIC = 0x6665657a65696478L;
+
+
+  /**
+   * Version of the format, to be incremented on every change.
+   */
+  static final int VERSION = 1;
+
+
+  /**
+   * Set env var FEEZE_NO_SIDECAR=true to neither read nor write sidecars.
+   */
+  static final boolean DISABLED = System.getenv().getOrDefault("FEEZE_NO_SIDECAR", "false").equals("true");
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * Per thread: swapper flag and the action and entry indices of thread name
+   * changes.
+   */
+  final boolean[] _swapper;
+  final int[][] _namesAt;
+  final int[][] _names;
+
+
+  /**
+   * User numbers of the cumulative threads and ids of the CPUs.
+   */
+  final int[] _cumulativeUsers;
+  final int[] _cpuIds;
+
+
+  /**
+   * The lanes in CSR format, see ActionIndex.
+   */
+  final int[] _offsets;
+  final int[] _ats;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Parse a sidecar whose header was checked already.
+   *
+   * @param b the sidecar positioned after the header.
+   */
+  private SidecarIndex(ByteBuffer b)
+  {
+    var nt = count(b, 1 + 4);
+    _swapper = new boolean[nt];
+    _namesAt = new int[nt][];
+    _names   = new int[nt][];
+    for (var t = 0; t < nt; t++)
+      {
+        _swapper[t] = b.get() != 0;
+        var n = count(b, 2 * 4);
+        _namesAt[t] = new int[n];
+        _names  [t] = new int[n];
+        for (var i = 0; i < n; i++)
+          {
+            _namesAt[t][i] = b.getInt();
+            _names  [t][i] = b.getInt();
+          }
+      }
+    _cumulativeUsers = new int[count(b, 4)];
+    b.asIntBuffer().get(_cumulativeUsers);
+    b.position(b.position() + 4 * _cumulativeUsers.length);
+    _cpuIds = new int[count(b, 4)];
+    b.asIntBuffer().get(_cpuIds);
+    b.position(b.position() + 4 * _cpuIds.length);
+    _offsets = new int[count(b, 4) + 1];
+    b.asIntBuffer().get(_offsets);
+    b.position(b.position() + 4 * _offsets.length);
+    var na = _offsets[_offsets.length - 1];
+    if (na < 0 || na > b.remaining() / 4)
+      {
+        throw new BufferUnderflowException();
+      }
+    _ats = new int[na];
+    b.asIntBuffer().get(_ats);
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Read a number of elements of given size from b, such that a corrupt
+   * sidecar does not result in a huge allocation.
+   *
+   * @throws BufferUnderflowException if the number is negative or b does not
+   * have room for these elements.
+   */
+  private static int count(ByteBuffer b, int elementSize)
+  {
+    var res = b.getInt();
+    if (res < 0 || res > b.remaining() / elementSize)
+      {
+        throw new BufferUnderflowException();
+      }
+    return res;
+  }
+
+
+  /**
+   * Check the contents of this: the offsets must be increasing, the actions
+   * of every lane must be sorted entry indices below numEntries and the thread
+   * name changes must refer to increasing actions of their thread.
+   */
+  private boolean valid(long numEntries)
+  {
+    var ok = _offsets[0] == 0 && _namesAt.length < _offsets.length;
+    for (var l = 0; ok && l + 1 < _offsets.length; l++)
+      {
+        var from = _offsets[l];
+        var to   = _offsets[l+1];
+        ok = from <= to;
+        for (var i = from; ok && i < to; i++)
+          {
+            var a = _ats[i];
+            ok = 0 <= a && a < numEntries && (i == from || _ats[i-1] <= a);
+          }
+      }
+    for (var t = 0; ok && t < _namesAt.length; t++)
+      {
+        var n = _offsets[t+1] - _offsets[t];
+        for (var i = 0; ok && i < _namesAt[t].length; i++)
+          {
+            ok =
+              0 <= _namesAt[t][i] && _namesAt[t][i] < n &&
+              (i == 0 || _namesAt[t][i-1] < _namesAt[t][i]) &&
+              0 <= _names  [t][i] && _names  [t][i] < numEntries;
+          }
+      }
+    return ok;
+  }
+
+
+  /**
+   * Read the sidecar f for data.  data must contain a complete recording that
+   * was not processed yet.
+   *
+   * @return the sidecar or null if there is none, it cannot be read or it does
+   * not belong to data.
+   */
+  static SidecarIndex read(File f, Data data)
+  {
+    SidecarIndex res = null;
+    if (!DISABLED && f.isFile())
+      {
+        try (var channel = FileChannel.open(f.toPath(), StandardOpenOption.READ))
+          {
+            var b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (b.getLong()                         == MAGIC                        &&
+                b.getInt()                          == VERSION                      &&
+                b.getLong()                         == data.byteSize()              &&
+                b.getLong()                         == data.unprocessedEntryCount() &&
+                b.getLong()                         == data.entriesHash(data.unprocessedEntryCount()))
+              {
+                res = new SidecarIndex(b);
+                if (!res.valid(data.unprocessedEntryCount()))
+                  {
+                    System.err.println("*** " + f + " is corrupt, ignored");
+                    res = null;
+                  }
+              }
+          }
+        catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e)
+          {
+            System.err.println("*** failed to read " + f + ": " + e);
+          }
+      }
+    return res;
+  }
+
+
+  /**
+   * Restore the lanes of data from this.  data must have been processed with
+   * Data._restoring set.
+   *
+   * @return true if successful, false if this does not match the threads,
+   * users or CPUs of data.
+   */
+  boolean apply(Data data)
+  {
+    synchronized (data)
+      {
+        var threads = data._unsortedThreads;
+        var lanes = new ArrayList<ActionSubSet>();
+        var ok =
+          threads.size() == _swapper.length &&
+          _offsets.length == threads.size() + _cumulativeUsers.length + _cpuIds.length + 1;
+        lanes.addAll(threads);
+        for (var u : _cumulativeUsers)
+          {
+            ok = ok && u >= 0 && u < data._users.size();
+            if (ok)
+              {
+                lanes.add(data._users.get(u).cumulative());
+              }
+          }
+        for (var id : _cpuIds)
+          {
+            var cpu = data._cpusMap.get(id);
+            ok = ok && cpu != null;
+            lanes.add(cpu);
+          }
+        if (ok)
+          {
+            for (var i = 0; i < threads.size(); i++)
+              {
+                var t = threads.get(i);
+                t._swapper = _swapper[i];
+                for (var j = 0; j < _namesAt[i].length; j++)
+                  {
+                    t._newNamesAt.add(_namesAt[i][j]);
+                    t._newNames.add(_names[i][j]);
+                    t._names.add(null);
+                    t._displayNames.add(null);
+                  }
+              }
+            data._actionIndex = new ActionIndex(lanes, _offsets, _ats);
+            data.updateCumulative();
+          }
+        return ok;
+      }
+  }
+
+
+  /**
+   * Write the sidecar f for data, which must contain a complete recording
+   * that was processed entirely.  Errors are reported, but ignored otherwise.
+   *
+   * Only a snapshot of the lanes is taken while holding the lock on data.
+   * After Data.buildActionIndex(), the lanes share the arrays of the
+   * ActionIndex, which are not modified any more, so the file is written
+   * without holding the lock.
+   */
+  static void write(File f, Data data)
+  {
+    if (!DISABLED)
+      {
+        long byteSize, numEntries;
+        var lanes = new ArrayList<ActionSubSet>();
+        var cumulative = new ArrayList<SystemUser>();
+        boolean[] swapper;
+        int[][] namesAt, names;
+        int[] cpuIds;
+        int[][] ats;
+        int[] bases, counts;
+        synchronized (data)
+          {
+            byteSize = data.byteSize();
+            numEntries = data.unprocessedEntryCount();
+            var threads = data._unsortedThreads;
+            swapper = new boolean[threads.size()];
+            namesAt = new int[threads.size()][];
+            names   = new int[threads.size()][];
+            for (var i = 0; i < threads.size(); i++)
+              {
+                var t = threads.get(i);
+                swapper[i] = t._swapper;
+                namesAt[i] = t._newNamesAt.stream().mapToInt(x -> x).toArray();
+                names  [i] = t._newNames  .stream().mapToInt(x -> x).toArray();
+                lanes.add(t);
+              }
+            for (var u : data._users)
+              {
+                if (u._cumulative != null)
+                  {
+                    cumulative.add(u);
+                    lanes.add(u._cumulative);
+                  }
+              }
+            cpuIds = new int[data._cpus.size()];
+            for (var i = 0; i < cpuIds.length; i++)
+              {
+                var cpu = data._cpus.get(i);
+                cpuIds[i] = cpu._id;
+                lanes.add(cpu);
+              }
+            ats    = new int[lanes.size()][];
+            bases  = new int[lanes.size()];
+            counts = new int[lanes.size()];
+            for (var l = 0; l < lanes.size(); l++)
+              {
+                var s = lanes.get(l);
+                counts[l] = s.numActions();
+                if (s._shared)
+                  {
+                    ats  [l] = s._at;
+                    bases[l] = s._atBase;
+                  }
+                else
+                  { // no ActionIndex, the lane's own array may still grow, so copy it
+                    ats  [l] = Arrays.copyOfRange(s._at, s._atBase, s._atBase + counts[l]);
+                    bases[l] = 0;
+                  }
+              }
+          }
+        // hashing all entries takes a while, so do it without blocking the
+        // Data for the same prefix that was captured above:
+        var hash = data.entriesHash(numEntries);
+        var tmp = new File(f.getPath() + ".tmp");
+        try
+          {
+            try (var o = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16)))
+              {
+                o.writeLong(MAGIC);
+                o.writeInt(VERSION);
+                o.writeLong(byteSize);
+                o.writeLong(numEntries);
+                o.writeLong(hash);
+                o.writeInt(swapper.length);
+                for (var t = 0; t < swapper.length; t++)
+                  {
+                    o.writeByte(swapper[t] ? 1 : 0);
+                    o.writeInt(namesAt[t].length);
+                    for (var i = 0; i < namesAt[t].length; i++)
+                      {
+                        o.writeInt(namesAt[t][i]);
+                        o.writeInt(names  [t][i]);
+                      }
+                  }
+                o.writeInt(cumulative.size());
+                for (var u : cumulative)
+                  {
+                    o.writeInt(u._num);
+                  }
+                o.writeInt(cpuIds.length);
+                for (var id : cpuIds)
+                  {
+                    o.writeInt(id);
+                  }
+                o.writeInt(lanes.size());
+                var offset = 0;
+                o.writeInt(offset);
+                for (var c : counts)
+                  {
+                    offset += c;
+                    o.writeInt(offset);
+                  }
+                for (var l = 0; l < ats.length; l++)
+                  {
+                    for (var i = 0; i < counts[l]; i++)
+                      {
+                        o.writeInt(ats[l][bases[l] + i]);
+                      }
+                  }
+              }
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+          }
+        catch (IOException e)
+          {
+            System.err.println("*** failed to write " + f + ": " + e);
+            tmp.delete();
+          }
+      }
+  }
+
+}
@@ -0,0 +1,356 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.SummaryPyramid
+ *
+ *---------------------------------------------------------------------*/
+
+
+package dev.feeze;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * SummaryPyramid summarizes values over time per time bucket, either
+ *
+ * - a step function, i.e., a value that is set at certain times and stays the
+ *   same until it is set again, by the maximum value per bucket, see set() and
+ *   max(), or
+ *
+ * - events of several kinds, e.g., latencies in logarithmic rows, by the
+ *   number of events per bucket and row, see add() and count().
+ *
+ * A bucket at level l covers 2^(baseLog2+l) ns, so for any zoom factor there
+ * is a level with about one bucket per pixel and the function can be drawn in
+ * time proportional to the number of pixels.
+ *
+ * The buckets are stored in chunks that are allocated only once a value in
+ * them is not 0, so times without events or with a value of 0 need no memory.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class SummaryPyramid extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * log2 of the number of buckets per chunk.
+   */
+  static final int CHUNK_LOG2 = 6;
+  static final int CHUNK_SIZE = 1 << CHUNK_LOG2;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * log2 of the width in ns of a bucket at level 0.
+   */
+  final int _baseLog2;
+
+
+  /**
+   * Number of rows per bucket, 1 for a step function.
+   */
+  final int _rows;
+
+
+  /**
+   * Maximum or counts per bucket for every level in chunks of CHUNK_SIZE
+   * buckets: _chunks.get(l).get(c)[i * _rows + r] is the value for bucket
+   * c * CHUNK_SIZE + i and row r at level l.  A chunk is missing if all of its
+   * values are 0.
+   */
+  final ArrayList<HashMap<Long, int[]>> _chunks = new ArrayList<>();
+
+
+  /**
+   * Per level, the index and the chunk that was written last, -1 and null if
+   * none.  Since values are added at increasing times, this avoids most
+   * lookups in _chunks.
+   */
+  final long[] _lastIndex;
+  final int[][] _last;
+
+
+  /**
+   * Number of buckets used per level, i.e., 1 + index of the last bucket that
+   * was set.
+   */
+  final long[] _used;
+
+
+  /**
+   * The current value, i.e., the value set by the last call to set().
+   */
+  int _value = 0;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create a pyramid for a step function
+   *
+   * @param baseLog2 log2 of the width in ns of a bucket at level 0.
+   *
+   * @param numLevels the number of levels.
+   */
+  SummaryPyramid(int baseLog2, int numLevels)
+  {
+    this(baseLog2, numLevels, 1);
+  }
+
+
+  /**
+   * Create a pyramid to count events in given number of rows
+   *
+   * @param baseLog2 log2 of the width in ns of a bucket at level 0.
+   *
+   * @param numLevels the number of levels.
+   *
+   * @param rows the number of rows per bucket.
+   */
+  SummaryPyramid(int baseLog2, int numLevels, int rows)
+  {
+    _baseLog2 = baseLog2;
+    _rows = rows;
+    _used = new long[numLevels];
+    _lastIndex = new long[numLevels];
+    _last = new int[numLevels][];
+    for (var l = 0; l < numLevels; l++)
+      {
+        _chunks.add(new HashMap<>());
+        _lastIndex[l] = -1;
+      }
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Number of levels.
+   */
+  int numLevels()
+  {
+    return _chunks.size();
+  }
+
+
+  /**
+   * log2 of the width in ns of a bucket at given level.
+   */
+  int bucketLog2(int level)
+  {
+    return _baseLog2 + level;
+  }
+
+
+  /**
+   * The highest level whose buckets are not wider than given time, -1 if even
+   * level 0 is wider, i.e., the step function should be used directly.
+   *
+   * @param ns a time span in ns, e.g., the time covered by one pixel.
+   */
+  int levelFor(double ns)
+  {
+    var l = -1;
+    while (l + 1 < numLevels() && (double) (1L << bucketLog2(l + 1)) <= ns)
+      {
+        l++;
+      }
+    return l;
+  }
+
+
+  /**
+   * The chunk at given level that contains bucket b, null if all of its values
+   * are 0.
+   */
+  private int[] chunk(int level, long b)
+  {
+    return _chunks.get(level).get(b >>> CHUNK_LOG2);
+  }
+
+
+  /**
+   * The chunk at given level that contains bucket b to write a value, create
+   * it if it does not exist.
+   */
+  private int[] chunkForWrite(int level, long b)
+  {
+    var c = b >>> CHUNK_LOG2;
+    if (_lastIndex[level] != c)
+      {
+        _lastIndex[level] = c;
+        _last[level] = _chunks.get(level).computeIfAbsent(c, x -> new int[CHUNK_SIZE * _rows]);
+      }
+    return _last[level];
+  }
+
+
+  /**
+   * Index of the value for bucket b and row r in its chunk.
+   */
+  private int index(long b, int r)
+  {
+    return (int) (b & (CHUNK_SIZE - 1)) * _rows + r;
+  }
+
+
+  /**
+   * The value for bucket b and row r at given level, 0 if none was stored.
+   */
+  private int get(int level, long b, int r)
+  {
+    var m = chunk(level, b);
+    return m != null ? m[index(b, r)] : 0;
+  }
+
+
+  /**
+   * Set the value for bucket b at given level of a step function to the
+   * maximum of the old value and v.
+   */
+  private void raise(int level, long b, int v)
+  {
+    if (v > 0)
+      {
+        var m = chunkForWrite(level, b);
+        var i = index(b, 0);
+        m[i] = Math.max(m[i], v);
+      }
+  }
+
+
+  /**
+   * Set the value of the step function at given time.  Times should be
+   * increasing, a time smaller than that of an earlier call only updates the
+   * bucket at that time.  Values must not be negative.
+   *
+   * @param t a time relative to the start of the recording.
+   *
+   * @param v the new value.
+   */
+  void set(long t, int v)
+  {
+    if (PRECONDITIONS) require
+      (_rows == 1,
+       v >= 0);
+
+    t = Math.max(0, t);
+    for (var l = 0; l < numLevels(); l++)
+      {
+        var b = t >>> bucketLog2(l);
+        // the previous value continues until b:
+        for (var i = _value > 0 ? _used[l] : b; i < b; i++)
+          {
+            raise(l, i, _value);
+          }
+        // and is still valid at the start of b:
+        raise(l, b, Math.max(_value, v));
+        _used[l] = Math.max(_used[l], b + 1);
+      }
+    _value = v;
+  }
+
+
+  /**
+   * Maximum of the step function in the given range of buckets.
+   *
+   * @param level the level
+   *
+   * @param from the first bucket
+   *
+   * @param to the last bucket, inclusive
+   */
+  int max(int level, long from, long to)
+  {
+    if (PRECONDITIONS) require
+      (_rows == 1);
+
+    var u = _used[level];
+    var res = 0;
+    for (var b = Math.max(0, from); b <= to; b++)
+      {
+        res = Math.max(res, b < u ? get(level, b, 0) : _value);
+      }
+    return res;
+  }
+
+
+
+  /**
+   * Count one event at given time.
+   *
+   * @param t a time relative to the start of the recording.
+   *
+   * @param r the row of the event, 0 <= r < _rows.
+   */
+  void add(long t, int r)
+  {
+    if (PRECONDITIONS) require
+      (0 <= r, r < _rows);
+
+    t = Math.max(0, t);
+    for (var l = 0; l < numLevels(); l++)
+      {
+        var b = t >>> bucketLog2(l);
+        chunkForWrite(l, b)[index(b, r)]++;
+        _used[l] = Math.max(_used[l], b + 1);
+      }
+  }
+
+
+  /**
+   * Number of events in the given range of buckets and given row.
+   *
+   * @param level the level
+   *
+   * @param from the first bucket
+   *
+   * @param to the last bucket, inclusive
+   *
+   * @param r the row
+   */
+  int count(int level, long from, long to, int r)
+  {
+    var u = _used[level];
+    var res = 0;
+    for (var b = Math.max(0, from); b <= to && b < u; b++)
+      {
+        res += get(level, b, r);
+      }
+    return res;
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.SystemCgroup
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.ArrayList;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * SystemCgroup represents a cgroup in recorded data, e.g., a container.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class SystemCgroup
+{
+  long _id;
+  String _path;
+  int _num;
+  ArrayList<SystemProcess> _processes = new ArrayList<>();
+
+  SystemCgroup(long id,
+               String path,
+               int num)
+  {
+    _id = id;
+    _path = path;
+    _num = num;
+  }
+
+  void addProcess(SystemProcess p)
+  {
+    _processes.add(p);
+  }
+
+  public String toString()
+  {
+    var i = _path.lastIndexOf('/');
+    return i >= 0 && i < _path.length() - 1 ? _path.substring(i + 1) : _path;
+  }
+}
@@ -44,6 +44,7 @@ class SystemProcess
   String _name;
   int _num;
   SystemUser _user;
+  SystemCgroup _cgroup = null;
   ArrayList<SystemThread> _threads = new ArrayList<>();
 
   SystemProcess(int pid,
@@ -29,6 +29,7 @@ package dev.feeze;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 
 /*---------------------------------------------------------------------*/
 
@@ -49,7 +50,13 @@ class SystemThread extends FeezeThread
   SystemProcess _p;
   int _originalNumber;  // the thread number used in the feeze recording data
   int _displayedNumber; // the thread number used to display this thread
-  boolean _swapper = false;
+
+
+  /**
+   * Is this an idle thread, i.e., tid 0?  This does not depend on the process,
+   * which might be resolved only later, see Offsets.PID_UNRESOLVED.
+   */
+  boolean _swapper;
 
 
   /**
@@ -62,6 +69,59 @@ class SystemThread extends FeezeThread
    */
   ArrayList<Integer> _newNames  = new ArrayList<Integer>();
 
+  /**
+   * Cache for the decoded names recorded in _newNames, null if not decoded yet.
+   */
+  ArrayList<String> _names = new ArrayList<String>();
+
+  /**
+   * Cache for the results of toString(ai) for the names recorded in _newNames,
+   * null if not created yet.  This avoids allocation of new strings for every
+   * thread name that is painted.
+   */
+  ArrayList<String> _displayNames = new ArrayList<String>();
+
+
+  /**
+   * SCHED_SWITCH entries of this thread while its process was not resolved,
+   * added to the cumulative thread of its user and to the lanes of its process
+   * by resolved().  null if none.
+   */
+  ArrayList<Integer> _unresolvedSwitches = null;
+
+
+  /**
+   * A change of the cgroup of a thread: from the entry with index _from on, the
+   * thread is in _cgroup.  Immutable, so the history may be read while new
+   * changes are added.
+   */
+  static final class CgroupChange
+  {
+    final int _from;
+    final SystemCgroup _cgroup;
+    final CgroupChange _prev;
+    CgroupChange(int from, SystemCgroup cg, CgroupChange prev)
+    {
+      _from = from;
+      _cgroup = cg;
+      _prev = prev;
+    }
+  }
+
+
+  /**
+   * The last change of the cgroup of this thread, null if there was no
+   * ENTRY_KIND_THREAD_CGROUP for this thread.
+   */
+  CgroupChange _cgroupChanges = null;
+
+
+  /**
+   * A new cgroup of this thread that takes effect after the next time this is
+   * switched out, null if none.
+   */
+  SystemCgroup _nextCgroup = null;
+
 
   SystemThread(Data data, int tpid, int pid, SystemProcess p)
   {
@@ -70,6 +130,7 @@ class SystemThread extends FeezeThread
     _tid = tpid;
     _pid = pid;
     _p = p;
+    _swapper = tpid == 0;
     _p.addThread(this);
   }
 
@@ -98,10 +159,8 @@ class SystemThread extends FeezeThread
           {
             _newNamesAt.add(numActions());
             _newNames.add(at);
-            if (_tid == 0 && _p._pid ==-1 && !_swapper && nameFrom(numActions()).startsWith("swapper/"))
-              {
-                _swapper = true;
-              }
+            _names.add(null);
+            _displayNames.add(null);
           }
       }
     else
@@ -111,13 +170,127 @@ class SystemThread extends FeezeThread
         if (u != null && // NYI: Check why it sometimes happened that this is null
             _data.kind(at) == ENTRY_KIND_SCHED_SWITCH)
           {
-            u.cumulative().addAction(at);
+            if (_p == _data._unresolved)
+              { // the user is not known yet, see resolved()
+                if (_unresolvedSwitches == null)
+                  {
+                    _unresolvedSwitches = new ArrayList<>();
+                  }
+                _unresolvedSwitches.add(at);
+              }
+            else
+              {
+                u.cumulative().addAction(at);
+              }
           }
-        _swapper = _swapper ||
-          _p._pid == -1 && nameFrom(numActions()-1).startsWith("swapper/");
       }
   }
 
+  /**
+   * The recorder found the process of this thread that was created with
+   * Offsets.PID_UNRESOLVED: move this to p and credit what was recorded so far
+   * to p, its user and its aggregate lanes.
+   */
+  void resolved(SystemProcess p)
+  {
+    var lanes = new ArrayList<CumulativeThread>();
+    if (_unresolvedSwitches != null)
+      {
+        if (p._user != null)
+          {
+            lanes.add(p._user.cumulative());
+          }
+        lanes.addAll(_data._aggregateLanes.lanesOf(p));
+        for (var l : lanes)
+          {
+            l.beforeResolve(_unresolvedSwitches);
+          }
+      }
+    _p._threads.remove(this);
+    _p = p;
+    _pid = p._pid;
+    p.addThread(this);
+    Collections.fill(_displayNames, null);  // names cached so far lack the process name
+    if (_cgroupChanges != null && (p._cgroup == null || isProcess()))
+      {
+        _data.setCgroup(p, _cgroupChanges._cgroup);
+      }
+    for (var l : lanes)
+      {
+        l.afterResolve(this, _unresolvedSwitches);
+      }
+    _data._latencies.resolved(this);
+    _data._migrations.resolved(this);
+  }
+
+
+  /**
+   * Record that this is in cgroup cg as found at the entry with given index.
+   *
+   * The recorder finds the cgroup of a thread while it is running, so a change
+   * takes effect only after this is switched out.  This way, the switches in
+   * and out of one run of this count for the same cgroup.
+   *
+   * The process is grouped by the cgroup of its main thread, or of its first
+   * thread with a known cgroup.
+   */
+  void setCgroup(int at, SystemCgroup cg)
+  {
+    if (_cgroupChanges == null)
+      {
+        _cgroupChanges = new CgroupChange(at, cg, null);
+      }
+    else
+      {
+        _nextCgroup = cg;
+      }
+    if (_p != _data._unresolved && (_p._cgroup == null || isProcess()))
+      {
+        _data.setCgroup(_p, cg);
+      }
+  }
+
+
+  /**
+   * Called for every SCHED_SWITCH entry that switches this out, even if the
+   * actions are restored from a SidecarIndex: apply a cgroup change found
+   * while this was running.
+   *
+   * @param at the index of the entry
+   */
+  void switchedOut(int at)
+  {
+    if (_nextCgroup != null)
+      {
+        _cgroupChanges = new CgroupChange(at + 1, _nextCgroup, _cgroupChanges);
+        _nextCgroup = null;
+      }
+  }
+
+
+  /**
+   * The cgroup of this at the entry with given index.  The first cgroup
+   * recorded for this is used for earlier entries, since the cgroup is found
+   * only when this is switched out for the first time.  If no cgroup was
+   * recorded for this, this is the cgroup of its process, if any.
+   *
+   * @param at an entry index
+   */
+  SystemCgroup cgroupAt(int at)
+  {
+    var c = _cgroupChanges;
+    if (c == null)
+      {
+        return _p._cgroup;
+      }
+    while (c._from > at && c._prev != null)
+      {
+        c = c._prev;
+      }
+    return c._cgroup;
+  }
+
+
   @Override
   public boolean isProcess()
   {
@@ -131,11 +304,16 @@ class SystemThread extends FeezeThread
   }
 
 
-  private String nameFrom(int ai)
+  /**
+   * Index in _newNames of the name that is valid at action index ai.
+   *
+   * @return the index or -1 if there is no name.
+   */
+  private int nameIndex(int ai)
   {
     if (_newNamesAt.size() == 0)
       {
-        return UNKNOWN_NAME;
+        return -1;
       }
     else
       {
@@ -147,9 +325,49 @@ class SystemThread extends FeezeThread
             if (_newNamesAt.get(m) >= ai) { r = m-1; }
             if (_newNamesAt.get(m) <= ai) { l = m+1; }
           }
-        var i = Math.max(0, l-1);
-        return _data.threadName(_newNames.get(i));
+        return Math.max(0, l-1);
+      }
+  }
+
+
+  /**
+   * Number of names recorded for this.
+   */
+  int numNames()
+  {
+    return _newNames.size();
+  }
+
+
+  /**
+   * Index of the ENTRY_KIND_THREAD_NAME entry of the name with index i in
+   * _newNames.
+   */
+  int nameEntry(int i)
+  {
+    return _newNames.get(i);
+  }
+
+
+  /**
+   * Decoded name with index i in _newNames, cached in _names.
+   */
+  String name(int i)
+  {
+    var res = _names.get(i);
+    if (res == null)
+      {
+        res = _data.threadName(_newNames.get(i));
+        _names.set(i, res);
       }
+    return res;
+  }
+
+
+  private String nameFrom(int ai)
+  {
+    var i = nameIndex(ai);
+    return i < 0 ? UNKNOWN_NAME : name(i);
   }
 
 
@@ -160,16 +378,23 @@ class SystemThread extends FeezeThread
     //   (0 <= ai,
     //   (ai < _num_actions);
 
-    byte[] bs = new byte[16];
-    var at = _at[ai];
-    String n = nameFrom(ai);
-    if (isProcess() && !n.equals(_p._name))
-      {
-        n = n + " (" + _p._name + ")";
-      }
-    if (!true)
+    var i = nameIndex(ai);
+    var n = i < 0 ? null : _displayNames.get(i);
+    if (n == null)
       {
-        n = _tid + "/" + _pid + " " + n + " (" + _p + ")";
+        n = i < 0 ? UNKNOWN_NAME : name(i);
+        if (isProcess() && !n.equals(_p._name))
+          {
+            n = n + " (" + _p._name + ")";
+          }
+        if (!true)
+          {
+            n = _tid + "/" + _pid + " " + n + " (" + _p + ")";
+          }
+        if (i >= 0)
+          {
+            _displayNames.set(i, n);
+          }
       }
     return n;
   }
@@ -0,0 +1,263 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.ThreadFilter
+ *
+ *---------------------------------------------------------------------*/
+
+
+
+package dev.feeze;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * ThreadFilter selects the threads shown by a SchedulingPanorama.
+ *
+ * A filter is given as text of terms separated by spaces, a thread is shown if
+ * it matches all terms.  A term preceded by '!' matches if the term does not
+ * match.  The terms are
+ *
+ *   name=<regex>     any name the thread had matches regex, also for any
+ *                    other term without '='
+ *   process=<regex>  the process name matches regex or is the pid
+ *   user=<regex>     the user name matches regex or is the uid
+ *   active           the thread has an action or is running in the window
+ *   cpu>=<time>      the thread ran for at least time, e.g., 10ms, in total
+ *
+ * The filter is evaluated once into a BitSet over SystemThread._originalNumber
+ * so hidden threads can be skipped in O(1) while the layout is created.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class ThreadFilter extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * Units accepted by cpu>= and their factors to ns, "s" must come last since
+   * the other units end with "s" as well.
+   */
+  static final String[] UNITS = { "ns", "us", "ms", "s" };
+  static final long[] UNIT_NS = { 1, 1000, 1000000, 1000000000 };
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The filter as entered.
+   */
+  final String _spec;
+
+
+  /**
+   * The terms, a thread is selected if all of them are true.  The window is
+   * passed as {from, to} relative to the start of the recording.
+   */
+  interface Term
+  {
+    boolean matches(SystemThread t, long[] window);
+  }
+  final ArrayList<Term> _terms = new ArrayList<>();
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Parse a filter.
+   *
+   * @param spec the filter text, see class comment.
+   *
+   * @throws IllegalArgumentException with a message for the user if spec is
+   * not a legal filter.
+   */
+  ThreadFilter(String spec)
+  {
+    _spec = spec.trim();
+    for (var s : _spec.split("\\s+"))
+      {
+        if (!s.isEmpty())
+          {
+            var negate = s.startsWith("!");
+            var term = term(negate ? s.substring(1) : s);
+            _terms.add(negate ? (t, w) -> !term.matches(t, w) : term);
+          }
+      }
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Parse one term.
+   */
+  private Term term(String s)
+  {
+    var eq = s.indexOf('=');
+    var key = eq >= 0 ? s.substring(0, eq) : s.equals("active") ? s : "name";
+    var val = eq >= 0 ? s.substring(eq + 1) : s;
+    return switch (key)
+      {
+      case "name"    -> { var p = pattern(val); yield (t, w) -> anyName(t, p); }
+      case "process" -> { var p = pattern(val); yield (t, w) -> p.test(t._p._name) || val.equals(Integer.toString(t._p._pid)); }
+      case "user"    -> { var p = pattern(val); yield (t, w) -> p.test(t.user()._name) || val.equals(Integer.toString(t.user()._uid)); }
+      case "cpu>"    -> { var ns = duration(val); yield (t, w) -> t.onCpu(t._data.nanosMin(), t._data.nanosMax()) >= ns; }
+      case "active"  -> (t, w) -> active(t, w);
+      default        -> throw new IllegalArgumentException("unknown filter term '" + s + "'");
+      };
+  }
+
+
+  /**
+   * Predicate for a regex, find() is used, so the regex may match any part.
+   */
+  private static Predicate<String> pattern(String regex)
+  {
+    try
+      {
+        return Pattern.compile(regex).asPredicate();
+      }
+    catch (PatternSyntaxException e)
+      {
+        throw new IllegalArgumentException("illegal pattern: " + e.getDescription());
+      }
+  }
+
+
+  /**
+   * Parse a duration like 10ms.
+   *
+   * @return the duration in ns.
+   */
+  private static long duration(String s)
+  {
+    for (var i = 0; i < UNITS.length; i++)
+      {
+        var u = UNITS[i];
+        if (s.endsWith(u))
+          {
+            try
+              {
+                return (long) (Double.parseDouble(s.substring(0, s.length() - u.length())) * UNIT_NS[i]);
+              }
+            catch (NumberFormatException e)
+              {
+                break;
+              }
+          }
+      }
+    throw new IllegalArgumentException("illegal time '" + s + "', expected a number followed by one of ns, us, ms or s");
+  }
+
+
+  /**
+   * Does any of the names t had during the recording match p?  The names are
+   * tested without the process name toString() adds.
+   */
+  private static boolean anyName(SystemThread t, Predicate<String> p)
+  {
+    var n = t.numNames();
+    var res = n == 0 && p.test(SystemThread.UNKNOWN_NAME);
+    for (var i = 0; !res && i < n; i++)
+      {
+        res = p.test(t.name(i));
+      }
+    return res;
+  }
+
+
+  /**
+   * Does t have an action or is it running in the window?
+   */
+  private static boolean active(SystemThread t, long[] window)
+  {
+    var nanosMin = t._data.nanosMin();
+    var a = t.lastActionAt(nanosMin + window[1]);
+    return
+      a >= 0 &&
+      (t.nanosAt(a) >= window[0] ||
+       t.onCpu(nanosMin + window[0], nanosMin + window[1]) > 0);
+  }
+
+
+  /**
+   * Evaluate this for the threads of data that were added since the last
+   * call.  Must be called while holding the lock on the Data.
+   *
+   * @param window the window {from, to} relative to the start of the recording
+   * at the time the filter was applied, used by "active".
+   *
+   * @param threads the set of SystemThread._originalNumber of the selected
+   * threads, extended by this call.
+   *
+   * @param users the set of SystemUser._num of users that have at least one
+   * selected thread, extended by this call.
+   *
+   * @param from the number of threads evaluated by earlier calls.
+   *
+   * @return the number of threads evaluated, to be passed as from to the next
+   * call.
+   */
+  int evaluate(Data data, long[] window, BitSet threads, BitSet users, int from)
+  {
+    var all = data._unsortedThreads;
+    var n = all.size();
+    for (var i = from; i < n; i++)
+      {
+        var t = all.get(i);
+        var m = true;
+        for (var j = 0; m && j < _terms.size(); j++)
+          {
+            m = _terms.get(j).matches(t, window);
+          }
+        if (m)
+          {
+            threads.set(i);
+            users.set(t.user()._num);
+          }
+      }
+    return n;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return _spec;
+  }
+
+}
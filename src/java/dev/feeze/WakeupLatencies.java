@@ -0,0 +1,626 @@
+/*
+
+This file is part of the Feeze scheduling analysis tool.
+
+This code is free software: you can redistribute it and/or modify
+it under the terms of the GNU Affero General Public License, version 3,
+as published by the Free Software Foundation.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+GNU Affero General Public License for more details.
+
+You should have received a copy of the GNU Affero General Public License, version 3,
+along with this program.  If not, see <http://www.gnu.org/licenses/>
+
+*/
+
+/*-----------------------------------------------------------------------
+ *
+ * Copyright (c) 2026, Tokiwa Software GmbH, Germany
+ *
+ * Java source code of class dev.feeze.WakeupLatencies
+ *
+ *---------------------------------------------------------------------*/
+
+
+package dev.feeze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import dev.flang.util.ANY;
+
+/*---------------------------------------------------------------------*/
+
+
+/**
+ * WakeupLatencies measures the scheduling latency of every activation of a
+ * thread, i.e., the time from SCHED_WAKING via SCHED_WAKEUP until the thread
+ * is switched in by SCHED_SWITCH.
+ *
+ * This is fed incrementally by Data.processNewData() with the entries in the
+ * order they are processed.  Every activation is recorded in primitive arrays
+ * and the total latency (waking until running) is added to histograms per
+ * thread, per process, per user and per target CPU.
+ *
+ * All methods must be called while holding the lock on the Data.
+ *
+ * @author Fridtjof Siebert (siebert@tokiwa.software)
+ */
+class WakeupLatencies extends ANY
+{
+
+
+  /*----------------------------  constants  ----------------------------*/
+
+
+  /**
+   * Maximum number of hops followed by criticalPath().
+   */
+  static final int MAX_CHAIN = 1000;
+
+
+  /*------------------------------  fields  -----------------------------*/
+
+
+  /**
+   * The data this is working on.
+   */
+  final Data _data;
+
+
+  /**
+   * Per thread, indexed by SystemThread._originalNumber: the entries of a
+   * pending activation, i.e., the SCHED_WAKING and SCHED_WAKEUP entries that
+   * were not followed by a SCHED_SWITCH to this thread yet, -1 if none.
+   */
+  int[] _pendingWaking = new int[16];
+  int[] _pendingWakeup = new int[16];
+  {
+    Arrays.fill(_pendingWaking, -1);
+    Arrays.fill(_pendingWakeup, -1);
+  }
+
+
+  /**
+   * Activations, recorded as the indices of their SCHED_WAKING, SCHED_WAKEUP
+   * (-1 if there was none) and SCHED_SWITCH entries and the total latency in
+   * ns.
+   */
+  int[] _wakingAt = new int[64];
+  int[] _wakeupAt = new int[64];
+  int[] _runAt    = new int[64];
+  long[] _latency = new long[64];
+  int _numActivations = 0;
+
+
+  /**
+   * Per thread, indexed by SystemThread._originalNumber: the indices of its
+   * activations in increasing order, null if none.  This is the reverse index
+   * used to find the activation of a waker that was running when it woke
+   * another thread.
+   */
+  int[][] _activationsOf = new int[16][];
+  int[] _numActivationsOf = new int[16];
+
+
+  /**
+   * Histograms of the total latency per thread (by _originalNumber), per
+   * process (by _num), per user (by _num) and per target CPU (by cpu id).
+   * Entries are null if there was no activation.
+   */
+  final ArrayList<LatencyHistogram> _perThread  = new ArrayList<>();
+  final ArrayList<LatencyHistogram> _perProcess = new ArrayList<>();
+  final ArrayList<LatencyHistogram> _perUser    = new ArrayList<>();
+  final ArrayList<LatencyHistogram> _perCpu     = new ArrayList<>();
+
+
+  /**
+   * Histograms over all activations for the phases waking until wakeup,
+   * wakeup until running and the total latency waking until running.
+   */
+  final LatencyHistogram _wakingToWakeup = new LatencyHistogram();
+  final LatencyHistogram _wakeupToRun    = new LatencyHistogram();
+  final LatencyHistogram _total          = new LatencyHistogram();
+
+
+  /**
+   * Activations per time bucket and latency row, for heatmaps.
+   */
+  final LatencyHeatmap _heatmap = new LatencyHeatmap();
+
+
+  /**
+   * Cached value of _data.nanosMin(), -1 if not known yet.
+   */
+  long _nanosMin = -1;
+
+
+  /*--------------------------  constructors  ---------------------------*/
+
+
+  /**
+   * Create latency engine for given data.
+   */
+  WakeupLatencies(Data data)
+  {
+    _data = data;
+  }
+
+
+  /*-----------------------------  methods  -----------------------------*/
+
+
+  /**
+   * Make sure the pending arrays have room for thread number n.
+   */
+  private void ensurePending(int n)
+  {
+    if (n >= _pendingWaking.length)
+      {
+        var l = _pendingWaking.length;
+        var nl = Math.max(n + 1, 2 * l);
+        _pendingWaking = Arrays.copyOf(_pendingWaking, nl);
+        _pendingWakeup = Arrays.copyOf(_pendingWakeup, nl);
+        Arrays.fill(_pendingWaking, l, nl, -1);
+        Arrays.fill(_pendingWakeup, l, nl, -1);
+      }
+  }
+
+
+  /**
+   * Process a SCHED_WAKING entry.
+   *
+   * @param at the index of the entry
+   *
+   * @param t the thread that is woken
+   */
+  void waking(int at, SystemThread t)
+  {
+    var n = t._originalNumber;
+    ensurePending(n);
+    if (_pendingWaking[n] < 0)
+      {
+        _pendingWaking[n] = at;
+      }
+  }
+
+
+  /**
+   * Process a SCHED_WAKEUP entry.
+   *
+   * @param at the index of the entry
+   *
+   * @param t the thread that is woken
+   */
+  void wakeup(int at, SystemThread t)
+  {
+    var n = t._originalNumber;
+    ensurePending(n);
+    if (_pendingWaking[n] < 0)
+      { // SCHED_WAKING was lost or not recorded, so the activation starts here
+        _pendingWaking[n] = at;
+      }
+    if (_pendingWakeup[n] < 0)
+      {
+        _pendingWakeup[n] = at;
+      }
+  }
+
+
+  /**
+   * Process a SCHED_SWITCH entry.
+   *
+   * @param at the index of the entry
+   *
+   * @param t the thread that is switched in
+   */
+  void switchedIn(int at, SystemThread t)
+  {
+    var n = t._originalNumber;
+    ensurePending(n);
+    var wi = _pendingWaking[n];
+    if (wi >= 0)
+      {
+        var wu = _pendingWakeup[n];
+        var nsWaking = _data.ns(wi);
+        var nsRun    = _data.ns(at);
+        var latency  = nsRun - nsWaking;
+        var i = _numActivations;
+        if (i >= _wakingAt.length)
+          {
+            _wakingAt = Arrays.copyOf(_wakingAt, 2 * i);
+            _wakeupAt = Arrays.copyOf(_wakeupAt, 2 * i);
+            _runAt    = Arrays.copyOf(_runAt   , 2 * i);
+            _latency  = Arrays.copyOf(_latency , 2 * i);
+          }
+        _wakingAt[i] = wi;
+        _wakeupAt[i] = wu;
+        _runAt   [i] = at;
+        _latency [i] = latency;
+        _numActivations = i + 1;
+
+        _total.add(latency);
+        if (_nanosMin < 0)
+          {
+            _nanosMin = _data.nanosMin();
+          }
+        _heatmap.add(nsRun - _nanosMin, latency);
+        if (wu >= 0)
+          {
+            var nsWakeup = _data.ns(wu);
+            _wakingToWakeup.add(nsWakeup - nsWaking);
+            _wakeupToRun   .add(nsRun - nsWakeup);
+          }
+        addActivationOf(n, i);
+        histogram(_perThread , n                               ).add(latency);
+        if (t._p != _data._unresolved)
+          { // otherwise, credited to the process by resolved()
+            histogram(_perProcess, t._p._num                   ).add(latency);
+            histogram(_perUser   , t._p._user._num             ).add(latency);
+          }
+        histogram(_perCpu    , _data.cpu_id(wu >= 0 ? wu : at) ).add(latency);
+
+        _pendingWaking[n] = -1;
+        _pendingWakeup[n] = -1;
+      }
+  }
+
+
+  /**
+   * Thread t that was created with Offsets.PID_UNRESOLVED was moved to its
+   * process: credit its activations so far to the process and its user.
+   */
+  void resolved(SystemThread t)
+  {
+    var h = forThread(t);
+    if (h != null)
+      {
+        histogram(_perProcess, t._p._num      ).addAll(h);
+        histogram(_perUser   , t._p._user._num).addAll(h);
+      }
+  }
+
+
+  /**
+   * Add activation i to the activations of thread number n.
+   */
+  private void addActivationOf(int n, int i)
+  {
+    if (n >= _activationsOf.length)
+      {
+        var nl = Math.max(n + 1, 2 * _activationsOf.length);
+        _activationsOf    = Arrays.copyOf(_activationsOf   , nl);
+        _numActivationsOf = Arrays.copyOf(_numActivationsOf, nl);
+      }
+    var a = _activationsOf[n];
+    var c = _numActivationsOf[n];
+    if (a == null)
+      {
+        a = new int[4];
+      }
+    else if (c >= a.length)
+      {
+        a = Arrays.copyOf(a, 2 * c);
+      }
+    a[c] = i;
+    _activationsOf[n] = a;
+    _numActivationsOf[n] = c + 1;
+  }
+
+
+  /**
+   * Get the histogram with given index from list, create it if needed.
+   */
+  private LatencyHistogram histogram(ArrayList<LatencyHistogram> l, int i)
+  {
+    while (l.size() <= i)
+      {
+        l.add(null);
+      }
+    var res = l.get(i);
+    if (res == null)
+      {
+        res = new LatencyHistogram();
+        l.set(i, res);
+      }
+    return res;
+  }
+
+
+  /**
+   * Get the histogram with given index from list, null if none.
+   */
+  private LatencyHistogram get(ArrayList<LatencyHistogram> l, int i)
+  {
+    return i >= 0 && i < l.size() ? l.get(i) : null;
+  }
+
+
+  /**
+   * The number of activations recorded.
+   */
+  int numActivations()
+  {
+    return _numActivations;
+  }
+
+
+  /**
+   * Index of SCHED_WAKING entry (or SCHED_WAKEUP if no waking was recorded)
+   * of activation i.
+   */
+  int wakingAt(int i)
+  {
+    if (PRECONDITIONS) require
+      (0 <= i, i < numActivations());
+
+    return _wakingAt[i];
+  }
+
+
+  /**
+   * Index of SCHED_WAKEUP entry of activation i, -1 if none was recorded.
+   */
+  int wakeupAt(int i)
+  {
+    if (PRECONDITIONS) require
+      (0 <= i, i < numActivations());
+
+    return _wakeupAt[i];
+  }
+
+
+  /**
+   * Index of SCHED_SWITCH entry of activation i.
+   */
+  int runAt(int i)
+  {
+    if (PRECONDITIONS) require
+      (0 <= i, i < numActivations());
+
+    return _runAt[i];
+  }
+
+
+  /**
+   * Time of the SCHED_SWITCH entry of activation i relative to the start of
+   * the recording.
+   */
+  long runNs(int i)
+  {
+    if (PRECONDITIONS) require
+      (0 <= i, i < numActivations());
+
+    return _data.ns(_runAt[i]) - _nanosMin;
+  }
+
+
+  /**
+   * Total latency from waking until running of activation i.
+   */
+  long latency(int i)
+  {
+    if (PRECONDITIONS) require
+      (0 <= i, i < numActivations());
+
+    return _latency[i];
+  }
+
+
+  /**
+   * The first activation that was switched in at or after the given time.
+   * Activations are recorded in the order of their SCHED_SWITCH entries, so
+   * they are sorted by the time they run.  O(log activations).
+   *
+   * @param relativeNs a time relative to the start of the recording.
+   *
+   * @return the activation, numActivations() if none.
+   */
+  int firstActivationFrom(long relativeNs)
+  {
+    var res = _numActivations;
+    var l = 0;
+    var r = _numActivations - 1;
+    while (l <= r)
+      {
+        var m = (l + r) >>> 1;
+        if (runNs(m) >= relativeNs) { res = m; r = m - 1; }
+        else                        {          l = m + 1; }
+      }
+    return res;
+  }
+
+
+  /**
+   * The last activation of given thread that was switched in before the entry
+   * with given index, i.e., the activation that was running at that entry if
+   * the thread was running.  O(log activations of t).
+   *
+   * @param t a thread
+   *
+   * @param at an entry index
+   *
+   * @return the activation, -1 if none.
+   */
+  int activationBefore(SystemThread t, int at)
+  {
+    var n = t._originalNumber;
+    var res = -1;
+    if (n < _activationsOf.length && _activationsOf[n] != null)
+      {
+        var a = _activationsOf[n];
+        var l = 0;
+        var r = _numActivationsOf[n] - 1;
+        while (l <= r)
+          {
+            var m = (l + r) >>> 1;
+            if (_runAt[a[m]] < at) { res = a[m]; l = m + 1; }
+            else                   {              r = m - 1; }
+          }
+      }
+    return res;
+  }
+
+
+  /**
+   * The last activation of given thread whose waking entry is at or before the
+   * given time.
+   *
+   * @param t a thread
+   *
+   * @param relativeNs a time relative to the start of the recording.
+   *
+   * @return the activation, -1 if none.
+   */
+  int activationAt(SystemThread t, long relativeNs)
+  {
+    var n = t._originalNumber;
+    var res = -1;
+    if (n < _activationsOf.length && _activationsOf[n] != null)
+      {
+        var a = _activationsOf[n];
+        var l = 0;
+        var r = _numActivationsOf[n] - 1;
+        while (l <= r)
+          {
+            var m = (l + r) >>> 1;
+            if (_data.ns(_wakingAt[a[m]]) - _nanosMin <= relativeNs) { res = a[m]; l = m + 1; }
+            else                                                   {              r = m - 1; }
+          }
+      }
+    return res;
+  }
+
+
+  /**
+   * The thread that caused activation i, i.e., that woke it, null if unknown.
+   */
+  SystemThread waker(int i)
+  {
+    if (PRECONDITIONS) require
+      (0 <= i, i < numActivations());
+
+    return _data.causingThreadAt(_wakingAt[i]);
+  }
+
+
+  /**
+   * Follow the chain of wakers starting at activation i: the waker of i was
+   * running in its own activation that was woken by another thread, etc.
+   *
+   * The chain ends at a waker that is the idle thread, e.g., for an interrupt,
+   * at a waker that has no recorded activation and after MAX_CHAIN hops.
+   *
+   * @param i an activation
+   *
+   * @return the activations on the critical path, starting with i, each
+   * followed by the activation of its waker.
+   */
+  int[] criticalPath(int i)
+  {
+    if (PRECONDITIONS) require
+      (0 <= i, i < numActivations());
+
+    var res = new int[16];
+    var n = 0;
+    while (i >= 0 && n < MAX_CHAIN)
+      {
+        if (n >= res.length)
+          {
+            res = Arrays.copyOf(res, 2 * n);
+          }
+        res[n++] = i;
+        var w = waker(i);
+        i = w == null || w.isSwapper() ? -1 : activationBefore(w, _wakingAt[i]);
+      }
+    return Arrays.copyOf(res, n);
+  }
+
+
+  /**
+   * Histogram of the latencies of given thread, null if it had no activation.
+   */
+  LatencyHistogram forThread(SystemThread t)
+  {
+    return get(_perThread, t._originalNumber);
+  }
+
+
+  /**
+   * Histogram of the latencies of the threads of given process, null if none
+   * had an activation.
+   */
+  LatencyHistogram forProcess(SystemProcess p)
+  {
+    return get(_perProcess, p._num);
+  }
+
+
+  /**
+   * Histogram of the latencies of the threads of given user, null if none had
+   * an activation.
+   */
+  LatencyHistogram forUser(SystemUser u)
+  {
+    return get(_perUser, u._num);
+  }
+
+
+  /**
+   * Histogram of the latencies of activations with given target CPU, null if
+   * none.
+   */
+  LatencyHistogram forCpu(int cpuId)
+  {
+    return get(_perCpu, cpuId);
+  }
+
+
+  /**
+   * Histogram of the latencies of given FeezeThread: for a SystemThread its
+   * own histogram, for an AggregateLane of a process the one of the process,
+   * for a CumulativeThread the one of its user.
+   */
+  LatencyHistogram forLane(FeezeThread t)
+  {
+    return
+      t instanceof SystemThread     st ? forThread(st)       :
+      t instanceof AggregateLane    al ? (al._process != null ? forProcess(al._process) : null) :
+      t instanceof CumulativeThread ct ? forUser(ct._user)
+                                       : null;
+  }
+
+
+  /**
+   * Create a textual summary of the latencies over all activations, per
+   * phase, per target CPU and per user.
+   */
+  String summary()
+  {
+    var sb = new StringBuilder();
+    sb.append("waking until running: ").append(_total         ).append('\n')
+      .append("waking until wakeup: " ).append(_wakingToWakeup).append('\n')
+      .append("wakeup until running: ").append(_wakeupToRun   ).append('\n');
+    for (var cpu = 0; cpu < _perCpu.size(); cpu++)
+      {
+        var h = _perCpu.get(cpu);
+        if (h != null)
+          {
+            sb.append("target CPU").append(cpu).append(": ").append(h).append('\n');
+          }
+      }
+    for (var u : _data._users)
+      {
+        var h = forUser(u);
+        if (h != null)
+          {
+            sb.append("user ").append(u._name).append(": ").append(h).append('\n');
+          }
+      }
+    return sb.toString();
+  }
+
+}
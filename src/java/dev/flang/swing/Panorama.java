@@ -30,14 +30,18 @@ package dev.flang.swing;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Point;
 import java.awt.Rectangle;
 
+import java.awt.event.AdjustmentEvent;
+
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JViewport;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.Timer;
 
 /*---------------------------------------------------------------------*/
 
@@ -117,6 +121,33 @@ public abstract class Panorama extends JPanel
   private static final int MIN_FRAME_HEIGHT = 16;
 
 
+  /**
+   * Target frame rate for repeated drawing: auto-repeat steps and coalesced
+   * repaint requests are not issued more often than this.
+   */
+  static final int TARGET_FRAME_RATE = 20;
+
+
+  /**
+   * Minimum time between two frames in ms, derived from TARGET_FRAME_RATE.
+   */
+  static final int FRAME_INTERVAL_MS = 1000 / TARGET_FRAME_RATE;
+
+
+  /**
+   * Time in ms without any user input after which an interaction is considered
+   * finished, i.e., the panorama is redrawn at full level of detail.
+   */
+  static final int SETTLE_MS = 200;
+
+
+  /**
+   * Distance in pixels between the right end of the data and the right border
+   * of the visible area when following the right edge.
+   */
+  private static final int FOLLOW_MARGIN = 16;
+
+
   /*----------------------------  variables  ----------------------------*/
 
 
@@ -156,6 +187,20 @@ public abstract class Panorama extends JPanel
   private int _frameB = 0;
 
 
+  /**
+   * Additional width reserved in the right frame.  While following the right
+   * edge of growing data, this avoids a resize of this Panorama, which would
+   * result in repainting everything, for every small growth.
+   */
+  private int _rightHeadroom = 0;
+
+
+  /**
+   * dataWidth() at the last call to followRightEdge(), -1 if not following.
+   */
+  private int _followedWidth = -1;
+
+
   /**
    * The listener used to handle events in this Panorama.
    *
@@ -197,6 +242,40 @@ public abstract class Panorama extends JPanel
   protected boolean _draggingDataArea = false;
 
 
+  /**
+   * Set while the user is interacting, e.g., dragging or scrolling, reset by
+   * _settleTimer once input has settled.
+   */
+  private volatile boolean _interacting = false;
+
+
+  /**
+   * Timer that ends an interaction SETTLE_MS after the last input and triggers
+   * a repaint at full level of detail, created by settleTimer().
+   */
+  private Timer _settleTimer = null;
+
+
+  /**
+   * Set while a repaint requested via requestRepaint() is pending, further
+   * requests will be dropped.
+   */
+  private volatile boolean _repaintPending = false;
+
+
+  /**
+   * Time System.nanoTime() at the end of the last call to paintComponent.
+   */
+  private volatile long _lastPaintDone = 0;
+
+
+  /**
+   * Timer to perform a repaint requested via requestRepaint(), created by
+   * repaintTimer().
+   */
+  private Timer _repaintTimer = null;
+
+
   /*--------------------------  constructors  ---------------------------*/
 
 
@@ -294,7 +373,7 @@ public abstract class Panorama extends JPanel
     // make frame large enough to cover r:
     var fW = (r.width  - w) / 2;
     _frameL = max(MIN_FRAME_WIDTH , fw, posx   , fW);
-    _frameR = max(MIN_FRAME_WIDTH , fw, fW-posx, fW);
+    _frameR = max(MIN_FRAME_WIDTH , fw, fW-posx, fW) + _rightHeadroom;
 
     posx    -= _frameL;
     _width   = _frameL + w + _frameR;
@@ -350,6 +429,7 @@ public abstract class Panorama extends JPanel
   {
     super.paintComponent(g);
     paintPanorama(g);
+    _lastPaintDone = System.nanoTime();
 
     var l = _listener;
     if (l != null)
@@ -415,6 +495,12 @@ public abstract class Panorama extends JPanel
     res.getVerticalScrollBar  ().setUnitIncrement(64);
     res.getHorizontalScrollBar().setUnitIncrement(64);
 
+    // dragging a scroll bar's knob or using the mouse wheel is an interaction
+    // that is drawn at a lower level of detail
+    res.getVerticalScrollBar  ().addAdjustmentListener(this::scrollBarAdjusted);
+    res.getHorizontalScrollBar().addAdjustmentListener(this::scrollBarAdjusted);
+    res.addMouseWheelListener(e -> noteInteraction());
+
     var tr = topRuler();
     if (tr != null)
       {
@@ -434,6 +520,8 @@ public abstract class Panorama extends JPanel
     adjustPosX(0);
     adjustPosY(MIN_FRAME_HEIGHT);  // NYI: This results in a vertical jump on compress/zoom if height is small, need to check what posy is better here.
     _viewport = res.getViewport();
+    // scroll by copying the existing pixels and painting only the exposed area:
+    _viewport.setScrollMode(JViewport.BLIT_SCROLL_MODE);
     return res;
   }
 
@@ -514,6 +602,57 @@ public abstract class Panorama extends JPanel
   }
 
 
+  /**
+   * Scroll horizontally such that the right end of the data area is visible
+   * at the right border of the visible area, e.g., to follow the newest data
+   * during a live recording.
+   *
+   * This will use the viewport's blitting such that only the newly exposed
+   * area will be painted.  Only if there is not enough room to the right of
+   * the data area, this Panorama will be resized and headroom of the width of
+   * the visible area will be reserved for future calls.
+   *
+   * The blitted area includes the previous right end of the data, i.e., the
+   * empty margin and the data that was still growing, so this is repainted
+   * from the previous dataWidth() on.
+   */
+  public void followRightEdge()
+  {
+    if (_viewport != null)
+      {
+        var vw = _viewport.getWidth();
+        var dw = dataWidth();
+        var right = _frameL + dw + FOLLOW_MARGIN;
+        if (right > getWidth() || _width < 0)
+          {
+            _rightHeadroom = vw;
+            adjustPosX(getX() + _frameL);
+          }
+        var vp = _viewport.getViewPosition();
+        _viewport.setViewPosition(new Point(Math.max(0, right - vw), vp.y));
+        var fw = _followedWidth;
+        if (fw >= 0)
+          {
+            var x0 = Math.min(fw, dw);
+            var x1 = Math.max(fw, dw);
+            repaint(_frameL + x0 - 1, 0, x1 - x0 + FOLLOW_MARGIN + 2, getHeight());
+          }
+        _followedWidth = dw;
+      }
+  }
+
+
+  /**
+   * Stop reserving headroom in the right frame for followRightEdge().  This
+   * takes effect on the next call to adjustPosX().
+   */
+  public void stopFollowing()
+  {
+    _rightHeadroom = 0;
+    _followedWidth = -1;
+  }
+
+
   /**
    * dataWidth the current width of whe whole panorama in pixels, excluding the
    * frame.
@@ -673,11 +812,123 @@ public abstract class Panorama extends JPanel
   }
 
 
+  /**
+   * The timer that ends an interaction, created on first use and not in the
+   * constructor such that this does not escape before subclasses are
+   * initialized.
+   */
+  private synchronized Timer settleTimer()
+  {
+    var res = _settleTimer;
+    if (res == null)
+      {
+        res = new Timer(SETTLE_MS, e ->
+          {
+            _interacting = false;
+            repaint();
+          });
+        res.setRepeats(false);
+        _settleTimer = res;
+      }
+    return res;
+  }
+
+
+  /**
+   * The timer that performs a requested repaint, created on first use like
+   * settleTimer().
+   */
+  private synchronized Timer repaintTimer()
+  {
+    var res = _repaintTimer;
+    if (res == null)
+      {
+        res = new Timer(FRAME_INTERVAL_MS, e ->
+          {
+            _repaintPending = false;
+            repaint();
+          });
+        res.setRepeats(false);
+        _repaintTimer = res;
+      }
+    return res;
+  }
+
+
+  /**
+   * Notify this Panorama that the user is interacting, i.e., that frames are
+   * drawn repeatedly and only speed is important.  The interaction ends
+   * SETTLE_MS after the last call to noteInteraction(), then the panorama will
+   * be repainted at full level of detail.
+   */
+  public void noteInteraction()
+  {
+    _interacting = true;
+    settleTimer().restart();
+  }
+
+
+  /**
+   * AdjustmentListener for the scroll bars created by scroller().
+   *
+   * @param e the adjustment event
+   */
+  private void scrollBarAdjusted(AdjustmentEvent e)
+  {
+    if (e.getValueIsAdjusting())
+      {
+        noteInteraction();
+      }
+  }
+
+
+  /**
+   * Is the user currently interacting, e.g., dragging, scrolling or
+   * auto-repeat zooming?  If so, paintPanorama() should draw a coarse level of
+   * detail that is fast to draw.  Once the interaction has settled, a repaint
+   * will be triggered.
+   */
+  protected boolean interacting()
+  {
+    return _interacting || repeatedDrawing();
+  }
+
+
+  /**
+   * Request a repaint that is coalesced with other requests: The repaint will
+   * be performed no earlier than FRAME_INTERVAL_MS after the last paint ended,
+   * and requests made while one is pending are dropped.  This may be called
+   * from any thread, including from paintPanorama().
+   */
+  public void requestRepaint()
+  {
+    if (!_repaintPending)
+      {
+        _repaintPending = true;
+        var sinceLast = (System.nanoTime() - _lastPaintDone) / 1_000_000;
+        var t = repaintTimer();
+        t.setInitialDelay((int) Math.max(0, FRAME_INTERVAL_MS - Math.min(sinceLast, FRAME_INTERVAL_MS)));
+        t.restart();
+      }
+  }
+
+
   /**
    * Clean up everything related to this Panorama, in particular threads.
    */
   public void cleanup()
   {
+    synchronized (this)
+      {
+        if (_settleTimer != null)
+          {
+            _settleTimer.stop();
+          }
+        if (_repaintTimer != null)
+          {
+            _repaintTimer.stop();
+          }
+      }
     var l = _listener;
     if (l != null)
       {
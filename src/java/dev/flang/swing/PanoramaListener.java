@@ -410,6 +410,7 @@ class PanoramaListener
                         new_x = Math.max(new_x, 0);
                         new_y = Math.max(new_y, 0);
 
+                        _p.noteInteraction();
                         _p._viewport.setViewPosition(new Point(new_x, new_y));
 
                         _supressMouseLeft = true;
@@ -542,11 +543,11 @@ class PanoramaListener
 
               switch (e.getKeyCode())
                 {
-                  case KeyEvent.VK_UP:    y = Math.max(y - yscrollspeed, 0    ); break;
-                  case KeyEvent.VK_DOWN:  y = Math.min(y + yscrollspeed, max_y); break;
-                  case KeyEvent.VK_LEFT:  x = Math.max(x - xscrollspeed, 0    ); break;
-                  case KeyEvent.VK_RIGHT: x = Math.min(x + xscrollspeed, max_x); break;
-                  default:                                                       break;
+                  case KeyEvent.VK_UP:    y = Math.max(y - yscrollspeed, 0    ); _p.noteInteraction(); break;
+                  case KeyEvent.VK_DOWN:  y = Math.min(y + yscrollspeed, max_y); _p.noteInteraction(); break;
+                  case KeyEvent.VK_LEFT:  x = Math.max(x - xscrollspeed, 0    ); _p.noteInteraction(); break;
+                  case KeyEvent.VK_RIGHT: x = Math.min(x + xscrollspeed, max_x); _p.noteInteraction(); break;
+                  default:                                                                             break;
                 }
 
               _p._viewport.setViewPosition(new Point(x, y));
@@ -621,7 +622,7 @@ class PanoramaListener
               _repeatCount = _activeComponent == _autorepeatFor
                 ? Math.min(_repeatCount + 1, 40)
                 : 1;
-              int intervall_ms =  50; // min, time between two draw events-
+              int intervall_ms = Panorama.FRAME_INTERVAL_MS; // min, time between two draw events
               if (delta < intervall_ms || noWaits >= 10)
                 {
                   Threads.wait(this, delta < intervall_ms ? intervall_ms-delta : intervall_ms, 0);
@@ -638,6 +639,7 @@ class PanoramaListener
                   _dragX = -1; /* disable dragging while mouse pressed */
                   javax.swing.SwingUtilities.invokeLater(()->
                     {
+                      _p.noteInteraction();
                       if      (button == _compress) { _p.compress(_repeatCount); }
                       else if (button == _expand  ) { _p.expand(  _repeatCount); }
                       else if (button == _zoom    ) { _p.zoomIn(  _repeatCount); }
@@ -1,5 +1,6 @@
 module feeze {
   requires java.desktop;
+  requires jdk.management;
 
   exports dev.feeze;
   exports dev.flang.swing;